@@ -0,0 +1,49 @@
+package com.example.account.benchmark;
+
+import com.example.account.service.AccountService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 계좌 생성 벤치마크
+ * 사용자당 계좌가 10개로 제한되므로 10번마다 새 사용자를 만든다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AccountServiceBenchmark {
+    @Param({"sequence", "hilo"})
+    public String allocator;
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+
+    @State(Scope.Thread)
+    public static class UserState {
+        long userId;
+        int created = BenchmarkContext.MAX_ACCOUNT_PER_USER;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("account.number.allocator=" + allocator);
+        accountService = context.getBean(AccountService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object createAccount(UserState userState) {
+        if (userState.created == BenchmarkContext.MAX_ACCOUNT_PER_USER) {
+            userState.userId = BenchmarkContext.createUser(context);
+            userState.created = 0;
+        }
+        userState.created++;
+        return accountService.createAccount(userState.userId, 1000L);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.account.benchmark;
+
+import com.example.account.AccountApplication;
+import com.example.account.dto.AccountDto;
+import com.example.account.service.AccountService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 벤치마크용 애플리케이션 컨텍스트 (embedded Redis + H2, 웹 서버 없음)
+ */
+final class BenchmarkContext {
+    static final int MAX_ACCOUNT_PER_USER = 10;
+
+    //data.sql 의 사용자 id, 엔티티 시퀀스와 겹치지 않는 구간
+    private static final AtomicLong USER_ID = new AtomicLong(1_000_000L);
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(AccountApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(
+                        "spring.jpa.properties.hibernate.show_sql=false",
+                        "spring.jpa.properties.hibernate.format_sql=false",
+                        "logging.level.root=WARN")
+                .properties(properties)
+                .run();
+    }
+
+    static long createUser(ConfigurableApplicationContext context) {
+        long userId = USER_ID.incrementAndGet();
+        context.getBean(JdbcTemplate.class).update(
+                "insert into account_user(id, name, crated_at, update_at) values (?, ?, now(), now())",
+                userId, "bench-" + userId);
+        return userId;
+    }
+
+    static List<Target> createAccounts(ConfigurableApplicationContext context,
+                                       int count, long initialBalance) {
+        AccountService accountService = context.getBean(AccountService.class);
+        List<Target> targets = new ArrayList<>(count);
+        long userId = 0;
+        for (int i = 0; i < count; i++) {
+            if (i % MAX_ACCOUNT_PER_USER == 0) {
+                userId = createUser(context);
+            }
+            AccountDto accountDto = accountService.createAccount(userId, initialBalance);
+            targets.add(new Target(userId, accountDto.getAccountNumber()));
+        }
+        return targets;
+    }
+
+    static final class Target {
+        final long userId;
+        final String accountNumber;
+        String transactionId; //취소/조회 대상 거래
+
+        Target(long userId, String accountNumber) {
+            this.userId = userId;
+            this.accountNumber = accountNumber;
+        }
+    }
+}
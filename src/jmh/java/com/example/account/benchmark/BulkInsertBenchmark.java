@@ -0,0 +1,104 @@
+package com.example.account.benchmark;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountStatus;
+import com.example.account.domain.AccountUser;
+import com.example.account.dto.FailedTransaction;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.service.AccountNumberAllocator;
+import com.example.account.service.TransactionService;
+import com.example.account.type.TransactionType;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 일괄 insert 처리량 (한 트랜잭션에 size 건)
+ * 주 점수는 트랜잭션 수/s, rows 보조 점수가 건수/s 다. (size 를 바꿔도 비교할 수 있도록 실제 건수로 센다)
+ * profile=nobatch 는 JDBC batch 와 insert 정렬을 끈 설정
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BulkInsertBenchmark {
+    @Param({"default", "nobatch"})
+    public String profile;
+
+    @Param({"500"})
+    public int size;
+
+    //@OperationsPerInvocation 은 상수만 받으므로 저장한 건수를 보조 counter 로 센다.
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0L;
+        }
+    }
+
+    private ConfigurableApplicationContext context;
+    private AccountRepository accountRepository;
+    private AccountNumberAllocator accountNumberAllocator;
+    private TransactionService transactionService;
+    private TransactionTemplate transactionTemplate;
+    private AccountUser accountUser;
+    private List<FailedTransaction> failedTransactions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("spring.profiles.active=" + profile);
+        accountRepository = context.getBean(AccountRepository.class);
+        accountNumberAllocator = context.getBean(AccountNumberAllocator.class);
+        transactionService = context.getBean(TransactionService.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        accountUser = context.getBean(AccountUserRepository.class)
+                .findById(BenchmarkContext.createUser(context))
+                .orElseThrow();
+
+        String accountNumber = BenchmarkContext.createAccounts(context, 1, 0L).get(0).accountNumber;
+        failedTransactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            failedTransactions.add(new FailedTransaction(TransactionType.USE, accountNumber,
+                    10L, LocalDateTime.now()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    //사용자당 계좌 수 제한은 서비스 검증이므로 repository 로 직접 저장한다.
+    @Benchmark
+    public Object createAccounts(Rows rows) {
+        rows.rows += size;
+        return transactionTemplate.execute(status -> {
+            List<Account> accounts = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                accounts.add(Account.builder()
+                        .accountUser(accountUser)
+                        .accountStatus(AccountStatus.IN_USE)
+                        .accountNumber(accountNumberAllocator.nextAccountNumber())
+                        .balance(0L)
+                        .registeredAt(LocalDateTime.now())
+                        .build());
+            }
+            return accountRepository.saveAll(accounts);
+        });
+    }
+
+    @Benchmark
+    public void saveLedger(Rows rows) {
+        rows.rows += size;
+        transactionService.saveFailedTransactions(failedTransactions);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.account.benchmark;
+
+import com.example.account.domain.AccountUser;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 계좌/거래가 많을 때 조회 지연시간 (기본 1,000만 건)
+ * indexed=false 는 엔티티에 선언한 인덱스/유니크 제약을 지우고 같은 조회를 측정한다.
+ * 데이터가 커서 H2 를 파일 모드로 띄운다. (build/jmh-db)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IndexedLookupBenchmark {
+    private static final long ACCOUNTS_PER_USER = 10L;
+    private static final long FIRST_ACCOUNT_NUMBER = 1_000_000_000L;
+
+    @Param({"10000000"})
+    public long rows;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    private ConfigurableApplicationContext context;
+    private AccountRepository accountRepository;
+    private TransactionRepository transactionRepository;
+    private long users;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(
+                "spring.datasource.url=jdbc:h2:file:./build/jmh-db/lookup;DB_CLOSE_ON_EXIT=FALSE");
+        accountRepository = context.getBean(AccountRepository.class);
+        transactionRepository = context.getBean(TransactionRepository.class);
+        users = rows / ACCOUNTS_PER_USER;
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        //data.sql 사용자(1~3)와 겹치지 않게 100 부터
+        jdbcTemplate.update("insert into account_user(id, name, crated_at, update_at) " +
+                "select 100 + x, 'bench-' || x, now(), now() from system_range(1, ?)", users);
+        jdbcTemplate.update("insert into account(id, account_user_id, account_number, account_status, " +
+                "balance, registered_at, crated_at, update_at) " +
+                "select x, 100 + mod(x, ?) + 1, cast(? + x as varchar), 'IN_USE', 10000, now(), now(), now() " +
+                "from system_range(1, ?)", users, FIRST_ACCOUNT_NUMBER, rows);
+        jdbcTemplate.update("insert into transaction(id, account_id, transaction_type, transaction_result_type, " +
+                "amount, balance_snapshot, transaction_id, transacted_at, crated_at, update_at) " +
+                "select x, mod(x, ?) + 1, 'USE', 'S', 100, 9900, lpad(cast(x as varchar), 16, '0'), " +
+                "dateadd('SECOND', x, timestamp '2024-01-01 00:00:00'), now(), now() " +
+                "from system_range(1, ?)", rows, rows);
+
+        if (!indexed) {
+            jdbcTemplate.execute("alter table account drop constraint uk_account_account_number");
+            jdbcTemplate.execute("drop index idx_account_account_user_id");
+            jdbcTemplate.execute("alter table transaction drop constraint uk_transaction_transaction_id");
+            jdbcTemplate.execute("drop index idx_transaction_account_id_transacted_at_id");
+        }
+        jdbcTemplate.execute("analyze");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object findByAccountNumber() {
+        long x = ThreadLocalRandom.current().nextLong(1, rows + 1);
+        return accountRepository.findByAccountNumber(String.valueOf(FIRST_ACCOUNT_NUMBER + x));
+    }
+
+    @Benchmark
+    public Object findByTransactionId() {
+        long x = ThreadLocalRandom.current().nextLong(1, rows + 1);
+        return transactionRepository.findByTransactionId(String.format("%016d", x));
+    }
+
+    @Benchmark
+    public Object countByAccountUser() {
+        AccountUser accountUser = AccountUser.builder().build();
+        accountUser.setId(100 + ThreadLocalRandom.current().nextLong(1, users + 1));
+        return accountRepository.countByAccountUser(accountUser);
+    }
+}
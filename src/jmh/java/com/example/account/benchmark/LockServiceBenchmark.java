@@ -0,0 +1,56 @@
+package com.example.account.benchmark;
+
+import com.example.account.exception.AccountException;
+import com.example.account.service.LockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 락 획득/해제 왕복 비용 (redis 분산 락 vs local striped lock)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LockServiceBenchmark {
+    private static final long WAIT_TIME = 1000L;
+
+    @Param({"redis", "local"})
+    public String mode;
+
+    @Param({"1", "30"})
+    public int accounts;
+
+    private ConfigurableApplicationContext context;
+    private LockService lockService;
+    private String[] accountNumbers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("account.lock.mode=" + mode);
+        lockService = context.getBean(LockService.class);
+        accountNumbers = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountNumbers[i] = String.valueOf(1_000_000_000L + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object lockAndUnlock() {
+        String accountNumber = accountNumbers[ThreadLocalRandom.current().nextInt(accounts)];
+        try {
+            long fencingToken = lockService.lock(accountNumber, WAIT_TIME, -1L);
+            lockService.unlock(accountNumber);
+            return fencingToken;
+        } catch (AccountException e) {
+            return e;
+        }
+    }
+}
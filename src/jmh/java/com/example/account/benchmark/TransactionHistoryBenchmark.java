@@ -0,0 +1,91 @@
+package com.example.account.benchmark;
+
+import com.example.account.dto.TransactionHistoryResponse;
+import com.example.account.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 한 계좌의 거래 내역 페이지 조회 지연시간 (기본 100만 건, 페이지 20건)
+ * keyset 은 page 번째 페이지의 커서로 읽고, offset 은 같은 페이지를 OFFSET 으로 읽는다.
+ * 데이터가 커서 H2 를 파일 모드로 띄운다. (build/jmh-db)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TransactionHistoryBenchmark {
+    private static final long ACCOUNT_ID = 1L;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000000"})
+    public long rows;
+
+    @Param({"1", "10000"})
+    public int page;
+
+    private ConfigurableApplicationContext context;
+    private TransactionRepository transactionRepository;
+    private JdbcTemplate jdbcTemplate;
+    private LocalDateTime cursorTransactedAt;
+    private Long cursorId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(
+                "spring.datasource.url=jdbc:h2:file:./build/jmh-db/history;DB_CLOSE_ON_EXIT=FALSE");
+        transactionRepository = context.getBean(TransactionRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        //data.sql 사용자 1 의 계좌 하나에 몰아서 넣는다.
+        jdbcTemplate.update("insert into account(id, account_user_id, account_number, account_status, " +
+                "balance, registered_at, crated_at, update_at) " +
+                "values (?, 1, '9999999999', 'IN_USE', 10000, now(), now(), now())", ACCOUNT_ID);
+        jdbcTemplate.update("insert into transaction(id, account_id, transaction_type, transaction_result_type, " +
+                "amount, balance_snapshot, transaction_id, transacted_at, crated_at, update_at) " +
+                "select x, ?, 'USE', 'S', 100, 9900, lpad(cast(x as varchar), 16, '0'), " +
+                "dateadd('SECOND', x, timestamp '2024-01-01 00:00:00'), now(), now() " +
+                "from system_range(1, ?)", ACCOUNT_ID, rows);
+        jdbcTemplate.execute("analyze");
+
+        //page 번째 페이지의 커서 = 그 앞 페이지 마지막 거래
+        if (page > 1) {
+            Map<String, Object> last = jdbcTemplate.queryForMap("select id, transacted_at from transaction " +
+                    "where account_id = ? order by transacted_at desc, id desc offset ? rows fetch next 1 row only",
+                    ACCOUNT_ID, (long) (page - 1) * PAGE_SIZE - 1);
+            cursorId = ((Number) last.get("ID")).longValue();
+            cursorTransactedAt = ((Timestamp) last.get("TRANSACTED_AT")).toLocalDateTime();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object keyset() {
+        if (cursorId == null) {
+            return TransactionHistoryResponse.of(transactionRepository.findHistory(
+                    ACCOUNT_ID, null, null, Limit.of(PAGE_SIZE + 1)), PAGE_SIZE);
+        }
+        return TransactionHistoryResponse.of(transactionRepository.findHistoryAfter(
+                ACCOUNT_ID, null, null, cursorTransactedAt, cursorId, Limit.of(PAGE_SIZE + 1)), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> offset() {
+        return jdbcTemplate.queryForList("select id, transaction_id, transaction_type, transaction_result_type, " +
+                        "amount, balance_snapshot, transacted_at from transaction where account_id = ? " +
+                        "order by transacted_at desc, id desc offset ? rows fetch next ? rows only",
+                ACCOUNT_ID, (long) (page - 1) * PAGE_SIZE, PAGE_SIZE + 1);
+    }
+}
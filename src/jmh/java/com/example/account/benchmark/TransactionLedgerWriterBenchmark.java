@@ -0,0 +1,52 @@
+package com.example.account.benchmark;
+
+import com.example.account.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 거래 내역 저장 처리량 (group commit 사용 여부)
+ * - useBalance : ATOMIC 모드의 차감 + 성공 내역 (TransactionService.useBalanceGrouped)
+ * - saveFailedUseTransaction : 실패 내역
+ * 동시 호출자가 많을수록 차이가 커진다. (./gradlew jmh -PjmhThreads=32 -PjmhIncludes=TransactionLedgerWriterBenchmark)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransactionLedgerWriterBenchmark {
+    @Param({"true", "false"})
+    public boolean groupCommit;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private List<BenchmarkContext.Target> targets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("account.ledger.group-commit.enabled=" + groupCommit,
+                "account.transaction.debit-mode=ATOMIC");
+        transactionService = context.getBean(TransactionService.class);
+        targets = BenchmarkContext.createAccounts(context, 30, 1_000_000_000_000L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void useBalance() {
+        BenchmarkContext.Target target = targets.get(ThreadLocalRandom.current().nextInt(targets.size()));
+        transactionService.useBalanceGrouped(target.userId, target.accountNumber, 10L);
+    }
+
+    @Benchmark
+    public void saveFailedUseTransaction() {
+        BenchmarkContext.Target target = targets.get(ThreadLocalRandom.current().nextInt(targets.size()));
+        transactionService.saveFailedUseTransaction(target.accountNumber, 10L);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.account.benchmark;
+
+import com.example.account.aop.FencingTokenHolder;
+import com.example.account.exception.AccountException;
+import com.example.account.service.LockService;
+import com.example.account.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 거래 hot path 벤치마크
+ * accounts=1 은 단일 계좌 경합, 그 외는 여러 계좌에 분산된 부하
+ * 락은 LockAopAspect 와 같은 순서로 잡는다. (대기 시간 1초)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransactionServiceBenchmark {
+    private static final long INITIAL_BALANCE = 1_000_000_000_000L;
+    private static final long AMOUNT = 10L;
+    private static final long WAIT_TIME = 1000L;
+
+    @Param({"1", "30"})
+    public int accounts;
+
+    @Param({"LOCK", "ATOMIC"})
+    public String debitMode;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private LockService lockService;
+    private List<BenchmarkContext.Target> targets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("account.transaction.debit-mode=" + debitMode);
+        transactionService = context.getBean(TransactionService.class);
+        lockService = context.getBean(LockService.class);
+        targets = BenchmarkContext.createAccounts(context, accounts, INITIAL_BALANCE);
+        for (BenchmarkContext.Target target : targets) {
+            target.transactionId = transactionService
+                    .useBalance(target.userId, target.accountNumber, AMOUNT)
+                    .getTransactionId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object useBalance() {
+        BenchmarkContext.Target target = pick();
+        return withAccountLock(target.accountNumber, !"ATOMIC".equals(debitMode),
+                () -> transactionService.useBalance(target.userId, target.accountNumber, AMOUNT));
+    }
+
+    @Benchmark
+    public Object cancelBalance() {
+        BenchmarkContext.Target target = pick();
+        return withAccountLock(target.accountNumber, true,
+                () -> transactionService.cancelBalance(target.transactionId, target.accountNumber, AMOUNT));
+    }
+
+    @Benchmark
+    public Object queryTransaction() {
+        return transactionService.queryTransaction(pick().transactionId);
+    }
+
+    private BenchmarkContext.Target pick() {
+        return targets.get(ThreadLocalRandom.current().nextInt(targets.size()));
+    }
+
+    //락 획득 실패(ACCOUNT_TRANSACTION_LOCK)도 한 번의 요청으로 센다.
+    private Object withAccountLock(String accountNumber, boolean lock, Supplier<Object> operation) {
+        try {
+            if (!lock) {
+                return operation.get();
+            }
+            FencingTokenHolder.set(accountNumber, lockService.lock(accountNumber, WAIT_TIME, -1L));
+            try {
+                return operation.get();
+            } finally {
+                FencingTokenHolder.clear();
+                lockService.unlock(accountNumber);
+            }
+        } catch (AccountException e) {
+            return e;
+        }
+    }
+}
@@ -7,5 +7,12 @@ import java.lang.annotation.*;
 @Documented
 @Inherited
 public @interface AccountLock {
+    //락 획득 대기 시간 (ms)
     long tryLockTime() default 5000L;
+
+    //락 점유 시간 (ms). -1 이면 작업이 끝날 때까지 watchdog 이 점유 시간을 연장한다.
+    long leaseTime() default -1L;
+
+    //잔액 차감 API 표시 - ATOMIC 차감 모드에서는 락을 생략한다.
+    boolean debit() default false;
 }
@@ -0,0 +1,8 @@
+package com.example.account.aop;
+
+import java.util.List;
+
+//여러 계좌를 한 번에 잠그는 요청
+public interface AccountLockIdsInterface {
+    List<String> getAccountNumbers();
+}
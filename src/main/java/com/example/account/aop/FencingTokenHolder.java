@@ -0,0 +1,29 @@
+package com.example.account.aop;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 현재 스레드가 잡고 있는 계좌 락의 fencing token (계좌번호별)
+ * LockAopAspect 가 락을 잡는 동안 설정하고, 서비스는 DB 에 쓸 때 이 값으로 오래된 요청을 걸러낸다.
+ */
+public final class FencingTokenHolder {
+    private static final ThreadLocal<Map<String, Long>> TOKENS =
+            ThreadLocal.withInitial(HashMap::new);
+
+    private FencingTokenHolder() {
+    }
+
+    public static void set(String accountNumber, Long token) {
+        TOKENS.get().put(accountNumber, token);
+    }
+
+    //해당 계좌의 락 없이 실행중이면 null
+    public static Long get(String accountNumber) {
+        return TOKENS.get().get(accountNumber);
+    }
+
+    public static void clear() {
+        TOKENS.remove();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.account.aop;
+
+import java.lang.annotation.*;
+
+/**
+ * Idempotency-Key 헤더가 있으면 같은 key 의 재요청에 저장해 둔 응답을 돌려준다. (IdempotencyAspect)
+ * 첫 번째 인자가 요청 body 여야 한다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+public @interface Idempotent {
+    //key 를 구분하는 이름. 동기/비동기처럼 같은 동작인 API 는 같은 이름을 쓴다.
+    String value();
+}
@@ -0,0 +1,43 @@
+package com.example.account.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 지연/오류 주입 설정 (account.fault-injection)
+ * 락 경합, 카오스 테스트용이며 기본값은 비활성
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "account.fault-injection")
+public class FaultInjectionProperties {
+    private boolean enabled = false;
+
+    //endpoint 이름 -> 규칙 (예: transaction-use)
+    private Map<String, Rule> endpoints = new HashMap<>();
+
+    @Getter
+    @Setter
+    public static class Rule {
+        //요청 분위(0~100) -> 지연시간(ms). 분위보다 작거나 같은 요청 중 가장 가까운 구간의 지연을 쓴다.
+        private Map<Double, Long> latency = new HashMap<>();
+        //오류를 낼 비율 (0~1)
+        private double errorRate = 0.0;
+
+        public long latencyAt(double percentile) {
+            Double matched = null;
+            for (Double key : latency.keySet()) {
+                if (key >= percentile && (matched == null || key < matched)) {
+                    matched = key;
+                }
+            }
+            return matched == null ? 0L : latency.get(matched);
+        }
+    }
+}
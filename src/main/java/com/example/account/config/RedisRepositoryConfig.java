@@ -15,10 +15,28 @@ public class RedisRepositoryConfig {
     @Value("${spring.redis.port}")
     private int redisPort;
 
+    //leaseTime 이 -1 인 락을 watchdog 이 이 주기의 1/3 마다 연장한다.
+    @Value("${account.lock.watchdog-timeout:30000}")
+    private long lockWatchdogTimeout;
+
+    //락 대기자는 lock 채널을 구독하고 기다린다. 동시 대기자 수 = 구독 connection 수 * connection 당 구독 수
+    @Value("${account.lock.redis.connection-pool-size:64}")
+    private int connectionPoolSize;
+
+    @Value("${account.lock.redis.subscription-connection-pool-size:50}")
+    private int subscriptionConnectionPoolSize;
+
+    @Value("${account.lock.redis.subscriptions-per-connection:5}")
+    private int subscriptionsPerConnection;
+
     @Bean
     public RedissonClient redissonClient(){
         Config config= new Config();
-        config.useSingleServer().setAddress("redis://"+redisHost+":"+redisPort);
+        config.useSingleServer().setAddress("redis://"+redisHost+":"+redisPort)
+                .setConnectionPoolSize(connectionPoolSize)
+                .setSubscriptionConnectionPoolSize(subscriptionConnectionPoolSize)
+                .setSubscriptionsPerConnection(subscriptionsPerConnection);
+        config.setLockWatchdogTimeout(lockWatchdogTimeout);
 
         return Redisson.create(config);
     }
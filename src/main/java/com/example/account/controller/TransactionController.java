@@ -1,15 +1,37 @@
 package com.example.account.controller;
 
 import com.example.account.aop.AccountLock;
+import com.example.account.aop.Idempotent;
 import com.example.account.dto.CancelBalance;
+import com.example.account.dto.LockQueueResponse;
 import com.example.account.dto.QueryTransactionResponse;
+import com.example.account.dto.TransactionHistoryItem;
+import com.example.account.dto.TransactionHistoryResponse;
 import com.example.account.dto.UseBalance;
+import com.example.account.dto.UseBalanceBatch;
 import com.example.account.exception.AccountException;
+import com.example.account.service.FailedTransactionRecorder;
+import com.example.account.service.FaultInjector;
+import com.example.account.service.LockService;
 import com.example.account.service.TransactionService;
+import com.example.account.type.DebitMode;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.CompletableFuture;
+
+import static com.example.account.type.TransactionType.CANCEL;
+import static com.example.account.type.TransactionType.USE;
 
 
 /**
@@ -17,6 +39,11 @@ import org.springframework.web.bind.annotation.*;
  * 1.잔액 사용
  * 2.잔액 사용 취소
  * 3.거래 확인
+ * 4.잔액 일괄 사용
+ * 5.잔액 사용/취소 (비동기 락 대기)
+ * 6.계좌 락 대기자 수
+ * 7.계좌별 거래 내역 (커서 페이지, 전체 내보내기)
+ * 잔액 사용/취소는 Idempotency-Key 헤더로 재요청을 한 번만 처리한다. (IdempotencyAspect)
  */
 @RestController
 @RequiredArgsConstructor
@@ -24,14 +51,31 @@ import org.springframework.web.bind.annotation.*;
 public class TransactionController {
 
     private final TransactionService transactionService;
+    private final FaultInjector faultInjector;
+    private final LockService lockService;
+    //실패 내역은 비동기로 기록하고 바로 응답한다. (락도 바로 해제)
+    private final FailedTransactionRecorder failedTransactionRecorder;
+    private final ObjectMapper objectMapper;
+
+    //ATOMIC 모드의 잔액 사용은 다른 요청과 묶어서 커밋한다. (TransactionService.useBalanceGrouped)
+    @Value("${account.transaction.debit-mode:LOCK}")
+    private DebitMode debitMode;
 
     @PostMapping("/transaction/use")
-    @AccountLock
+    @Idempotent("transaction-use")
+    @AccountLock(tryLockTime = 1000L, debit = true)
     public UseBalance.Response useBalance(
             @Valid @RequestBody UseBalance.Request request
     ) {
         try {
-            Thread.sleep(5000L);
+            faultInjector.inject("transaction-use");
+            if (debitMode == DebitMode.ATOMIC) {
+                return UseBalance.Response.from(transactionService.
+                        useBalanceGrouped(request.getUserId(),
+                                request.getAccountNumber(),
+                                request.getAmount())
+                );
+            }
             return UseBalance.Response.from(transactionService.
                     useBalance(request.getUserId(),
                             request.getAccountNumber(),
@@ -40,21 +84,43 @@ public class TransactionController {
         } catch (AccountException e) {
             log.error("Failed to useBalance.");
 
-            transactionService.saveFailedUseTransaction(
+            failedTransactionRecorder.record(USE,
                     request.getAccountNumber(),
                     request.getAmount()
             );
             throw e;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
         }
     }
+    /*
+        락을 기다리는 동안 요청 스레드를 반환한다. (servlet async)
+        락 처리는 LockAopAspect 가 하고, 여기서는 동기 메서드를 직접 호출한다. (self 호출이라 락을 다시 잡지 않음)
+     */
+    @PostMapping("/transaction/use/async")
+    @Idempotent("transaction-use")
+    @AccountLock(tryLockTime = 1000L, debit = true)
+    public CompletableFuture<UseBalance.Response> useBalanceAsync(
+            @Valid @RequestBody UseBalance.Request request
+    ) {
+        return CompletableFuture.completedFuture(useBalance(request));
+    }
+    @PostMapping("/transaction/use/batch")
+    @AccountLock(tryLockTime = 1000L, debit = true)
+    public UseBalanceBatch.Response useBalanceBatch(
+            @Valid @RequestBody UseBalanceBatch.Request request
+    ) {
+        faultInjector.inject("transaction-use-batch");
+        return UseBalanceBatch.Response.from(
+                transactionService.useBalanceBatch(request.getItems())
+        );
+    }
     @PostMapping("/transaction/cancel")
-    @AccountLock
+    @Idempotent("transaction-cancel")
+    @AccountLock(tryLockTime = 1000L)
     public CancelBalance.Response CancelBalance(
             @Valid @RequestBody CancelBalance.Request request
     ) {
         try {
+            faultInjector.inject("transaction-cancel");
             return CancelBalance.Response.from(transactionService.
                     cancelBalance(request.getTransactionId(),
                             request.getAccountNumber(),
@@ -62,13 +128,26 @@ public class TransactionController {
             );
         } catch (AccountException e) {
             log.error("Failed to cancelBalance.");
-            transactionService.saveFailedCancelTransaction(
+            failedTransactionRecorder.record(CANCEL,
                     request.getAccountNumber(),
                     request.getAmount()
             );
             throw e;
         }
     }
+    @PostMapping("/transaction/cancel/async")
+    @Idempotent("transaction-cancel")
+    @AccountLock(tryLockTime = 1000L)
+    public CompletableFuture<CancelBalance.Response> cancelBalanceAsync(
+            @Valid @RequestBody CancelBalance.Request request
+    ) {
+        return CompletableFuture.completedFuture(CancelBalance(request));
+    }
+    @GetMapping("/transaction/lock/{accountNumber}")
+    public LockQueueResponse getLockQueue(
+            @PathVariable String accountNumber) {
+        return new LockQueueResponse(accountNumber, lockService.queueDepth(accountNumber));
+    }
     @GetMapping("/transaction/{transactionId}")
     public QueryTransactionResponse queryTransaction(
             @PathVariable String transactionId) {
@@ -76,6 +155,50 @@ public class TransactionController {
                 transactionService.queryTransaction(transactionId)
         );
     }
+    @GetMapping("/account/{accountNumber}/transactions")
+    public TransactionHistoryResponse getTransactionHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) TransactionType transactionType,
+            @RequestParam(required = false) TransactionResultType transactionResultType,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return transactionService.getTransactionHistory(accountNumber,
+                transactionType, transactionResultType, cursor, size);
+    }
+    /*
+        전체 거래 내역을 JSON 배열로 내려준다.
+        청크 단위로 읽어서 바로 쓰므로 내역이 많아도 메모리에 모으지 않는다.
+        첫 청크는 응답 전에 읽어서 계좌가 없으면 일반 오류 응답을 준다.
+     */
+    @GetMapping("/account/{accountNumber}/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactionHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) TransactionType transactionType,
+            @RequestParam(required = false) TransactionResultType transactionResultType) {
+        TransactionHistoryResponse first = transactionService.getTransactionHistoryChunk(
+                accountNumber, transactionType, transactionResultType, null);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                TransactionHistoryResponse chunk = first;
+                while (true) {
+                    for (TransactionHistoryItem item : chunk.getTransactions()) {
+                        generator.writeObject(item);
+                    }
+                    generator.flush();
+                    if (chunk.getNextCursor() == null) {
+                        break;
+                    }
+                    chunk = transactionService.getTransactionHistoryChunk(accountNumber,
+                            transactionType, transactionResultType, chunk.getNextCursor());
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
 
 
 
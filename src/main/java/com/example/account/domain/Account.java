@@ -16,12 +16,17 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+//계좌번호 조회(use/cancel/delete), 사용자별 계좌 수/목록 조회용 인덱스
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_account_account_number", columnNames = "account_number"),
+        indexes = @Index(name = "idx_account_account_user_id", columnList = "account_user_id"))
 public class Account extends BaseEntity{
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_seq")
+    @SequenceGenerator(name = "account_seq", sequenceName = "account_seq", allocationSize = 100)
     private Long id;
 
-    @ManyToOne
+    //검증에는 소유자 id 만 쓰므로 지연 로딩 (proxy 의 id 는 조회 없이 읽힘)
+    @ManyToOne(fetch = FetchType.LAZY)
     private AccountUser accountUser; //소유자 정보
     private String accountNumber; //계좌 번호
 
@@ -32,6 +37,15 @@ public class Account extends BaseEntity{
     private LocalDateTime registeredAt;
     private LocalDateTime unRegisteredAt;
 
+    private Long fencingToken; //마지막으로 잔액을 변경한 락의 token
+
+    //잔액을 나눈 slot 수 (AccountBalanceSlot). null 또는 0 이면 balance 에 전부 있다.
+    private Integer balanceSlots;
+
+    public boolean hasSubBalances() {
+        return balanceSlots != null && balanceSlots > 0;
+    }
+
 
     public void useBalance(Long amount){
         if(amount>balance){
@@ -0,0 +1,23 @@
+package com.example.account.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/*
+    요청이 몰리는 계좌의 잔액 일부 (HotAccountDetector 가 나눈다)
+    계좌 잔액 = Account.balance + slot 잔액 합계
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_account_balance_slot_account_id_slot",
+        columnNames = {"account_id", "slot"}))
+public class AccountBalanceSlot extends BaseEntity {
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Account account;
+    private Integer slot; //0 ~ Account.balanceSlots - 1
+    private Long balance;
+}
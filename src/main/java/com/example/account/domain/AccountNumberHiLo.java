@@ -0,0 +1,17 @@
+package com.example.account.domain;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.*;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AccountNumberHiLo {
+    @Id
+    private String name;
+    private Long nextHi; //다음에 발급할 블록 번호
+}
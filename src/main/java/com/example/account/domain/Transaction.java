@@ -16,23 +16,28 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Builder
 @Entity
-
+//거래 id 조회, 계좌별 거래 내역(시간순, keyset 페이지) 조회용 인덱스
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_transaction_transaction_id", columnNames = "transaction_id"),
+        indexes = @Index(name = "idx_transaction_account_id_transacted_at_id", columnList = "account_id, transacted_at, id"))
 public class Transaction extends BaseEntity{
     @Id
-    @GeneratedValue
-    private Long id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = 1000)
+    private Long id; //거래 내역은 일괄 저장이 많아서 한 번에 1000개씩 할당
 
     @Enumerated(EnumType.STRING)
     private TransactionType transactionType;
     @Enumerated(EnumType.STRING)
     private TransactionResultType transactionResultType;
 
-    @ManyToOne
+    //계좌가 필요한 조회는 fetch join 으로 읽는다. (TransactionRepository)
+    @ManyToOne(fetch = FetchType.LAZY)
     private Account account;
     private Long amount;
     private Long balanceSnapshot;
 
-    private String transactionId;
+    @Column(length = 16, columnDefinition = "char(16)")
+    private String transactionId; //TransactionIdGenerator 의 16자리 hex
     private LocalDateTime transactedAt;
 
 
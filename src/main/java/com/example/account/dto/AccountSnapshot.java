@@ -0,0 +1,49 @@
+package com.example.account.dto;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountStatus;
+import lombok.*;
+
+/*
+    계좌에서 잘 바뀌지 않는 값만 담는다. (캐시용)
+    잔액은 담지 않는다. 잔액은 항상 DB 에서 읽고 쓴다.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AccountSnapshot {
+    private Long id;
+    private Long accountUserId;
+    private AccountStatus accountStatus;
+    private int balanceSlots; //0 이면 잔액이 나뉘지 않은 계좌
+
+    public static AccountSnapshot fromEntity(Account account) {
+        return AccountSnapshot.builder()
+                .id(account.getId())
+                .accountUserId(account.getAccountUser().getId())
+                .accountStatus(account.getAccountStatus())
+                .balanceSlots(account.hasSubBalances() ? account.getBalanceSlots() : 0)
+                .build();
+    }
+
+    public boolean hasSubBalances() {
+        return balanceSlots > 0;
+    }
+
+    //redis 저장용 "id:accountUserId:accountStatus:balanceSlots"
+    public String encode() {
+        return id + ":" + accountUserId + ":" + accountStatus.name() + ":" + balanceSlots;
+    }
+
+    public static AccountSnapshot decode(String value) {
+        String[] values = value.split(":");
+        return AccountSnapshot.builder()
+                .id(Long.valueOf(values[0]))
+                .accountUserId(Long.valueOf(values[1]))
+                .accountStatus(AccountStatus.valueOf(values[2]))
+                //slot 수가 없는 이전 형식
+                .balanceSlots(values.length > 3 ? Integer.parseInt(values[3]) : 0)
+                .build();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.account.dto;
+
+import com.example.account.type.TransactionType;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*
+    실패한 거래 기록 요청 (비동기 기록용)
+    spill 파일에는 한 줄에 하나씩 "USE,1000000000,1000,2024-01-01T00:00" 형태로 남긴다.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class FailedTransaction {
+    private TransactionType transactionType;
+    private String accountNumber;
+    private Long amount;
+    private LocalDateTime transactedAt;
+
+    public String encode() {
+        return transactionType.name() + "," + accountNumber + "," + amount + "," + transactedAt;
+    }
+
+    public static FailedTransaction decode(String line) {
+        String[] values = line.split(",");
+        return FailedTransaction.builder()
+                .transactionType(TransactionType.valueOf(values[0]))
+                .accountNumber(values[1])
+                .amount(Long.valueOf(values[2]))
+                .transactedAt(LocalDateTime.parse(values[3]))
+                .build();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.account.dto;
+
+import lombok.*;
+
+/*
+    Idempotency-Key 별 처리 상태 (IdempotencyStore)
+    처리 중이면 요청만, 끝났으면 요청과 응답(JSON)을 담는다.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class IdempotencyRecord {
+    private static final String DONE = "D";
+    private static final String PENDING = "P";
+
+    private boolean done;
+    private String fingerprint; //요청 body JSON, 같은 key 로 다른 요청을 보냈는지 확인
+    private String response;
+
+    public static IdempotencyRecord pending(String fingerprint) {
+        return new IdempotencyRecord(false, fingerprint, null);
+    }
+
+    public static IdempotencyRecord done(String fingerprint, String response) {
+        return new IdempotencyRecord(true, fingerprint, response);
+    }
+
+    //JSON 에는 줄바꿈이 없으므로 줄바꿈으로 나눈다.
+    public String encode() {
+        return done
+                ? DONE + "\n" + fingerprint + "\n" + response
+                : PENDING + "\n" + fingerprint;
+    }
+
+    public static IdempotencyRecord decode(String value) {
+        String[] values = value.split("\n", 3);
+        return DONE.equals(values[0])
+                ? done(values[1], values[2])
+                : pending(values[1]);
+    }
+}
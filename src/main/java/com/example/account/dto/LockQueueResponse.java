@@ -0,0 +1,13 @@
+package com.example.account.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LockQueueResponse {
+    private String accountNumber;
+    private long queueDepth; //락을 기다리는 요청 수
+}
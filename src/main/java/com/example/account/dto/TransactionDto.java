@@ -1,6 +1,7 @@
 package com.example.account.dto;
 
 import com.example.account.domain.Transaction;
+import com.example.account.type.ErrorCode;
 import com.example.account.type.TransactionResultType;
 import com.example.account.type.TransactionType;
 import lombok.*;
@@ -20,10 +21,24 @@ public class TransactionDto {
    private Long balanceSnapshot;
    private String transactionId;
    private LocalDateTime transactedAt;
+   private ErrorCode errorCode; //일괄 처리에서 실패한 항목의 사유
+
+   //JPQL 생성자 projection 용
+   public TransactionDto(String accountNumber, TransactionType transactionType,
+                         TransactionResultType transactionResultType, Long amount,
+                         Long balanceSnapshot, String transactionId, LocalDateTime transactedAt) {
+      this(accountNumber, transactionType, transactionResultType, amount,
+              balanceSnapshot, transactionId, transactedAt, null);
+   }
 
    public static TransactionDto fromEntity(Transaction transaction){
+      return fromEntity(transaction, transaction.getAccount().getAccountNumber());
+      }
+
+   //계좌를 읽지 않은 거래(계좌 참조만 있는 경우)는 계좌번호를 따로 받는다.
+   public static TransactionDto fromEntity(Transaction transaction, String accountNumber){
       return TransactionDto.builder()
-              .accountNumber(transaction.getAccount().getAccountNumber())
+              .accountNumber(accountNumber)
               .transactionType(transaction.getTransactionType())
               .transactionResultType(transaction.getTransactionResultType())
               .amount(transaction.getAmount())
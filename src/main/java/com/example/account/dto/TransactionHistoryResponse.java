@@ -0,0 +1,58 @@
+package com.example.account.dto;
+
+import lombok.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionHistoryResponse {
+    private List<TransactionHistoryItem> transactions;
+    private String nextCursor; //마지막 페이지면 null
+
+    //size 보다 한 건 더 읽었으면 다음 페이지가 있다.
+    public static TransactionHistoryResponse of(List<TransactionHistoryItem> items, int size) {
+        if (items.size() <= size) {
+            return new TransactionHistoryResponse(items, null);
+        }
+        List<TransactionHistoryItem> page = items.subList(0, size);
+        return new TransactionHistoryResponse(page, Cursor.from(page.get(size - 1)).encode());
+    }
+
+    /*
+        마지막으로 받은 거래의 (transactedAt, id).
+        다음 페이지는 이 값보다 앞선 거래부터 읽는다. (OFFSET 없음)
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Cursor {
+        private LocalDateTime transactedAt;
+        private Long id;
+
+        public static Cursor from(TransactionHistoryItem item) {
+            return new Cursor(item.getTransactedAt(), item.getId());
+        }
+
+        //"transactedAt_id" 를 url-safe base64 로
+        public String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((transactedAt + "_" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Cursor decode(String value) {
+            String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('_');
+            if (separator < 0) {
+                throw new IllegalArgumentException("invalid cursor: " + value);
+            }
+            return new Cursor(LocalDateTime.parse(decoded.substring(0, separator)),
+                    Long.valueOf(decoded.substring(separator + 1)));
+        }
+    }
+}
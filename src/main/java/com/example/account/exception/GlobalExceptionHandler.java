@@ -1,7 +1,9 @@
 package com.example.account.exception;
 
 import com.example.account.dto.ErrorResponse;
+import com.example.account.service.AccountMetrics;
 import com.example.account.type.ErrorCode;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -11,15 +13,21 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 @Slf4j
 @RestControllerAdvice
+@RequiredArgsConstructor
 public class GlobalExceptionHandler {
+    //ErrorCode 별 응답 횟수 (account.errors)
+    private final AccountMetrics accountMetrics;
+
     @ExceptionHandler(AccountException.class)
     public ErrorResponse handleAccountException(AccountException e){
         log.error("{} is occurred.",e.getErrorCodes());
+        accountMetrics.error(e.getErrorCodes());
         return new ErrorResponse(e.getErrorCodes(), e.getErrorMessage());
     }
     @ExceptionHandler(DataIntegrityViolationException.class)
     public ErrorResponse HandlerDataIntegrityViolationException(DataIntegrityViolationException e){
         log.error("DataIntegrityViolationException is occurred",e);
+        accountMetrics.error(ErrorCode.INVALID_REQUEST);
         return new ErrorResponse(ErrorCode.INVALID_REQUEST,
                 ErrorCode.INTERNAL_SERVER_ERROR.getDescription());
     }
@@ -28,6 +36,7 @@ public class GlobalExceptionHandler {
     @ExceptionHandler(Exception.class)
     public ErrorResponse handleAccountException(Exception e){
         log.error("Exception is occurred.",e);
+        accountMetrics.error(ErrorCode.INTERNAL_SERVER_ERROR);
         return new ErrorResponse(ErrorCode.INTERNAL_SERVER_ERROR,
                 ErrorCode.TRANSACTION_ACCOUNT_UN_MATCH.getDescription());
     }
@@ -0,0 +1,31 @@
+package com.example.account.repository;
+
+import com.example.account.domain.AccountBalanceSlot;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AccountBalanceSlotRepository extends JpaRepository<AccountBalanceSlot, Long> {
+    //slot 잔액이 충분할 때만 차감한다. 반환값은 변경된 row 수
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountBalanceSlot s set s.balance = s.balance - :amount " +
+            "where s.account.id = :accountId and s.slot = :slot and s.balance >= :amount")
+    int useBalanceIfSufficient(@Param("accountId") Long accountId,
+                               @Param("slot") Integer slot,
+                               @Param("amount") Long amount);
+
+    //계좌 row lock 을 잡은 뒤에 호출한다. (계좌 -> slot 순서)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from AccountBalanceSlot s where s.account.id = :accountId order by s.slot")
+    List<AccountBalanceSlot> findAllForUpdateByAccountId(@Param("accountId") Long accountId);
+
+    @Query("select coalesce(sum(s.balance), 0) from AccountBalanceSlot s where s.account.id = :accountId")
+    long sumBalanceByAccountId(@Param("accountId") Long accountId);
+}
@@ -0,0 +1,18 @@
+package com.example.account.repository;
+
+import com.example.account.domain.AccountNumberHiLo;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface AccountNumberHiLoRepository extends JpaRepository<AccountNumberHiLo,String> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select h from AccountNumberHiLo h where h.name = :name")
+    Optional<AccountNumberHiLo> findForUpdate(@Param("name") String name);
+}
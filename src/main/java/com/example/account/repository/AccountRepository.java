@@ -2,19 +2,84 @@ package com.example.account.repository;
 
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountUser;
+import com.example.account.dto.AccountInfo;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AccountRepository extends JpaRepository<Account,Long> {
-    Optional<Account> findFirstByOrderByIdDesc();
+    //블록 시작 번호. 시퀀스의 increment 가 블록 크기
+    @Query(value = "select next value for account_number_seq", nativeQuery = true)
+    Long nextAccountNumberBlock();
+
+    //계좌번호는 모두 10자리라서 문자열 최댓값이 가장 큰 번호다.
+    @Query("select max(a.accountNumber) from Account a")
+    Optional<String> findMaxAccountNumber();
+
     Integer countByAccountUser(AccountUser accountUser);
 
     Optional<Account> findByAccountNumber(String accountNumber);
 
+    //일괄 차감용. 교착을 피하려고 계좌번호 순서대로 row lock 을 잡는다.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.accountNumber in :accountNumbers order by a.accountNumber")
+    List<Account> findAllForUpdateByAccountNumberIn(@Param("accountNumbers") Collection<String> accountNumbers);
+
     List<Account> findByAccountUser(AccountUser accountUser);
 
+    //계좌 목록 조회용. 엔티티를 만들지 않고 필요한 컬럼만 읽는다. (slot 으로 나뉜 잔액 포함)
+    @Query("select new com.example.account.dto.AccountInfo(a.accountNumber, a.balance + " +
+            "coalesce((select sum(s.balance) from AccountBalanceSlot s where s.account = a), 0)) " +
+            "from Account a where a.accountUser.id = :userId")
+    List<AccountInfo> findAccountInfosByUserId(@Param("userId") Long userId);
+
+    List<Account> findAllByAccountNumberIn(Collection<String> accountNumbers);
+
+    @Query("select a.accountNumber from Account a where a.balanceSlots > 0")
+    List<String> findAccountNumbersWithSubBalances();
+
+    //소유자, 계좌 상태, 잔액 조건을 모두 만족할 때만 차감한다. 반환값은 변경된 row 수
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Account a set a.balance = a.balance - :amount, a.updateAt = local datetime " +
+            "where a.accountNumber = :accountNumber " +
+            "and a.accountUser.id = :userId " +
+            "and a.accountStatus = com.example.account.domain.AccountStatus.IN_USE " +
+            "and a.balance >= :amount")
+    int useBalanceIfSufficient(@Param("accountNumber") String accountNumber,
+                               @Param("userId") Long userId,
+                               @Param("amount") Long amount);
+
+    //ATOMIC 모드의 취소. 읽어 둔 잔액이 아니라 DB 의 잔액에 더하므로 락 없는 차감, slot 모으기와 겹쳐도 잃지 않는다.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Account a set a.balance = a.balance + :amount, a.updateAt = local datetime where a.id = :id")
+    int cancelBalance(@Param("id") Long id, @Param("amount") Long amount);
+
+    //MEMORY 차감 모드의 잔액 checkpoint (BalanceLedger)
+    @Modifying
+    @Query("update Account a set a.balance = :balance, a.updateAt = local datetime where a.id = :id")
+    int updateBalance(@Param("id") Long id, @Param("balance") Long balance);
+
+    //더 큰 token 일 때만 갱신한다. 0 이면 이미 새 락 소유자가 기록한 계좌
+    //일괄 차감용. 계좌 row lock 을 잡고 읽은 뒤에 호출한다.
+    @Modifying
+    @Query("update Account a set a.fencingToken = :token " +
+            "where a.id = :id and (a.fencingToken is null or a.fencingToken < :token)")
+    int updateFencingToken(@Param("id") Long id, @Param("token") Long token);
+
+    //잔액을 읽기 전에 호출한다. row lock 을 먼저 잡으므로 그 뒤에 읽는 잔액에는 이전 락 소유자의 변경이 들어 있다.
+    @Modifying
+    @Query("update Account a set a.fencingToken = :token " +
+            "where a.accountNumber = :accountNumber and (a.fencingToken is null or a.fencingToken < :token)")
+    int updateFencingTokenByAccountNumber(@Param("accountNumber") String accountNumber,
+                                          @Param("token") Long token);
+
 }
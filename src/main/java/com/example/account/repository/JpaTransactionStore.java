@@ -0,0 +1,80 @@
+package com.example.account.repository;
+
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistoryItem;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+//transaction 테이블에 저장한다. (기본값)
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "account.transaction.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaTransactionStore implements TransactionStore {
+    //in 절 하나에 넣는 거래 id 수
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    private final TransactionRepository transactionRepository;
+
+    @Override
+    public Transaction save(Transaction transaction) {
+        return transactionRepository.save(transaction);
+    }
+
+    @Override
+    public List<Transaction> saveAll(List<Transaction> transactions) {
+        return transactionRepository.saveAll(transactions);
+    }
+
+    @Override
+    public Optional<Transaction> findByTransactionId(String transactionId) {
+        return transactionRepository.findByTransactionId(transactionId);
+    }
+
+    @Override
+    public Optional<TransactionDto> findTransactionDtoByTransactionId(String transactionId) {
+        return transactionRepository.findTransactionDtoByTransactionId(transactionId);
+    }
+
+    @Override
+    public Set<String> findExistingTransactionIds(Collection<String> transactionIds) {
+        List<String> ids = new ArrayList<>(transactionIds);
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            existing.addAll(transactionRepository.findTransactionIdsIn(
+                    ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()))));
+        }
+        return existing;
+    }
+
+    @Override
+    public List<TransactionHistoryItem> findHistory(Long accountId,
+                                                    TransactionType transactionType,
+                                                    TransactionResultType transactionResultType,
+                                                    Limit limit) {
+        return transactionRepository.findHistory(accountId, transactionType, transactionResultType, limit);
+    }
+
+    @Override
+    public List<TransactionHistoryItem> findHistoryAfter(Long accountId,
+                                                         TransactionType transactionType,
+                                                         TransactionResultType transactionResultType,
+                                                         LocalDateTime transactedAt,
+                                                         Long id,
+                                                         Limit limit) {
+        return transactionRepository.findHistoryAfter(accountId, transactionType, transactionResultType,
+                transactedAt, id, limit);
+    }
+}
@@ -0,0 +1,516 @@
+package com.example.account.repository;
+
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistoryItem;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 거래 내역을 mmap segment 파일에 붙여 쓰는 저장소. (account.transaction.store=mapped)
+ * record 는 64 byte 고정 길이라서 id 로 위치를 바로 계산한다. (id = 전체 record 순번 + 1)
+ *   0 id | 8 거래 id | 16 계좌 id | 24 같은 계좌의 이전 record id | 32 금액 | 40 잔액
+ *   48 거래 시각(epoch second, UTC) | 56 nano | 60 거래 종류 | 61 결과 | 62 flag
+ * 거래 id 는 block(index-block-size 건)마다 최소/최대값만 두는 sparse index 로 찾고, 범위에 드는 block 만 읽는다.
+ * 계좌별 거래 내역은 계좌의 마지막 record 에서 이전 record id 를 따라가며 읽는다. (붙여 쓴 순서의 역순)
+ * DB 트랜잭션 안에서는 커밋 전에 미확정(flag 0)으로 쓰고, 커밋되면 COMMITTED, 롤백되면 ROLLED_BACK 으로 표시한다.
+ * 조회와 다시 열 때의 복구는 COMMITTED 가 아닌 record 를 없는 것으로 본다. (커밋 전에 종료되면 내역도 없다)
+ * DB 커밋 직후 flag 를 force 하기 전에 종료되면 커밋된 거래 내역이 빠질 수 있다. (반대로 롤백된 내역이 남지는 않는다)
+ * 저장은 앞 record 까지 순서대로 force 한 뒤 돌아오므로 돌려준 record 앞에는 빈 자리가 없다.
+ * 다시 열 때는 처음 빈 자리에서 멈추고, 그 뒤에 남은 record(돌려주지 않은 저장)는 지운다.
+ * enum 은 순서(ordinal)로 저장하므로 TransactionType/TransactionResultType 의 순서를 바꾸면 안 된다.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "account.transaction.store", havingValue = "mapped")
+public class MappedTransactionStore implements TransactionStore {
+    static final int RECORD_SIZE = 64;
+    private static final String SEGMENT_PREFIX = "transaction-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final long NULL_VALUE = Long.MIN_VALUE;
+    private static final byte ROLLED_BACK = 1;
+    private static final byte COMMITTED = 2;
+    private static final HexFormat HEX = HexFormat.of();
+    private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+    private static final TransactionResultType[] TRANSACTION_RESULT_TYPES = TransactionResultType.values();
+
+    private final AccountRepository accountRepository;
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final int indexBlockSize;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    //계좌 id -> 계좌의 마지막 record id
+    private final Map<Long, Long> accountHeads = new ConcurrentHashMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock forceLock = new ReentrantLock();
+
+    //다음에 쓸 record 순번 (appendLock 안에서만 바꾼다)
+    private volatile long nextSlot;
+    //여기까지의 record 는 디스크에 내려갔다. (forceLock 안에서만 바꾼다)
+    private volatile long durableSlot;
+
+    public MappedTransactionStore(AccountRepository accountRepository,
+                                  @Value("${account.transaction.mapped-store.dir:data/transactions}") String directory,
+                                  @Value("${account.transaction.mapped-store.segment-size:67108864}") int segmentSize,
+                                  @Value("${account.transaction.mapped-store.index-block-size:64}") int indexBlockSize) {
+        if (segmentSize < RECORD_SIZE || segmentSize % RECORD_SIZE != 0) {
+            throw new IllegalArgumentException("segment size must be a multiple of " + RECORD_SIZE);
+        }
+        if ((segmentSize / RECORD_SIZE) % indexBlockSize != 0) {
+            throw new IllegalArgumentException("records per segment must be a multiple of index block size");
+        }
+        this.accountRepository = accountRepository;
+        this.directory = Paths.get(directory);
+        this.recordsPerSegment = segmentSize / RECORD_SIZE;
+        this.indexBlockSize = indexBlockSize;
+    }
+
+    //segment 를 다시 mmap 하고 계좌별 마지막 record 와 sparse index 를 다시 만든다.
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+        boolean torn = false;
+        int uncommitted = 0;
+        for (Path path : paths) {
+            //빈 자리 뒤의 segment 에는 돌려주지 않은 저장만 있다.
+            if (torn) {
+                Files.delete(path);
+                log.warn("transaction segment after a torn record deleted. {}", path);
+                continue;
+            }
+            Segment segment = mapSegment(path);
+            segments.add(segment);
+            int marked = uncommitted;
+            int i = 0;
+            for (; i < recordsPerSegment; i++) {
+                long id = nextSlot + 1;
+                int position = i * RECORD_SIZE;
+                //다 쓰지 못한 record 부터 뒤는 빈 자리
+                if (segment.buffer.getLong(position) != id) {
+                    break;
+                }
+                //커밋 전에 종료된 트랜잭션의 record 는 지운 것으로 표시한다. (계좌별 연결은 그대로 둔다)
+                if (segment.buffer.get(position + 62) == 0) {
+                    segment.buffer.put(position + 62, ROLLED_BACK);
+                    uncommitted++;
+                }
+                segment.index(i / indexBlockSize, segment.buffer.getLong(position + 8));
+                accountHeads.put(segment.buffer.getLong(position + 16), id);
+                nextSlot++;
+            }
+            if (uncommitted > marked) {
+                segment.buffer.force();
+            }
+            if (i < recordsPerSegment) {
+                torn = true;
+                discardTail(segment, i, path);
+            }
+        }
+        durableSlot = nextSlot;
+        log.info("mapped transaction store opened. segments : {}, records : {}, uncommitted : {}",
+                segments.size(), nextSlot, uncommitted);
+    }
+
+    //빈 자리 뒤에 남은 record 를 지운다. 남겨 두면 빈 자리를 다시 채운 뒤 이어진 record 로 읽힌다.
+    private void discardTail(Segment segment, int from, Path path) {
+        int discarded = 0;
+        for (int i = from; i < recordsPerSegment; i++) {
+            int position = i * RECORD_SIZE;
+            if (segment.buffer.getLong(position) != 0L) {
+                segment.buffer.putLong(position, 0L);
+                discarded++;
+            }
+        }
+        if (discarded > 0) {
+            segment.buffer.force();
+            log.warn("{} records after a torn record discarded. {}", discarded, path);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+    }
+
+    @Override
+    public Transaction save(Transaction transaction) {
+        return saveAll(List.of(transaction)).get(0);
+    }
+
+    /*
+        검증을 먼저 끝내고 한 번에 붙여 쓴다. (일부만 쓰인 batch 없음)
+        mmap 영역에 바로 쓰고, 쓴 범위와 그 앞 record 까지 force 한 뒤 돌아온다.
+     */
+    @Override
+    public List<Transaction> saveAll(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return transactions;
+        }
+        long[] transactionIds = new long[transactions.size()];
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            Objects.requireNonNull(transaction.getAccount(), "transaction account");
+            Objects.requireNonNull(transaction.getTransactedAt(), "transactedAt");
+            transactionIds[i] = HexFormat.fromHexDigitsToLong(transaction.getTransactionId());
+        }
+        //트랜잭션 밖에서 저장하면 바로 확정이다.
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        long firstSlot;
+        appendLock.lock();
+        try {
+            firstSlot = nextSlot;
+            for (int i = 0; i < transactions.size(); i++) {
+                append(transactions.get(i), transactionIds[i], inTransaction ? 0 : COMMITTED);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        forceUpTo(firstSlot + transactions.size());
+        if (inTransaction) {
+            markOnCompletion(firstSlot, transactions.size());
+        }
+        return transactions;
+    }
+
+    //appendLock 을 잡고 호출한다. id 를 마지막에 써서 중간에 멈춘 record 는 빈 자리로 읽힌다.
+    private void append(Transaction transaction, long transactionId, byte flag) {
+        long slot = nextSlot;
+        Segment segment = segmentForAppend(slot);
+        int position = position(slot);
+        long id = slot + 1;
+        long accountId = transaction.getAccount().getId();
+        LocalDateTime transactedAt = transaction.getTransactedAt();
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putLong(position + 8, transactionId);
+        buffer.putLong(position + 16, accountId);
+        buffer.putLong(position + 24, accountHeads.getOrDefault(accountId, 0L));
+        buffer.putLong(position + 32, valueOf(transaction.getAmount()));
+        buffer.putLong(position + 40, valueOf(transaction.getBalanceSnapshot()));
+        buffer.putLong(position + 48, transactedAt.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(position + 56, transactedAt.getNano());
+        buffer.put(position + 60, (byte) transaction.getTransactionType().ordinal());
+        buffer.put(position + 61, (byte) transaction.getTransactionResultType().ordinal());
+        buffer.put(position + 62, flag);
+        buffer.putLong(position, id);
+        nextSlot++;
+        //읽는 쪽은 index/head 를 거쳐서 record 를 찾으므로 record 를 다 쓴 뒤에 갱신한다.
+        segment.index((int) (slot % recordsPerSegment) / indexBlockSize, transactionId);
+        accountHeads.put(accountId, id);
+        transaction.setId(id);
+    }
+
+    private Segment segmentForAppend(long slot) {
+        int index = (int) (slot / recordsPerSegment);
+        if (index < segments.size()) {
+            return segments.get(index);
+        }
+        try {
+            Segment segment = mapSegment(directory.resolve(
+                    String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX)));
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to create transaction segment " + index, e);
+        }
+    }
+
+    private Segment mapSegment(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        return new Segment(channel, buffer, recordsPerSegment / indexBlockSize);
+    }
+
+    /*
+        end 앞의 record 를 durable 위치부터 순서대로 force 한다. (앞 batch 의 force 가 끝나기 전에 돌아가지 않는다)
+        먼저 lock 을 잡은 호출이 그때까지 붙여 쓴 다른 batch 까지 함께 내린다. (group fsync)
+     */
+    private void forceUpTo(long end) {
+        if (durableSlot >= end) {
+            return;
+        }
+        forceLock.lock();
+        try {
+            if (durableSlot >= end) {
+                return;
+            }
+            //nextSlot 앞의 record 는 모두 다 쓴 상태다.
+            long appended = nextSlot;
+            force(durableSlot, (int) (appended - durableSlot));
+            durableSlot = appended;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    private void force(long firstSlot, int count) {
+        long slot = firstSlot;
+        long end = firstSlot + count;
+        while (slot < end) {
+            Segment segment = segments.get((int) (slot / recordsPerSegment));
+            long segmentEnd = Math.min(end, (slot / recordsPerSegment + 1) * recordsPerSegment);
+            segment.buffer.force(position(slot), (int) (segmentEnd - slot) * RECORD_SIZE);
+            slot = segmentEnd;
+        }
+    }
+
+    //DB 트랜잭션 안에서 저장했으면 커밋될 때 확정하고, 롤백될 때 같이 지운다.
+    private void markOnCompletion(long firstSlot, int count) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                mark(firstSlot, count, COMMITTED);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    mark(firstSlot, count, ROLLED_BACK);
+                }
+            }
+        });
+    }
+
+    private void mark(long firstSlot, int count, byte flag) {
+        for (long slot = firstSlot; slot < firstSlot + count; slot++) {
+            segments.get((int) (slot / recordsPerSegment)).buffer.put(position(slot) + 62, flag);
+        }
+        force(firstSlot, count);
+    }
+
+    @Override
+    public Optional<Transaction> findByTransactionId(String transactionId) {
+        return findRecord(transactionId).map(record -> Transaction.builder()
+                .id(record.id)
+                .transactionType(record.transactionType)
+                .transactionResultType(record.transactionResultType)
+                //id 만 가진 참조, 계좌를 읽어야 하면 그때 조회한다.
+                .account(accountRepository.getReferenceById(record.accountId))
+                .amount(record.amount)
+                .balanceSnapshot(record.balanceSnapshot)
+                .transactionId(transactionId)
+                .transactedAt(record.transactedAt)
+                .build());
+    }
+
+    @Override
+    public Optional<TransactionDto> findTransactionDtoByTransactionId(String transactionId) {
+        return findRecord(transactionId).flatMap(record -> accountRepository.findById(record.accountId)
+                .map(account -> new TransactionDto(account.getAccountNumber(), record.transactionType,
+                        record.transactionResultType, record.amount, record.balanceSnapshot,
+                        transactionId, record.transactedAt)));
+    }
+
+    @Override
+    public Set<String> findExistingTransactionIds(Collection<String> transactionIds) {
+        return transactionIds.stream()
+                .filter(transactionId -> findRecord(transactionId).isPresent())
+                .collect(Collectors.toSet());
+    }
+
+    //최소/최대값 범위에 드는 segment, block 만 읽는다. 거래 id 는 시간순이라 보통 block 하나다.
+    private Optional<Entry> findRecord(String transactionId) {
+        long target;
+        try {
+            target = HexFormat.fromHexDigitsToLong(transactionId);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        for (int s = 0; s < segments.size(); s++) {
+            Segment segment = segments.get(s);
+            if (!segment.mayContain(target)) {
+                continue;
+            }
+            for (int block = 0; block < segment.blockMin.length(); block++) {
+                if (target < segment.blockMin.get(block) || target > segment.blockMax.get(block)) {
+                    continue;
+                }
+                for (int i = block * indexBlockSize; i < (block + 1) * indexBlockSize; i++) {
+                    long slot = (long) s * recordsPerSegment + i;
+                    int position = i * RECORD_SIZE;
+                    if (segment.buffer.getLong(position) != slot + 1) {
+                        break;
+                    }
+                    if (segment.buffer.getLong(position + 8) == target) {
+                        Entry record = read(slot + 1);
+                        return record.committed ? Optional.of(record) : Optional.empty();
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<TransactionHistoryItem> findHistory(Long accountId,
+                                                    TransactionType transactionType,
+                                                    TransactionResultType transactionResultType,
+                                                    Limit limit) {
+        return walk(accountHeads.getOrDefault(accountId, 0L), transactionType, transactionResultType, limit);
+    }
+
+    /*
+        커서의 record 에서 바로 이전 record 로 넘어가므로 몇 번째 페이지든 비용이 같다.
+        순서는 붙여 쓴 순서라서 커서의 transactedAt 은 쓰지 않는다.
+     */
+    @Override
+    public List<TransactionHistoryItem> findHistoryAfter(Long accountId,
+                                                         TransactionType transactionType,
+                                                         TransactionResultType transactionResultType,
+                                                         LocalDateTime transactedAt,
+                                                         Long id,
+                                                         Limit limit) {
+        if (id <= 0 || id > nextSlot) {
+            return List.of();
+        }
+        Entry cursor = read(id);
+        if (cursor == null || cursor.accountId != accountId) {
+            return List.of();
+        }
+        return walk(cursor.previousId, transactionType, transactionResultType, limit);
+    }
+
+    private List<TransactionHistoryItem> walk(long id,
+                                              TransactionType transactionType,
+                                              TransactionResultType transactionResultType,
+                                              Limit limit) {
+        int max = limit.isLimited() ? limit.max() : Integer.MAX_VALUE;
+        List<TransactionHistoryItem> items = new ArrayList<>(Math.min(max, 100));
+        while (id != 0L && items.size() < max) {
+            Entry record = read(id);
+            if (record == null) {
+                break;
+            }
+            if (record.committed
+                    && (transactionType == null || record.transactionType == transactionType)
+                    && (transactionResultType == null || record.transactionResultType == transactionResultType)) {
+                items.add(new TransactionHistoryItem(record.id, HEX.toHexDigits(record.transactionId),
+                        record.transactionType, record.transactionResultType, record.amount,
+                        record.balanceSnapshot, record.transactedAt));
+            }
+            id = record.previousId;
+        }
+        return items;
+    }
+
+    private Entry read(long id) {
+        long slot = id - 1;
+        MappedByteBuffer buffer = segments.get((int) (slot / recordsPerSegment)).buffer;
+        int position = position(slot);
+        if (buffer.getLong(position) != id) {
+            return null;
+        }
+        return new Entry(
+                id,
+                buffer.getLong(position + 8),
+                buffer.getLong(position + 16),
+                buffer.getLong(position + 24),
+                nullable(buffer.getLong(position + 32)),
+                nullable(buffer.getLong(position + 40)),
+                LocalDateTime.ofEpochSecond(buffer.getLong(position + 48), buffer.getInt(position + 56), ZoneOffset.UTC),
+                TRANSACTION_TYPES[buffer.get(position + 60)],
+                TRANSACTION_RESULT_TYPES[buffer.get(position + 61)],
+                buffer.get(position + 62) == COMMITTED);
+    }
+
+    private int position(long slot) {
+        return (int) (slot % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    private static long valueOf(Long value) {
+        return value == null ? NULL_VALUE : value;
+    }
+
+    private static Long nullable(long value) {
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private record Entry(long id, long transactionId, long accountId, long previousId,
+                          Long amount, Long balanceSnapshot, LocalDateTime transactedAt,
+                          TransactionType transactionType, TransactionResultType transactionResultType,
+                          boolean committed) {
+    }
+
+    private static final class Segment {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        //block 별 거래 id 최소/최대값 (sparse index)
+        private final AtomicLongArray blockMin;
+        private final AtomicLongArray blockMax;
+        private volatile long min = Long.MAX_VALUE;
+        private volatile long max = Long.MIN_VALUE;
+
+        private Segment(FileChannel channel, MappedByteBuffer buffer, int blocks) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.blockMin = new AtomicLongArray(blocks);
+            this.blockMax = new AtomicLongArray(blocks);
+            for (int i = 0; i < blocks; i++) {
+                blockMin.set(i, Long.MAX_VALUE);
+                blockMax.set(i, Long.MIN_VALUE);
+            }
+        }
+
+        //appendLock (또는 open) 에서만 호출한다.
+        private void index(int block, long transactionId) {
+            if (transactionId < blockMin.get(block)) {
+                blockMin.set(block, transactionId);
+            }
+            if (transactionId > blockMax.get(block)) {
+                blockMax.set(block, transactionId);
+            }
+            min = Math.min(min, transactionId);
+            max = Math.max(max, transactionId);
+        }
+
+        private boolean mayContain(long transactionId) {
+            return transactionId >= min && transactionId <= max;
+        }
+    }
+}
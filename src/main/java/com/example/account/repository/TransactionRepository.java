@@ -1,11 +1,61 @@
 package com.example.account.repository;
 
 import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistoryItem;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface TransactionRepository extends JpaRepository<Transaction,Long> {
 
-    Optional<Transaction> findByTransactionId(String transactionId);
+    //TransactionDto 가 계좌번호를 쓰므로 계좌를 함께 읽는다.
+    @Query("select t from Transaction t join fetch t.account where t.transactionId = :transactionId")
+    Optional<Transaction> findByTransactionId(@Param("transactionId") String transactionId);
+
+    //거래 확인용. 엔티티를 만들지 않고 필요한 컬럼만 읽는다.
+    @Query("select new com.example.account.dto.TransactionDto(a.accountNumber, t.transactionType, " +
+            "t.transactionResultType, t.amount, t.balanceSnapshot, t.transactionId, t.transactedAt) " +
+            "from Transaction t join t.account a where t.transactionId = :transactionId")
+    Optional<TransactionDto> findTransactionDtoByTransactionId(@Param("transactionId") String transactionId);
+
+    //거래 id 대사용. transaction_id 인덱스만 읽는다.
+    @Query("select t.transactionId from Transaction t where t.transactionId in :transactionIds")
+    List<String> findTransactionIdsIn(@Param("transactionIds") Collection<String> transactionIds);
+
+    //계좌별 거래 내역 첫 페이지 (최신순). (account_id, transacted_at, id) 인덱스를 역순으로 읽는다.
+    @Query("select new com.example.account.dto.TransactionHistoryItem(t.id, t.transactionId, " +
+            "t.transactionType, t.transactionResultType, t.amount, t.balanceSnapshot, t.transactedAt) " +
+            "from Transaction t where t.account.id = :accountId " +
+            "and (:transactionType is null or t.transactionType = :transactionType) " +
+            "and (:transactionResultType is null or t.transactionResultType = :transactionResultType) " +
+            "order by t.transactedAt desc, t.id desc")
+    List<TransactionHistoryItem> findHistory(@Param("accountId") Long accountId,
+                                             @Param("transactionType") TransactionType transactionType,
+                                             @Param("transactionResultType") TransactionResultType transactionResultType,
+                                             Limit limit);
+
+    //커서 (transactedAt, id) 보다 앞선 거래부터. 인덱스에서 바로 시작 위치를 찾으므로 페이지 깊이와 무관하다.
+    @Query("select new com.example.account.dto.TransactionHistoryItem(t.id, t.transactionId, " +
+            "t.transactionType, t.transactionResultType, t.amount, t.balanceSnapshot, t.transactedAt) " +
+            "from Transaction t where t.account.id = :accountId " +
+            "and t.transactedAt <= :transactedAt " +
+            "and (t.transactedAt < :transactedAt or t.id < :id) " +
+            "and (:transactionType is null or t.transactionType = :transactionType) " +
+            "and (:transactionResultType is null or t.transactionResultType = :transactionResultType) " +
+            "order by t.transactedAt desc, t.id desc")
+    List<TransactionHistoryItem> findHistoryAfter(@Param("accountId") Long accountId,
+                                                  @Param("transactionType") TransactionType transactionType,
+                                                  @Param("transactionResultType") TransactionResultType transactionResultType,
+                                                  @Param("transactedAt") LocalDateTime transactedAt,
+                                                  @Param("id") Long id,
+                                                  Limit limit);
 }
@@ -0,0 +1,46 @@
+package com.example.account.repository;
+
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistoryItem;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 거래 내역 저장소. 서비스는 TransactionRepository 대신 이 인터페이스를 쓴다.
+ * jpa: transaction 테이블 (기본값), mapped: mmap segment 파일 (account.transaction.store)
+ */
+public interface TransactionStore {
+    Transaction save(Transaction transaction);
+
+    List<Transaction> saveAll(List<Transaction> transactions);
+
+    //반환한 거래의 계좌는 id 만 쓰거나 트랜잭션 안에서 읽는다.
+    Optional<Transaction> findByTransactionId(String transactionId);
+
+    Optional<TransactionDto> findTransactionDtoByTransactionId(String transactionId);
+
+    //저장된 거래 id 만 돌려준다. (BalanceLedger 복구 대사용)
+    Set<String> findExistingTransactionIds(Collection<String> transactionIds);
+
+    //계좌별 거래 내역 첫 페이지 (최신순)
+    List<TransactionHistoryItem> findHistory(Long accountId,
+                                             TransactionType transactionType,
+                                             TransactionResultType transactionResultType,
+                                             Limit limit);
+
+    //커서 (transactedAt, id) 다음 페이지
+    List<TransactionHistoryItem> findHistoryAfter(Long accountId,
+                                                  TransactionType transactionType,
+                                                  TransactionResultType transactionResultType,
+                                                  LocalDateTime transactedAt,
+                                                  Long id,
+                                                  Limit limit);
+}
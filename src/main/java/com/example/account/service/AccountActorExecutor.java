@@ -0,0 +1,203 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 계좌 단위 single writer (actor 모드, account.actor.enabled=true)
+ * 계좌번호 해시로 고정 개수의 단일 스레드 worker 중 하나를 고르고,
+ * 같은 계좌의 거래는 모두 그 worker 에서 순서대로 실행한다. (락 없이 직렬화)
+ * LocalLockService 와 같이 단일 인스턴스 또는 계좌별 sticky 라우팅 환경에서만 쓴다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.actor.enabled", havingValue = "true")
+public class AccountActorExecutor {
+    private final ThreadPoolExecutor[] workers;
+    private final Thread[] workerThreads;
+    private final int mask;
+
+    public AccountActorExecutor(@Value("${account.actor.workers:16}") int workers,
+                                @Value("${account.actor.mailbox-size:1000}") int mailboxSize) {
+        int size = workers <= 1 ? 1 : Integer.highestOneBit(workers - 1) << 1; //2의 거듭제곱으로 올림
+        this.workers = new ThreadPoolExecutor[size];
+        this.workerThreads = new Thread[size];
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            //mailbox 가 가득 차면 RejectedExecutionException
+            this.workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(mailboxSize), runnable -> {
+                Thread thread = new Thread(runnable, "account-actor-" + index);
+                thread.setDaemon(true);
+                workerThreads[index] = thread;
+                return thread;
+            });
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * 계좌의 worker 에서 실행하고 결과를 기다린다.
+     *
+     * @param waitTime 실행이 시작되기까지 기다리는 시간 (ms), 넘으면 실행하지 않고 ACCOUNT_TRANSACTION_LOCK
+     */
+    public <T> T execute(String accountNumber, long waitTime, Callable<T> task) throws Exception {
+        int index = getIndex(accountNumber);
+        if (Thread.currentThread() == workerThreads[index]) {
+            //같은 worker 안에서 다시 호출된 경우
+            return task.call();
+        }
+        ActorTask<T> actorTask = new ActorTask<>(task);
+        enqueue(index, actorTask);
+        return actorTask.await(waitTime);
+    }
+
+    //결과를 기다리지 않는다. (비동기 endpoint)
+    public <T> CompletableFuture<T> submit(String accountNumber, Callable<T> task) {
+        ActorTask<T> actorTask = new ActorTask<>(task);
+        enqueue(getIndex(accountNumber), actorTask);
+        return actorTask.result;
+    }
+
+    /*
+        여러 계좌를 함께 변경할 때 (일괄 사용)
+        관련 worker 를 번호 순서대로 멈춰 세운 뒤 호출 스레드에서 실행한다. (순서대로 잡으므로 교착 없음)
+     */
+    public <T> T executeExclusively(Collection<String> accountNumbers, long waitTime,
+                                    Callable<T> task) throws Exception {
+        int[] indexes = accountNumbers.stream()
+                .mapToInt(this::getIndex)
+                .distinct()
+                .sorted()
+                .toArray();
+        long deadline = System.currentTimeMillis() + waitTime;
+        CountDownLatch release = new CountDownLatch(1);
+        ActorTask<?>[] barriers = new ActorTask<?>[indexes.length];
+        try {
+            for (int i = 0; i < indexes.length; i++) {
+                CountDownLatch parked = new CountDownLatch(1);
+                barriers[i] = new ActorTask<>(() -> {
+                    parked.countDown();
+                    release.await();
+                    return null;
+                });
+                enqueue(indexes[i], barriers[i]);
+                long remaining = deadline - System.currentTimeMillis();
+                if (!parked.await(Math.max(remaining, 0L), TimeUnit.MILLISECONDS)) {
+                    log.error("===========actor acquisition failed===========");
+                    throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+                }
+            }
+            return task.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        } finally {
+            release.countDown();
+            for (ActorTask<?> barrier : barriers) {
+                if (barrier != null) {
+                    barrier.cancel();
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    private void enqueue(int index, ActorTask<?> actorTask) {
+        try {
+            workers[index].execute(actorTask);
+        } catch (RejectedExecutionException e) {
+            log.error("===========actor mailbox is full=========== {}", index);
+            throw new AccountException(ErrorCode.ACCOUNT_LOCK_QUEUE_FULL);
+        }
+    }
+
+    private int getIndex(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /*
+        시작 전에만 취소할 수 있는 작업
+        이미 시작한 작업은 끝까지 기다려서 호출자에게 실패로 응답했는데 반영되는 일이 없게 한다.
+     */
+    private static final class ActorTask<T> implements Runnable {
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int CANCELLED = 2;
+
+        private final Callable<T> task;
+        private final AtomicInteger state = new AtomicInteger(NEW);
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private ActorTask(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(NEW, RUNNING)) {
+                return;
+            }
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        private boolean cancel() {
+            return state.compareAndSet(NEW, CANCELLED);
+        }
+
+        private T await(long waitTime) throws Exception {
+            try {
+                return result.get(waitTime, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                if (cancel()) {
+                    log.error("===========actor acquisition failed===========");
+                    throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+                }
+                return unwrap(result::join);
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+
+        private static <T> T unwrap(Callable<T> join) throws Exception {
+            try {
+                return join.call();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+
+        private static Exception rethrow(Throwable cause) {
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            if (cause instanceof Exception exception) {
+                return exception;
+            }
+            return new IllegalStateException(cause);
+        }
+    }
+}
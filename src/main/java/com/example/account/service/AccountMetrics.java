@@ -0,0 +1,173 @@
+package com.example.account.service;
+
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hot path 지표 (actuator /actuator/prometheus)
+ * - account.lock.wait / hold / release : 계좌 락 대기, 점유, 해제 시간 (계좌번호 해시 bucket 별)
+ * - account.lock.failures : 락 획득 실패 (bucket, errorCode 별)
+ * - account.transaction.phase : TransactionService 메서드별 validation / db / commit 시간
+ * - account.errors : 응답한 ErrorCode 별 횟수
+ * 계좌번호를 그대로 tag 로 쓰면 시계열이 계좌 수만큼 생기므로 bucket 으로 묶는다.
+ *
+ * commit 시간은 트랜잭션 매니저의 커밋 전후로 잰다. (Hibernate flush + JDBC commit)
+ */
+@Component
+public class AccountMetrics implements TransactionExecutionListener {
+    static final String PHASE_VALIDATION = "validation";
+    static final String PHASE_DB = "db";
+    static final String PHASE_COMMIT = "commit";
+    private static final String ACQUIRED = "ACQUIRED";
+
+    private final MeterRegistry meterRegistry;
+    private final int lockBuckets;
+    private final Timer[] lockAcquired;
+    private final Timer[] lockHold;
+    private final Timer[] lockRelease;
+    private final Map<String, Timer[]> phaseTimers = new ConcurrentHashMap<>();
+    //현재 스레드에서 실행 중인 TransactionService 메서드의 db, commit 누적 시간 (ns)
+    private final ThreadLocal<Phases> phases = new ThreadLocal<>();
+
+    public AccountMetrics(MeterRegistry meterRegistry,
+                          @Value("${account.metrics.lock-buckets:16}") int lockBuckets) {
+        this.meterRegistry = meterRegistry;
+        this.lockBuckets = lockBuckets;
+        this.lockAcquired = new Timer[lockBuckets];
+        this.lockHold = new Timer[lockBuckets];
+        this.lockRelease = new Timer[lockBuckets];
+        for (int i = 0; i < lockBuckets; i++) {
+            String bucket = String.valueOf(i);
+            lockAcquired[i] = lockWaitTimer(bucket, ACQUIRED);
+            lockHold[i] = Timer.builder("account.lock.hold")
+                    .tag("bucket", bucket)
+                    .register(meterRegistry);
+            lockRelease[i] = Timer.builder("account.lock.release")
+                    .tag("bucket", bucket)
+                    .register(meterRegistry);
+        }
+    }
+
+    int bucket(String accountNumber) {
+        return Math.floorMod(accountNumber.hashCode(), lockBuckets);
+    }
+
+    public void lockAcquired(String accountNumber, long waitNanos) {
+        lockAcquired[bucket(accountNumber)].record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    //실패는 드물어서 그때그때 등록한다.
+    public void lockFailed(String accountNumber, ErrorCode errorCode, long waitNanos) {
+        String bucket = String.valueOf(bucket(accountNumber));
+        lockWaitTimer(bucket, errorCode.name()).record(waitNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("account.lock.failures")
+                .tag("bucket", bucket)
+                .tag("errorCode", errorCode.name())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void lockHeld(String accountNumber, long holdNanos) {
+        lockHold[bucket(accountNumber)].record(holdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void lockReleased(String accountNumber, long releaseNanos) {
+        lockRelease[bucket(accountNumber)].record(releaseNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void error(ErrorCode errorCode) {
+        Counter.builder("account.errors")
+                .tag("errorCode", errorCode.name())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * TransactionService 메서드 시작. 이미 측정 중이면(중첩 호출) false
+     */
+    public boolean startPhases() {
+        if (phases.get() != null) {
+            return false;
+        }
+        phases.set(new Phases());
+        return true;
+    }
+
+    public void addDbTime(long nanos) {
+        Phases current = phases.get();
+        if (current != null) {
+            current.db += nanos;
+        }
+    }
+
+    /**
+     * validation = 전체 - db - commit
+     */
+    public void endPhases(String operation, long totalNanos) {
+        Phases current = phases.get();
+        phases.remove();
+        if (current == null) {
+            return;
+        }
+        Timer[] timers = phaseTimers.computeIfAbsent(operation, this::phaseTimers);
+        timers[0].record(Math.max(0L, totalNanos - current.db - current.commit), TimeUnit.NANOSECONDS);
+        timers[1].record(current.db, TimeUnit.NANOSECONDS);
+        if (current.commit > 0) {
+            timers[2].record(current.commit, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void beforeCommit(TransactionExecution transaction) {
+        Phases current = phases.get();
+        if (current != null) {
+            current.commitStartedAt = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        Phases current = phases.get();
+        if (current != null && current.commitStartedAt != 0L) {
+            current.commit += System.nanoTime() - current.commitStartedAt;
+            current.commitStartedAt = 0L;
+        }
+    }
+
+    private Timer lockWaitTimer(String bucket, String result) {
+        return Timer.builder("account.lock.wait")
+                .tag("bucket", bucket)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Timer[] phaseTimers(String operation) {
+        return new Timer[]{
+                phaseTimer(operation, PHASE_VALIDATION),
+                phaseTimer(operation, PHASE_DB),
+                phaseTimer(operation, PHASE_COMMIT)};
+    }
+
+    private Timer phaseTimer(String operation, String phase) {
+        return Timer.builder("account.transaction.phase")
+                .tag("operation", operation)
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+
+    private static class Phases {
+        private long db;
+        private long commit;
+        private long commitStartedAt;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.account.service;
+
+/**
+ * 신규 계좌번호 발급
+ * 구현체는 DB 에서 번호 블록을 받아와 노드 안에서 나눠준다.
+ */
+public interface AccountNumberAllocator {
+    String nextAccountNumber();
+}
@@ -5,23 +5,31 @@ import com.example.account.domain.AccountStatus;
 import com.example.account.domain.AccountUser;
 import com.example.account.dto.AccountInfo;
 import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountBalanceSlotRepository;
 import com.example.account.repository.AccountRepository;
 import com.example.account.repository.AccountUserRepository;
 import com.example.account.type.ErrorCode;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import com.example.account.dto.AccountDto;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class AccountService {
     private final AccountRepository accountRepository; //내가만든 빈을 다른빈에 넣어주고 싶을떄
     private final AccountUserRepository accountUserRepository;
+    private final AccountNumberAllocator accountNumberAllocator;
+    private final AccountSnapshotCache accountSnapshotCache;
+    private final AccountBalanceSlotRepository accountBalanceSlotRepository;
+
+    //MEMORY 차감 모드의 잔액 원장 (account 테이블 잔액은 checkpoint 때 갱신)
+    @Autowired(required = false)
+    private BalanceLedger balanceLedger;
 
     /*
         사용자가 있는지 확인 (조회)
@@ -35,9 +43,7 @@ public class AccountService {
         validateCreateAccount(accountUser); //10개 초과시
 
 
-        String newAccountNumber=accountRepository.findFirstByOrderByIdDesc()
-                .map(account -> (Integer.parseInt(account.getAccountNumber()))+1+"")
-                .orElse("1000000000");
+        String newAccountNumber=accountNumberAllocator.nextAccountNumber();
 
       return AccountDto.fromEntity(
               accountRepository.save(Account.builder()
@@ -80,12 +86,18 @@ public class AccountService {
         Account account= accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(()->new AccountException(ErrorCode.ACCOUNT_NOT_FOUND)); //계좌번호가 없는경우
 
+        if (balanceLedger != null) {
+            //엔티티 전체를 다시 쓰므로 원장의 잔액으로 맞춘다.
+            balanceLedger.balance(account.getId()).ifPresent(account::setBalance);
+        }
         validateDeleteAccount( accountUser,account);
 
         account.setAccountStatus(AccountStatus.UNREGISTERED);
         account.setUnRegisteredAt(LocalDateTime.now());
 
         accountRepository.save(account);
+        //상태가 바뀌었으므로 캐시된 계좌 정보를 지운다.
+        accountSnapshotCache.evict(accountNumber);
         return AccountDto.fromEntity(account);
 
     }
@@ -99,16 +111,24 @@ public class AccountService {
         if(account.getBalance()>0){
             throw new AccountException(ErrorCode.BALANCE_NOT_EMPTY);
         }
+        //잔액이 slot 으로 나뉜 계좌
+        if(account.hasSubBalances()
+                && accountBalanceSlotRepository.sumBalanceByAccountId(account.getId())>0){
+            throw new AccountException(ErrorCode.BALANCE_NOT_EMPTY);
+        }
 
     }
-    @Transactional
-    public List<AccountDto> getAccountsByUserId(Long userId) {
-        AccountUser accountUser = getAccountUser(userId);
-        List<Account> accounts=accountRepository.findByAccountUser(accountUser);
-
-        return accounts.stream().map(AccountDto::fromEntity)
-                .collect(Collectors.toList());
-
-
+    //조회 전용: projection 으로 읽으므로 영속성 컨텍스트와 dirty checking 을 거치지 않는다.
+    @Transactional(readOnly = true)
+    public List<AccountInfo> getAccountsByUserId(Long userId) {
+        if (!accountUserRepository.existsById(userId)) {
+            throw new AccountException(ErrorCode.USER_NOT_FOUND);
+        }
+        List<AccountInfo> accountInfos = accountRepository.findAccountInfosByUserId(userId);
+        if (balanceLedger != null) {
+            accountInfos.forEach(accountInfo -> balanceLedger.balance(accountInfo.getAccountNumber())
+                    .ifPresent(accountInfo::setBalance));
+        }
+        return accountInfos;
     }
 }
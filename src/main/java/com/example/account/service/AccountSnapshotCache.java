@@ -0,0 +1,126 @@
+package com.example.account.service;
+
+import com.example.account.dto.AccountSnapshot;
+import com.example.account.repository.AccountRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 계좌번호 -> 계좌 id, 소유자 id, 상태 read-through 캐시
+ * 1차는 JVM 내부(Caffeine), 2차는 redis. 둘 다 없으면 DB 에서 읽어 채운다.
+ * 상태가 바뀌면 evict 하고, 다른 노드의 1차 캐시는 topic 으로 지운다.
+ */
+@Slf4j
+@Component
+public class AccountSnapshotCache {
+    private static final String MAP_NAME = "account-snapshot";
+    private static final String EVICT_TOPIC = "account-snapshot-evict";
+
+    private final AccountRepository accountRepository;
+    private final RedissonClient redissonClient;
+    private final Cache<String, AccountSnapshot> localCache;
+    private final long remoteTtl;
+
+    private RMapCache<String, String> remoteCache;
+    private RTopic evictTopic;
+
+    public AccountSnapshotCache(AccountRepository accountRepository,
+                                RedissonClient redissonClient,
+                                @Value("${account.cache.local-size:100000}") long localSize,
+                                @Value("${account.cache.local-ttl:60000}") long localTtl,
+                                @Value("${account.cache.remote-ttl:600000}") long remoteTtl) {
+        this.accountRepository = accountRepository;
+        this.redissonClient = redissonClient;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(localSize)
+                .expireAfterWrite(Duration.ofMillis(localTtl))
+                .build();
+        this.remoteTtl = remoteTtl;
+    }
+
+    @PostConstruct
+    public void init() {
+        remoteCache = redissonClient.getMapCache(MAP_NAME, StringCodec.INSTANCE);
+        evictTopic = redissonClient.getTopic(EVICT_TOPIC, StringCodec.INSTANCE);
+        evictTopic.addListener(String.class, (channel, accountNumber) ->
+                localCache.invalidate(accountNumber));
+    }
+
+    public Optional<AccountSnapshot> find(String accountNumber) {
+        AccountSnapshot snapshot = localCache.getIfPresent(accountNumber);
+        if (snapshot != null) {
+            return Optional.of(snapshot);
+        }
+        snapshot = findRemote(accountNumber);
+        if (snapshot == null) {
+            snapshot = accountRepository.findByAccountNumber(accountNumber)
+                    .map(AccountSnapshot::fromEntity)
+                    .orElse(null);
+            if (snapshot == null) {
+                return Optional.empty();
+            }
+            putRemote(accountNumber, snapshot);
+        }
+        localCache.put(accountNumber, snapshot);
+        return Optional.of(snapshot);
+    }
+
+    /*
+        커밋 전에 지우면 다른 요청이 옛 상태를 다시 채울 수 있으므로
+        지금 한 번, 커밋 후에 한 번 더 지운다.
+     */
+    public void evict(String accountNumber) {
+        evictNow(accountNumber);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(accountNumber);
+                }
+            });
+        }
+    }
+
+    private void evictNow(String accountNumber) {
+        localCache.invalidate(accountNumber);
+        try {
+            remoteCache.fastRemove(accountNumber);
+            evictTopic.publish(accountNumber);
+        } catch (RuntimeException e) {
+            log.warn("Failed to evict remote account snapshot. {}", accountNumber, e);
+        }
+    }
+
+    //redis 장애 시에는 DB 로 읽는다.
+    private AccountSnapshot findRemote(String accountNumber) {
+        try {
+            String value = remoteCache.get(accountNumber);
+            return value == null ? null : AccountSnapshot.decode(value);
+        } catch (RuntimeException e) {
+            log.warn("Failed to read remote account snapshot. {}", accountNumber, e);
+            return null;
+        }
+    }
+
+    private void putRemote(String accountNumber, AccountSnapshot snapshot) {
+        try {
+            remoteCache.fastPut(accountNumber, snapshot.encode(), remoteTtl, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            log.warn("Failed to write remote account snapshot. {}", accountNumber, e);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionStore;
+import com.example.account.type.ErrorCode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MEMORY 차감 모드의 잔액 원장. (account.transaction.debit-mode=MEMORY)
+ * 계좌 잔액을 계좌 id 별 메모리 cell 에 두고, 변경마다 WriteAheadLog 에 변경 후 잔액을 남긴다.
+ * 요청은 커밋 직전에 자기 record 가 fsync 될 때까지 기다리고, flusher 가 fsync-interval 마다 모아서 fsync 한다.
+ * account 테이블의 balance 는 checkpoint-interval 마다 한 번에 갱신하고, 반영된 segment 는 지운다.
+ * 시작할 때 남은 segment 를 replay 해서 account 테이블에 먼저 반영한다. (비정상 종료 복구)
+ * 거래 내역(Transaction)은 그대로 트랜잭션 안에서 저장하고, 롤백되면 잔액을 되돌리는 record 를 남긴다.
+ * 커밋 직전 fsync 후 커밋 전에 종료되면 거래 내역 없이 잔액만 바뀔 수 있다.
+ * 그래서 트랜잭션 안의 변경은 pending record 로 남기고, 복구 때 거래 내역이 없는 pending 변경은 차액만큼 되돌린다.
+ * pending record 가 있는 segment 는 트랜잭션이 끝날 때까지 checkpoint 가 지우지 않는다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.transaction.debit-mode", havingValue = "MEMORY")
+public class BalanceLedger {
+    private final AccountRepository accountRepository;
+    private final TransactionStore transactionStore;
+    private final TransactionTemplate transactionTemplate;
+    private final WriteAheadLog writeAheadLog;
+    private final long fsyncInterval;
+    private final long fsyncTimeout;
+    private final long checkpointInterval;
+    private final Map<Long, Cell> cells = new ConcurrentHashMap<>();
+    //계좌 목록 조회용 계좌번호 -> id
+    private final Map<String, Long> accountIds = new ConcurrentHashMap<>();
+    //마지막 checkpoint 이후 잔액이 바뀐 계좌
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+
+    private volatile boolean running;
+    private Thread flusher;
+    private Thread checkpointer;
+
+    public BalanceLedger(AccountRepository accountRepository,
+                         TransactionStore transactionStore,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${account.memory-ledger.wal-dir:data/wal}") String walDir,
+                         @Value("${account.memory-ledger.segment-size:50331648}") int segmentSize,
+                         @Value("${account.memory-ledger.fsync-interval:2}") long fsyncInterval,
+                         @Value("${account.memory-ledger.fsync-timeout:1000}") long fsyncTimeout,
+                         @Value("${account.memory-ledger.checkpoint-interval:1000}") long checkpointInterval) {
+        this(accountRepository, transactionStore, new TransactionTemplate(transactionManager), Paths.get(walDir),
+                segmentSize, fsyncInterval, fsyncTimeout, checkpointInterval);
+    }
+
+    BalanceLedger(AccountRepository accountRepository,
+                  TransactionStore transactionStore,
+                  TransactionTemplate transactionTemplate,
+                  Path walDir,
+                  int segmentSize,
+                  long fsyncInterval,
+                  long fsyncTimeout,
+                  long checkpointInterval) {
+        this.accountRepository = accountRepository;
+        this.transactionStore = transactionStore;
+        this.transactionTemplate = transactionTemplate;
+        this.writeAheadLog = new WriteAheadLog(walDir, segmentSize);
+        this.fsyncInterval = fsyncInterval;
+        this.fsyncTimeout = fsyncTimeout;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    //요청을 받기 전에 WAL 을 account 테이블에 반영하고 새 segment 를 연다.
+    @PostConstruct
+    public void start() throws IOException {
+        recover();
+        running = true;
+        flusher = startThread(this::flushLoop, "balance-ledger-flusher");
+        checkpointer = startThread(this::checkpointLoop, "balance-ledger-checkpointer");
+    }
+
+    void recover() throws IOException {
+        WriteAheadLog.Replay replay = writeAheadLog.replay();
+        Map<Long, Long> balances = new HashMap<>(replay.balances());
+        reconcile(balances, replay.pending());
+        writeAheadLog.open();
+        List<Path> replayed = writeAheadLog.previousSegments();
+        if (!balances.isEmpty()) {
+            writeBalances(balances);
+            log.info("balance ledger recovered {} accounts from wal", balances.size());
+        }
+        writeAheadLog.delete(replayed);
+    }
+
+    //거래 내역이 커밋되지 않은 pending 변경은 잔액에서 되돌린다.
+    private void reconcile(Map<Long, Long> balances, Map<Long, WriteAheadLog.Change> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, Long> transactionIds = pending.keySet().stream()
+                .collect(Collectors.toMap(TransactionIdGenerator::toString, id -> id));
+        Set<String> committed = transactionStore.findExistingTransactionIds(transactionIds.keySet());
+        transactionIds.forEach((transactionId, id) -> {
+            if (committed.contains(transactionId)) {
+                return;
+            }
+            WriteAheadLog.Change change = pending.get(id);
+            balances.merge(change.accountId(), -change.delta(), Long::sum);
+            log.warn("uncommitted wal change reverted. transactionId : {}, accountId : {}, delta : {}",
+                    transactionId, change.accountId(), change.delta());
+        });
+    }
+
+    private static Thread startThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    //남은 record 를 fsync 하고 마지막 checkpoint 를 한다.
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        for (Thread thread : new Thread[]{flusher, checkpointer}) {
+            if (thread != null) {
+                thread.interrupt();
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            }
+        }
+        writeAheadLog.force();
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            //segment 가 남아 있으므로 다음 시작 때 복구된다.
+            log.error("final balance checkpoint failed", e);
+        }
+        writeAheadLog.close();
+    }
+
+    /**
+     * 잔액이 충분하면 차감하고 차감 후 잔액을 돌려준다.
+     * 트랜잭션 안이면 커밋 직전에 fsync 를 기다리고, 롤백되면 되돌린다.
+     */
+    public long use(Long accountId, long amount, long transactionId) {
+        Cell cell = cell(accountId);
+        boolean pending = TransactionSynchronizationManager.isSynchronizationActive();
+        long seq;
+        long balance;
+        cell.lock.lock();
+        try {
+            if (cell.balance < amount) {
+                throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+            }
+            balance = cell.balance - amount;
+            seq = apply(accountId, cell, balance, -amount, transactionId, pending);
+        } finally {
+            cell.lock.unlock();
+        }
+        afterApply(accountId, -amount, seq, transactionId, pending);
+        return balance;
+    }
+
+    //취소 금액을 더하고 더한 후 잔액을 돌려준다.
+    public long cancel(Long accountId, long amount, long transactionId) {
+        return add(accountId, amount, transactionId, true);
+    }
+
+    private long add(Long accountId, long amount, long transactionId, boolean compensateOnRollback) {
+        Cell cell = cell(accountId);
+        boolean pending = compensateOnRollback && TransactionSynchronizationManager.isSynchronizationActive();
+        long seq;
+        long balance;
+        cell.lock.lock();
+        try {
+            balance = cell.balance + amount;
+            seq = apply(accountId, cell, balance, amount, transactionId, pending);
+        } finally {
+            cell.lock.unlock();
+        }
+        if (compensateOnRollback) {
+            afterApply(accountId, amount, seq, transactionId, pending);
+        }
+        return balance;
+    }
+
+    //cell lock 을 잡고 호출한다. checkpoint 가 놓치지 않도록 WAL 보다 dirty 표시가 먼저다.
+    private long apply(Long accountId, Cell cell, long balance, long delta, long transactionId, boolean pending) {
+        dirty.add(accountId);
+        long seq = writeAheadLog.append(accountId, balance, delta, transactionId, pending);
+        cell.balance = balance;
+        return seq;
+    }
+
+    //트랜잭션 밖의 변경은 fsync 되면 확정이다.
+    private void afterApply(Long accountId, long delta, long seq, long transactionId, boolean pending) {
+        if (!pending) {
+            awaitDurable(seq);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                awaitDurable(seq);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status != STATUS_COMMITTED) {
+                        //잔액이 모자라도 되돌린다. (그 사이 사용된 취소 금액)
+                        add(accountId, -delta, transactionId, false);
+                    }
+                } finally {
+                    writeAheadLog.settle(seq);
+                }
+            }
+        });
+    }
+
+    private void awaitDurable(long seq) {
+        try {
+            if (writeAheadLog.awaitDurable(seq, fsyncTimeout)) {
+                return;
+            }
+            log.error("wal fsync timed out. seq : {}", seq);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new AccountException(ErrorCode.INTERNAL_SERVER_ERROR);
+    }
+
+    public OptionalLong balance(Long accountId) {
+        Cell cell = cells.get(accountId);
+        return cell == null ? OptionalLong.empty() : OptionalLong.of(cell.balance);
+    }
+
+    //원장에 올라오지 않은 계좌는 account 테이블의 잔액이 최신이다.
+    public OptionalLong balance(String accountNumber) {
+        Long accountId = accountIds.get(accountNumber);
+        return accountId == null ? OptionalLong.empty() : balance(accountId);
+    }
+
+    //처음 쓰는 계좌는 account 테이블에서 읽어서 올린다. (DB 조회는 map 밖에서)
+    private Cell cell(Long accountId) {
+        Cell cell = cells.get(accountId);
+        if (cell != null) {
+            return cell;
+        }
+        Account account = accountRepository.findById(accountId)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        accountIds.put(account.getAccountNumber(), accountId);
+        return cells.computeIfAbsent(accountId, id -> new Cell(account.getBalance()));
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                writeAheadLog.force();
+                Thread.sleep(fsyncInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("wal fsync failed", e);
+            }
+        }
+    }
+
+    private void checkpointLoop() {
+        while (running) {
+            try {
+                Thread.sleep(checkpointInterval);
+                checkpoint();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.error("balance checkpoint failed", e);
+            }
+        }
+    }
+
+    /*
+        새 segment 로 넘어간 뒤 바뀐 계좌의 현재 잔액을 account 테이블에 쓰고 이전 segment 를 지운다. (pending record 가 남은 segment 부터는 남긴다)
+        이전 segment 의 record 는 모두 rotate 전에 dirty 로 표시됐고 cell 에 반영됐으므로 현재 잔액에 포함된다.
+        쓰기에 실패하면 dirty 를 되돌리고, segment 는 남겨서 다음 checkpoint 나 복구 때 다시 반영한다.
+     */
+    void checkpoint() throws IOException {
+        //바뀐 계좌가 없으면 segment 도 그대로 둔다.
+        if (dirty.isEmpty()) {
+            return;
+        }
+        checkpointLock.lock();
+        try {
+            List<Path> previous = writeAheadLog.rotate();
+            Map<Long, Long> balances = new HashMap<>();
+            for (Long accountId : dirty) {
+                dirty.remove(accountId);
+                Cell cell = cells.get(accountId);
+                cell.lock.lock();
+                try {
+                    balances.put(accountId, cell.balance);
+                } finally {
+                    cell.lock.unlock();
+                }
+            }
+            if (!balances.isEmpty()) {
+                try {
+                    writeBalances(balances);
+                } catch (RuntimeException e) {
+                    dirty.addAll(balances.keySet());
+                    throw e;
+                }
+            }
+            writeAheadLog.delete(previous);
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    private void writeBalances(Map<Long, Long> balances) {
+        transactionTemplate.executeWithoutResult(status ->
+                balances.forEach(accountRepository::updateBalance));
+    }
+
+    private static class Cell {
+        //잔액 변경과 WAL append 를 같은 순서로 하려고 계좌마다 잡는다.
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long balance;
+
+        private Cell(long balance) {
+            this.balance = balance;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * blockSize 만큼의 번호 블록을 받아 AtomicLong 으로 발급한다.
+ * 블록을 다 쓴 경우에만 allocateBlock() 으로 DB 에 접근한다.
+ * 처음 블록을 받을 때 기존 계좌번호의 최댓값을 읽어서, 그보다 앞선 블록이면 카운터를 그 다음으로 옮긴다.
+ * (이전 방식(max(id)+1)으로 발급된 계좌가 있는 DB)
+ */
+public abstract class BlockAccountNumberAllocator implements AccountNumberAllocator {
+    static final long FIRST_ACCOUNT_NUMBER = 1_000_000_000L;
+    static final long LAST_ACCOUNT_NUMBER = 9_999_999_999L; //10자리
+
+    private final long blockSize;
+    private final AtomicReference<Block> current = new AtomicReference<>(new Block(0, 0));
+    private final ReentrantLock refillLock = new ReentrantLock();
+    //이 번호부터 발급한다. 처음 블록을 받을 때 refillLock 안에서 채운다.
+    private long floor = -1;
+
+    protected BlockAccountNumberAllocator(long blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @return 새 블록의 첫 번호. [start, start + blockSize) 구간은 이 노드만 사용한다.
+     */
+    protected abstract long allocateBlock();
+
+    /**
+     * @return 기존 계좌 중 가장 큰 계좌번호 + 1 (계좌가 없으면 FIRST_ACCOUNT_NUMBER)
+     */
+    protected abstract long findUnusedAccountNumber();
+
+    /**
+     * DB 의 카운터를 floor 이상으로 옮기고 새 블록을 받는다. 카운터는 앞으로만 옮긴다.
+     * @return floor 이상인 새 블록의 첫 번호
+     */
+    protected abstract long allocateBlockFrom(long floor);
+
+    protected long getBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public String nextAccountNumber() {
+        while (true) {
+            Block block = current.get();
+            long number = block.next.getAndIncrement();
+            if (number < block.end) {
+                return String.valueOf(number);
+            }
+            refill(block);
+        }
+    }
+
+    private void refill(Block exhausted) {
+        refillLock.lock();
+        try {
+            //다른 스레드가 이미 새 블록을 받아온 경우
+            if (current.get() != exhausted) {
+                return;
+            }
+            if (floor < 0) {
+                floor = Math.max(FIRST_ACCOUNT_NUMBER, findUnusedAccountNumber());
+            }
+            long start = allocateBlock();
+            if (start < floor) {
+                start = allocateBlockFrom(floor);
+            }
+            if (start < FIRST_ACCOUNT_NUMBER || start > LAST_ACCOUNT_NUMBER) {
+                throw new AccountException(ErrorCode.ACCOUNT_NUMBER_EXHAUSTED);
+            }
+            current.set(new Block(start, Math.min(start + blockSize, LAST_ACCOUNT_NUMBER + 1)));
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.account.service;
+
+import com.example.account.dto.FailedTransaction;
+import com.example.account.type.TransactionType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 실패한 거래 내역을 요청 경로 밖에서 기록한다.
+ * 요청 스레드는 큐에 넣고 바로 돌아가고, 백그라운드 writer 가 모아서 한 번에 저장한다.
+ * 큐가 가득 차거나 저장에 실패하면 로컬 spill 파일에 남기고, 나중에(재시작 포함) 다시 저장한다.
+ * spill 파일을 다시 저장하다 중단되면 일부가 중복 저장될 수 있다. (감사용 기록)
+ * 큐에 있는 기록은 메모리에만 있다. 정상 종료 시에는 spill 파일에 남기지만, 프로세스가 비정상 종료되면
+ * 아직 저장하지 않은 기록(최대 queue-size 건, 보통 flush-interval 동안 들어온 것)은 잃는다.
+ * 잃으면 안 되는 환경에서는 async 를 끈다. (요청 중에 저장)
+ * spill 파일에서 읽을 수 없는 줄은 quarantine 파일로 옮기고 다시 시도하지 않는다.
+ */
+@Slf4j
+@Component
+public class FailedTransactionRecorder {
+    private final TransactionService transactionService;
+    private final boolean async;
+    private final int batchSize;
+    private final long flushInterval;
+    private final long replayInterval;
+    private final Path spillFile;
+    private final Path replayFile;
+    private final Path quarantineFile;
+    private final BlockingQueue<FailedTransaction> queue;
+    private final ReentrantLock spillLock = new ReentrantLock();
+
+    private FileChannel spillChannel;
+    private volatile boolean running;
+    private Thread writer;
+
+    public FailedTransactionRecorder(TransactionService transactionService,
+                                     @Value("${account.failed-transaction.async:true}") boolean async,
+                                     @Value("${account.failed-transaction.queue-size:10000}") int queueSize,
+                                     @Value("${account.failed-transaction.batch-size:500}") int batchSize,
+                                     @Value("${account.failed-transaction.flush-interval:100}") long flushInterval,
+                                     @Value("${account.failed-transaction.replay-interval:10000}") long replayInterval,
+                                     @Value("${account.failed-transaction.spill-file:data/failed-transaction.spill}") String spillFile) {
+        this.transactionService = transactionService;
+        this.async = async;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.replayInterval = replayInterval;
+        this.spillFile = Paths.get(spillFile);
+        this.replayFile = Paths.get(spillFile + ".replay");
+        this.quarantineFile = Paths.get(spillFile + ".quarantine");
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!async) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::run, "failed-transaction-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    //남은 기록은 저장하고, 저장하지 못한 것은 spill 파일에 남긴다.
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        List<FailedTransaction> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+        closeSpillChannel();
+    }
+
+    public void record(TransactionType transactionType, String accountNumber, Long amount) {
+        if (!async) {
+            if (transactionType == TransactionType.USE) {
+                transactionService.saveFailedUseTransaction(accountNumber, amount);
+            } else {
+                transactionService.saveFailedCancelTransaction(accountNumber, amount);
+            }
+            return;
+        }
+        FailedTransaction failedTransaction = new FailedTransaction(
+                transactionType, accountNumber, amount, LocalDateTime.now());
+        if (!queue.offer(failedTransaction)) {
+            spill(List.of(failedTransaction));
+        }
+    }
+
+    private void run() {
+        List<FailedTransaction> batch = new ArrayList<>(batchSize);
+        long nextReplay = 0L;
+        while (running || !queue.isEmpty()) {
+            try {
+                FailedTransaction first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                } else if (System.currentTimeMillis() >= nextReplay) {
+                    //한가할 때 spill 파일을 다시 저장한다.
+                    replay();
+                    nextReplay = System.currentTimeMillis() + replayInterval;
+                }
+            } catch (InterruptedException e) {
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                persist(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void persist(List<FailedTransaction> batch) {
+        try {
+            transactionService.saveFailedTransactions(batch);
+        } catch (RuntimeException e) {
+            log.error("Failed to save failed transactions. spill : {}", batch.size(), e);
+            spill(batch);
+        }
+    }
+
+    private void replay() {
+        try {
+            if (!Files.exists(replayFile)) {
+                spillLock.lock();
+                try {
+                    if (!Files.exists(spillFile) || Files.size(spillFile) == 0) {
+                        return;
+                    }
+                    //replay 중에 들어오는 spill 은 새 파일에 쓴다.
+                    closeSpillChannel();
+                    Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    spillLock.unlock();
+                }
+            }
+            List<FailedTransaction> batch = new ArrayList<>(batchSize);
+            try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    FailedTransaction failedTransaction;
+                    try {
+                        failedTransaction = FailedTransaction.decode(line);
+                    } catch (RuntimeException e) {
+                        //다시 읽어도 실패하므로 replay 를 막지 않도록 따로 옮긴다.
+                        quarantine(line, e);
+                        continue;
+                    }
+                    batch.add(failedTransaction);
+                    if (batch.size() == batchSize) {
+                        transactionService.saveFailedTransactions(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                transactionService.saveFailedTransactions(batch);
+            }
+            Files.delete(replayFile);
+            log.info("Replayed failed transaction spill file.");
+        } catch (IOException | RuntimeException e) {
+            //다음 replay 에서 다시 시도한다.
+            log.error("Failed to replay failed transaction spill file.", e);
+        }
+    }
+
+    private void quarantine(String line, RuntimeException cause) throws IOException {
+        log.error("Quarantined undecodable failed transaction. {}", line, cause);
+        Files.write(quarantineFile, (line + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND,
+                StandardOpenOption.SYNC);
+    }
+
+    private void spill(List<FailedTransaction> failedTransactions) {
+        StringBuilder lines = new StringBuilder();
+        for (FailedTransaction failedTransaction : failedTransactions) {
+            lines.append(failedTransaction.encode()).append('\n');
+        }
+        spillLock.lock();
+        try {
+            if (spillChannel == null) {
+                Path parent = spillFile.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                spillChannel = FileChannel.open(spillFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                spillChannel.write(buffer);
+            }
+            spillChannel.force(false);
+        } catch (IOException e) {
+            log.error("Failed to spill failed transactions. lost : {}", lines, e);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void closeSpillChannel() {
+        spillLock.lock();
+        try {
+            if (spillChannel != null) {
+                spillChannel.close();
+                spillChannel = null;
+            }
+        } catch (IOException e) {
+            log.error("Failed to close spill file.", e);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+}
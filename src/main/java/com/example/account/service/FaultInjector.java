@@ -0,0 +1,42 @@
+package com.example.account.service;
+
+import com.example.account.config.FaultInjectionProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 설정된 endpoint 에 지연이나 오류를 주입한다.
+ * account.fault-injection.enabled 가 false 면 아무것도 하지 않는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaultInjector {
+    private final FaultInjectionProperties faultInjectionProperties;
+
+    public void inject(String endpoint) {
+        if (!faultInjectionProperties.isEnabled()) {
+            return;
+        }
+        FaultInjectionProperties.Rule rule = faultInjectionProperties.getEndpoints().get(endpoint);
+        if (rule == null) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latency = rule.latencyAt(random.nextDouble() * 100);
+        if (latency > 0) {
+            log.debug("Injecting {}ms latency into {}", latency, endpoint);
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (random.nextDouble() < rule.getErrorRate()) {
+            throw new IllegalStateException("Injected fault : " + endpoint);
+        }
+    }
+}
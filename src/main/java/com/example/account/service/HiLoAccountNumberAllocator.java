@@ -0,0 +1,64 @@
+package com.example.account.service;
+
+import com.example.account.domain.AccountNumberHiLo;
+import com.example.account.repository.AccountNumberHiLoRepository;
+import com.example.account.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * hi/lo 테이블의 hi 값을 하나 올려서 블록을 받는다.
+ * 블록 발급은 별도 트랜잭션으로 커밋해 row lock 을 짧게 잡는다.
+ * 기존 계좌번호를 지나도록 hi 를 옮기는 것도 같은 row lock 안에서 하므로 여러 노드가 동시에 옮겨도 겹치지 않는다.
+ */
+@Component
+@ConditionalOnProperty(name = "account.number.allocator", havingValue = "hilo")
+public class HiLoAccountNumberAllocator extends BlockAccountNumberAllocator {
+    static final String HI_LO_NAME = "account_number";
+
+    private final AccountNumberHiLoRepository accountNumberHiLoRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public HiLoAccountNumberAllocator(AccountNumberHiLoRepository accountNumberHiLoRepository,
+                                      AccountRepository accountRepository,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${account.number.block-size:100}") long blockSize) {
+        super(blockSize);
+        this.accountNumberHiLoRepository = accountNumberHiLoRepository;
+        this.accountRepository = accountRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    protected long allocateBlock() {
+        return allocateBlockFrom(FIRST_ACCOUNT_NUMBER);
+    }
+
+    @Override
+    protected long findUnusedAccountNumber() {
+        return accountRepository.findMaxAccountNumber()
+                .map(max -> Long.parseLong(max) + 1)
+                .orElse(FIRST_ACCOUNT_NUMBER);
+    }
+
+    //floor 가 든 블록의 다음 블록부터 (블록 경계를 유지한다)
+    @Override
+    protected long allocateBlockFrom(long floor) {
+        long minimumHi = (floor - FIRST_ACCOUNT_NUMBER + getBlockSize() - 1) / getBlockSize();
+        Long hi = transactionTemplate.execute(status -> {
+            AccountNumberHiLo hiLo = accountNumberHiLoRepository.findForUpdate(HI_LO_NAME)
+                    .orElseGet(() -> accountNumberHiLoRepository.save(
+                            new AccountNumberHiLo(HI_LO_NAME, 0L)));
+            long current = Math.max(hiLo.getNextHi(), minimumHi);
+            hiLo.setNextHi(current + 1);
+            return current;
+        });
+        return FIRST_ACCOUNT_NUMBER + hi * getBlockSize();
+    }
+}
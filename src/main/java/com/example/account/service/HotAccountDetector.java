@@ -0,0 +1,187 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 요청이 몰리는 계좌를 찾아서 잔액을 slot 으로 나눈다. (account.hot-account.enabled)
+ * LockAopAspect 가 차감 요청마다 record 를 호출하고, count-min sketch 로 window 동안의 요청 수를 센다.
+ * 추정치가 threshold 에 닿은 계좌는 background 에서 계좌 락을 잡고 나눈다. (SubBalanceService)
+ * 나뉜 계좌는 rebalance-interval 마다 slot 잔액을 고르게 다시 나눈다.
+ * 차감이 조건부 UPDATE 인 ATOMIC 모드에서만 켠다. LOCK 모드는 계좌 락이 어차피 요청을 줄 세운다.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${account.hot-account.enabled:false} and '${account.transaction.debit-mode:LOCK}' == 'ATOMIC'")
+public class HotAccountDetector {
+    private static final long LOCK_WAIT_TIME = 1000L;
+
+    private final SubBalanceService subBalanceService;
+    private final LockService lockService;
+    private final AccountRepository accountRepository;
+    private final int width;
+    private final int depth;
+    private final long threshold;
+    private final long window;
+    private final long rebalanceInterval;
+    //depth 개의 row, row 마다 width 개의 counter
+    private final AtomicLongArray counts;
+    private final AtomicLong windowStartedAt = new AtomicLong(System.currentTimeMillis());
+    private final Set<String> requested = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<String> splitQueue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public HotAccountDetector(SubBalanceService subBalanceService,
+                              LockService lockService,
+                              AccountRepository accountRepository,
+                              @Value("${account.hot-account.sketch-width:2048}") int width,
+                              @Value("${account.hot-account.sketch-depth:4}") int depth,
+                              @Value("${account.hot-account.threshold:500}") long threshold,
+                              @Value("${account.hot-account.window:1000}") long window,
+                              @Value("${account.hot-account.rebalance-interval:1000}") long rebalanceInterval) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("account.hot-account.sketch-width must be a power of two");
+        }
+        this.subBalanceService = subBalanceService;
+        this.lockService = lockService;
+        this.accountRepository = accountRepository;
+        this.width = width;
+        this.depth = depth;
+        this.threshold = threshold;
+        this.window = window;
+        this.rebalanceInterval = rebalanceInterval;
+        this.counts = new AtomicLongArray(width * depth);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "hot-account-worker");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * 요청 한 건을 센다.
+     * @return 이번 요청으로 threshold 에 닿아서 나누기를 요청했으면 true
+     */
+    public boolean record(String accountNumber) {
+        resetIfWindowPassed();
+        int hash = accountNumber.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.incrementAndGet(row * width + index(hash, row)));
+        }
+        if (estimate < threshold || !requested.add(accountNumber)) {
+            return false;
+        }
+        splitQueue.offer(accountNumber);
+        return true;
+    }
+
+    long estimate(String accountNumber) {
+        int hash = accountNumber.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.get(row * width + index(hash, row)));
+        }
+        return estimate;
+    }
+
+    //row 마다 다른 seed 로 섞는다.
+    private int index(int hash, int row) {
+        int h = hash * (0x9E3779B1 + (row << 1));
+        return (h ^ (h >>> 16)) & (width - 1);
+    }
+
+    //window 마다 새로 센다. 초기화 중에 들어온 몇 건은 빠질 수 있다.
+    private void resetIfWindowPassed() {
+        long startedAt = windowStartedAt.get();
+        long now = System.currentTimeMillis();
+        if (now - startedAt >= window && windowStartedAt.compareAndSet(startedAt, now)) {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, 0L);
+            }
+        }
+    }
+
+    private void run() {
+        long nextRebalanceAt = System.currentTimeMillis() + rebalanceInterval;
+        while (running) {
+            try {
+                String accountNumber = splitQueue.poll(
+                        Math.max(1L, nextRebalanceAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (accountNumber != null) {
+                    split(accountNumber);
+                }
+                if (System.currentTimeMillis() >= nextRebalanceAt) {
+                    rebalance();
+                    nextRebalanceAt = System.currentTimeMillis() + rebalanceInterval;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("hot account worker failed", e);
+            }
+        }
+    }
+
+    void split(String accountNumber) {
+        if (!withAccountLock(accountNumber, () -> subBalanceService.split(accountNumber))) {
+            //다음에 다시 threshold 에 닿으면 재시도
+            requested.remove(accountNumber);
+        }
+    }
+
+    void rebalance() {
+        for (String accountNumber : accountRepository.findAccountNumbersWithSubBalances()) {
+            requested.add(accountNumber);
+            withAccountLock(accountNumber, () -> subBalanceService.rebalance(accountNumber));
+        }
+    }
+
+    //취소는 계좌 락을 잡고 계좌 잔액을 읽어서 쓰므로 나누기/다시 나누기도 같은 락 안에서 한다.
+    private boolean withAccountLock(String accountNumber, Runnable runnable) {
+        try {
+            lockService.lock(accountNumber, LOCK_WAIT_TIME, -1L);
+        } catch (AccountException e) {
+            log.warn("skip sub-balance update, lock failed. {} {}", accountNumber, e.getErrorCodes());
+            return false;
+        }
+        try {
+            runnable.run();
+            return true;
+        } catch (AccountException e) {
+            log.warn("skip sub-balance update. {} {}", accountNumber, e.getErrorCodes());
+            return false;
+        } finally {
+            lockService.unlock(accountNumber);
+        }
+    }
+}
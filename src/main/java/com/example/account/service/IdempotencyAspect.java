@@ -0,0 +1,127 @@
+package com.example.account.service;
+
+import com.example.account.aop.Idempotent;
+import com.example.account.dto.IdempotencyRecord;
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Idempotency-Key 헤더가 있는 재요청에는 저장해 둔 응답을 돌려준다. (@Idempotent)
+ * LockAopAspect 보다 먼저 실행되므로 재요청은 락도 DB 도 거치지 않는다.
+ * 실패한 요청(예외)은 저장하지 않으므로 같은 key 로 다시 실행할 수 있다.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class IdempotencyAspect {
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
+
+    @Around("@annotation(idempotent) && args(request, ..)")
+    public Object aroundMethod(ProceedingJoinPoint pjp,
+                               Idempotent idempotent,
+                               Object request) throws Throwable {
+        String idempotencyKey = currentIdempotencyKey();
+        if (idempotencyKey == null) {
+            return pjp.proceed();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        boolean async = CompletableFuture.class.isAssignableFrom(method.getReturnType());
+        String key = idempotent.value() + ":" + idempotencyKey;
+        String fingerprint = objectMapper.writeValueAsString(request);
+
+        IdempotencyRecord record = idempotencyStore.find(key);
+        if (record == null && idempotencyStore.claim(key, fingerprint)) {
+            return proceed(pjp, key, fingerprint, async);
+        }
+        if (record == null) {
+            //같은 key 의 다른 요청이 먼저 시작했다.
+            record = idempotencyStore.find(key);
+        }
+        Object response = replay(record, fingerprint, responseType(method, async));
+        return async ? CompletableFuture.completedFuture(response) : response;
+    }
+
+    private Object proceed(ProceedingJoinPoint pjp, String key, String fingerprint, boolean async) throws Throwable {
+        Object result;
+        try {
+            result = pjp.proceed();
+        } catch (Throwable e) {
+            idempotencyStore.release(key);
+            throw e;
+        }
+        if (!async) {
+            complete(key, fingerprint, result);
+            return result;
+        }
+        //비동기 API 는 락을 얻고 처리가 끝났을 때 저장한다.
+        return ((CompletableFuture<?>) result).whenComplete((response, e) -> {
+            if (e != null) {
+                idempotencyStore.release(key);
+            } else {
+                complete(key, fingerprint, response);
+            }
+        });
+    }
+
+    private void complete(String key, String fingerprint, Object response) {
+        try {
+            idempotencyStore.complete(key, fingerprint, objectMapper.writeValueAsString(response));
+        } catch (JsonProcessingException e) {
+            //응답은 이미 처리됐으므로 저장만 포기한다. (재요청은 처리 중으로 거부되다가 pending-ttl 후 다시 실행)
+            log.error("Failed to store idempotent response. {}", key, e);
+        }
+    }
+
+    private Object replay(IdempotencyRecord record, String fingerprint, JavaType responseType)
+            throws JsonProcessingException {
+        if (record == null || !record.isDone()) {
+            throw new AccountException(ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS);
+        }
+        if (!fingerprint.equals(record.getFingerprint())) {
+            throw new AccountException(ErrorCode.IDEMPOTENCY_KEY_REUSED);
+        }
+        return objectMapper.readValue(record.getResponse(), responseType);
+    }
+
+    //비동기 API 는 CompletableFuture 의 타입 인자가 응답이다.
+    private JavaType responseType(Method method, boolean async) {
+        if (async && method.getGenericReturnType() instanceof ParameterizedType type) {
+            return objectMapper.constructType(type.getActualTypeArguments()[0]);
+        }
+        return objectMapper.constructType(method.getGenericReturnType());
+    }
+
+    private static String currentIdempotencyKey() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return attributes.getRequest().getHeader(HEADER);
+        }
+        return null;
+    }
+}
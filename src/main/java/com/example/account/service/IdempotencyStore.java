@@ -0,0 +1,142 @@
+package com.example.account.service;
+
+import com.example.account.dto.IdempotencyRecord;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency-Key -> 처리 상태/응답 캐시
+ * 1차는 JVM 내부(Caffeine, local-size 건 LRU), 2차는 redis (ttl). 다른 노드로 간 재요청도 redis 에서 찾는다.
+ * 처리를 시작할 때 pending 을 먼저 넣어서 같은 key 의 동시 요청 중 하나만 실행한다. (pending-ttl 이 지나면 다시 실행 가능)
+ * local 에서도 pending 은 pending-ttl, 끝난 응답은 ttl 이 지나면 만료된다.
+ * redis 장애 시에는 이 노드 안에서만 중복을 막는다.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+    private static final String MAP_NAME = "idempotency";
+
+    private final RedissonClient redissonClient;
+    private final Cache<String, IdempotencyRecord> localCache;
+    private final long ttl;
+    private final long pendingTtl;
+
+    private RMapCache<String, String> remoteCache;
+
+    public IdempotencyStore(RedissonClient redissonClient,
+                            @Value("${account.idempotency.local-size:100000}") long localSize,
+                            @Value("${account.idempotency.ttl:86400000}") long ttl,
+                            @Value("${account.idempotency.pending-ttl:10000}") long pendingTtl) {
+        this.redissonClient = redissonClient;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(localSize)
+                .expireAfter(new RecordExpiry(ttl, pendingTtl))
+                .build();
+        this.ttl = ttl;
+        this.pendingTtl = pendingTtl;
+    }
+
+    @PostConstruct
+    public void init() {
+        remoteCache = redissonClient.getMapCache(MAP_NAME, StringCodec.INSTANCE);
+    }
+
+    //끝난 요청은 local 에도 채운다. 처리 중인 요청은 local 에 채우지 않는다. (다른 노드에서 끝날 수 있음)
+    public IdempotencyRecord find(String key) {
+        IdempotencyRecord record = localCache.getIfPresent(key);
+        if (record != null) {
+            return record;
+        }
+        try {
+            String value = remoteCache.get(key);
+            if (value == null) {
+                return null;
+            }
+            record = IdempotencyRecord.decode(value);
+            if (record.isDone()) {
+                localCache.put(key, record);
+            }
+            return record;
+        } catch (RuntimeException e) {
+            log.warn("Failed to read remote idempotency record. {}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 처리를 시작한다.
+     * @return 이미 다른 요청이 시작했거나 끝났으면 false
+     */
+    public boolean claim(String key, String fingerprint) {
+        IdempotencyRecord pending = IdempotencyRecord.pending(fingerprint);
+        if (localCache.asMap().putIfAbsent(key, pending) != null) {
+            return false;
+        }
+        try {
+            if (remoteCache.putIfAbsent(key, pending.encode(), pendingTtl, TimeUnit.MILLISECONDS) == null) {
+                return true;
+            }
+            localCache.asMap().remove(key, pending);
+            return false;
+        } catch (RuntimeException e) {
+            log.warn("Failed to claim remote idempotency key. {}", key, e);
+            return true;
+        }
+    }
+
+    public void complete(String key, String fingerprint, String response) {
+        IdempotencyRecord done = IdempotencyRecord.done(fingerprint, response);
+        localCache.put(key, done);
+        try {
+            remoteCache.fastPut(key, done.encode(), ttl, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            log.warn("Failed to write remote idempotency record. {}", key, e);
+        }
+    }
+
+    //실패한 요청은 지워서 재요청이 다시 실행되게 한다.
+    public void release(String key) {
+        localCache.invalidate(key);
+        try {
+            remoteCache.fastRemove(key);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release remote idempotency key. {}", key, e);
+        }
+    }
+
+    //쓸 때마다 상태에 맞는 만료 시간을 다시 정한다. (pending -> done 으로 바뀌면 ttl)
+    private static class RecordExpiry implements Expiry<String, IdempotencyRecord> {
+        private final long ttlNanos;
+        private final long pendingTtlNanos;
+
+        private RecordExpiry(long ttl, long pendingTtl) {
+            this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+            this.pendingTtlNanos = TimeUnit.MILLISECONDS.toNanos(pendingTtl);
+        }
+
+        @Override
+        public long expireAfterCreate(String key, IdempotencyRecord record, long currentTime) {
+            return record.isDone() ? ttlNanos : pendingTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, IdempotencyRecord record, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, record, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, IdempotencyRecord record, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
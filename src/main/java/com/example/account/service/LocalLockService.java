@@ -0,0 +1,223 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 단일 인스턴스 또는 계좌별 sticky 라우팅 환경에서 Redis 왕복 없이 쓰는 락
+ * 계좌번호 해시로 고정 크기 stripe 배열 중 하나를 고른다.
+ * 락 소유자는 스레드 id(동기) 또는 ownerId(비동기, 음수)로 구분하므로 비동기 락은 다른 스레드에서 해제할 수 있다.
+ * 해제되면 먼저 기다린 요청에 바로 넘겨준다. 같은 소유자는 다시 잡을 수 있다. (일괄 처리에서 같은 stripe 의 계좌)
+ * leaseTime 은 무시한다. fair 모드의 대기자 수 제한은 stripe 단위다.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "account.lock.mode", havingValue = "local")
+public class LocalLockService implements LockService {
+    private final Stripe[] stripes;
+    private final int mask;
+    private final boolean fair;
+    private final int maxWaiters;
+    //재시작 후에도 DB 에 남은 token 보다 커지도록 시각 기반으로 시작
+    private final AtomicLong fencingToken = new AtomicLong(System.currentTimeMillis() << 20);
+    //비동기 대기의 waitTime 만료
+    private final ScheduledThreadPoolExecutor timer;
+
+    public LocalLockService(@Value("${account.lock.stripes:1024}") int stripes,
+                            @Value("${account.lock.fair:false}") boolean fair,
+                            @Value("${account.lock.max-waiters:100}") int maxWaiters) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1; //2의 거듭제곱으로 올림
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+        this.fair = fair;
+        this.maxWaiters = maxWaiters;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "local-lock-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    @Override
+    public long lock(String accountNumber, long waitTime, long leaseTime) {
+        log.debug("Trying local lock for accountNumber :{}", accountNumber);
+        Stripe stripe = getStripe(accountNumber);
+        Waiter waiter = stripe.acquire(Thread.currentThread().getId());
+        try {
+            return waiter.future.get(Math.max(0L, waitTime), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (stripe.cancel(waiter)) {
+                log.error("===========lock acquisition failed===========");
+                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+            }
+            //만료와 동시에 넘겨받은 경우
+            return waiter.future.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!stripe.cancel(waiter)) {
+                stripe.release(waiter.ownerId);
+            }
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        } catch (ExecutionException e) {
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        }
+    }
+
+    @Override
+    public void unlock(String accountNumber) {
+        log.debug("Local unlock for accountNumber : {}", accountNumber);
+        getStripe(accountNumber).release(Thread.currentThread().getId());
+    }
+
+    //대기 중에는 스레드를 붙잡지 않는다. waitTime 이 지나면 timer 스레드가 대기열에서 빼고 실패시킨다.
+    @Override
+    public CompletableFuture<Long> lockAsync(String accountNumber, long ownerId,
+                                             long waitTime, long leaseTime) {
+        log.debug("Trying async local lock for accountNumber :{}", accountNumber);
+        Stripe stripe = getStripe(accountNumber);
+        Waiter waiter;
+        try {
+            waiter = stripe.acquire(ownerId);
+        } catch (AccountException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (!waiter.future.isDone()) {
+            waiter.timeout = timer.schedule(() -> {
+                if (stripe.cancel(waiter)) {
+                    log.error("===========lock acquisition failed===========");
+                    waiter.future.completeExceptionally(new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK));
+                }
+            }, Math.max(0L, waitTime), TimeUnit.MILLISECONDS);
+        }
+        return waiter.future.copy();
+    }
+
+    @Override
+    public CompletableFuture<Void> unlockAsync(String accountNumber, long ownerId) {
+        log.debug("Async local unlock for accountNumber : {}", accountNumber);
+        getStripe(accountNumber).release(ownerId);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    //같은 stripe 를 쓰는 계좌의 대기자도 포함된다.
+    @Override
+    public long queueDepth(String accountNumber) {
+        return getStripe(accountNumber).queueDepth();
+    }
+
+    private Stripe getStripe(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    private static final class Waiter {
+        private final long ownerId;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+        private volatile Future<?> timeout;
+
+        private Waiter(long ownerId) {
+            this.ownerId = ownerId;
+        }
+    }
+
+    //소유자와 대기열은 mutex 안에서만 바꾸고, 대기자의 future 는 mutex 밖에서 완료한다.
+    private final class Stripe {
+        private final ReentrantLock mutex = new ReentrantLock();
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private long owner; //0 이면 비어 있음
+        private int holdCount;
+
+        //비어 있으면 바로 얻은(완료된) waiter, 아니면 대기열에 넣은 waiter
+        private Waiter acquire(long ownerId) {
+            Waiter waiter = new Waiter(ownerId);
+            mutex.lock();
+            try {
+                if (fair && waiters.size() >= maxWaiters) {
+                    log.error("===========lock queue is full===========");
+                    throw new AccountException(ErrorCode.ACCOUNT_LOCK_QUEUE_FULL);
+                }
+                if (owner == 0 || owner == ownerId) {
+                    owner = ownerId;
+                    holdCount++;
+                    //아직 아무도 기다리지 않는 future 라서 mutex 안에서 완료해도 된다.
+                    waiter.future.complete(fencingToken.incrementAndGet());
+                    return waiter;
+                }
+                waiters.addLast(waiter);
+                return waiter;
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        //대기열에 남아 있으면 빼고 true, 이미 락을 넘겨받았으면 false
+        private boolean cancel(Waiter waiter) {
+            mutex.lock();
+            try {
+                return waiters.remove(waiter);
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        //잡지 않은 소유자의 해제는 무시한다.
+        private void release(long ownerId) {
+            Waiter next;
+            long token;
+            mutex.lock();
+            try {
+                if (owner != ownerId || --holdCount > 0) {
+                    return;
+                }
+                next = waiters.pollFirst();
+                if (next == null) {
+                    owner = 0;
+                    return;
+                }
+                owner = next.ownerId;
+                holdCount = 1;
+                token = fencingToken.incrementAndGet();
+            } finally {
+                mutex.unlock();
+            }
+            next.future.complete(token);
+            Future<?> timeout = next.timeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+
+        private int queueDepth() {
+            mutex.lock();
+            try {
+                return waiters.size();
+            } finally {
+                mutex.unlock();
+            }
+        }
+    }
+}
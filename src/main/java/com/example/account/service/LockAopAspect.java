@@ -1,33 +1,223 @@
 package com.example.account.service;
 
+import com.example.account.aop.AccountLock;
 import com.example.account.aop.AccountLockIdInterface;
+import com.example.account.aop.AccountLockIdsInterface;
+import com.example.account.aop.FencingTokenHolder;
+import com.example.account.exception.AccountException;
+import com.example.account.type.DebitMode;
+import com.example.account.type.ErrorCode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
 @Aspect
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class LockAopAspect {
+    private static final String SYNC_METHOD = "!execution(java.util.concurrent.CompletableFuture *(..))";
+    //비동기 락 소유자 id. 실제 스레드 id(양수)와 겹치지 않도록 음수를 쓴다.
+    private static final AtomicLong ASYNC_OWNER_ID = new AtomicLong();
+
     private final LockService lockService;
+    //락을 얻은 뒤 대상 메서드를 실행할 executor (virtual thread 모드에서는 virtual thread)
+    private final Executor applicationTaskExecutor;
+    private final AccountMetrics accountMetrics;
+
+    @Value("${account.transaction.debit-mode:LOCK}")
+    private DebitMode debitMode;
 
-    @Around("@annotation(com.example.account.aop.AccountLock) && args(request)")
+    //actor 모드면 락 대신 계좌의 worker 에서 실행한다.
+    @Autowired(required = false)
+    private AccountActorExecutor accountActorExecutor;
+
+    //요청이 몰리는 계좌 감지 (ATOMIC 모드에서 account.hot-account.enabled)
+    @Autowired(required = false)
+    private HotAccountDetector hotAccountDetector;
+
+    @Around("@annotation(accountLock) && args(request) && " + SYNC_METHOD)
     public Object aroundMethod(ProceedingJoinPoint pjp
+            , AccountLock accountLock
             , AccountLockIdInterface request) throws Throwable {
+        if (hotAccountDetector != null && accountLock.debit()) {
+            hotAccountDetector.record(request.getAccountNumber());
+        }
+        if (skipLock(accountLock)) {
+            //조건부 UPDATE(ATOMIC) 나 계좌별 cell lock(MEMORY) 이 정합성을 보장하므로 락 없이 진행
+            return pjp.proceed();
+        }
+        if (accountActorExecutor != null) {
+            return accountActorExecutor.execute(request.getAccountNumber(),
+                    accountLock.tryLockTime(), () -> proceed(pjp));
+        }
         //lock 취득 시도
-        lockService.lock(request.getAccountNumber());
+        long fencingToken = lock(request.getAccountNumber(), accountLock);
+        long acquiredAt = System.nanoTime();
+        FencingTokenHolder.set(request.getAccountNumber(), fencingToken);
         try {
 
             return pjp.proceed();
         } finally {
+            FencingTokenHolder.clear();
             //lock 해제
-            lockService.unlock(request.getAccountNumber());
+            unlock(request.getAccountNumber(), acquiredAt);
 
         }
 
     }
+
+    /*
+        여러 계좌를 잠글 때는 계좌번호 순서대로 잡아서 교착을 피한다.
+        하나라도 실패하면 이미 잡은 락은 역순으로 해제한다.
+     */
+    @Around("@annotation(accountLock) && args(request) && " + SYNC_METHOD)
+    public Object aroundBatchMethod(ProceedingJoinPoint pjp
+            , AccountLock accountLock
+            , AccountLockIdsInterface request) throws Throwable {
+        if (skipLock(accountLock)) {
+            return pjp.proceed();
+        }
+        if (accountActorExecutor != null) {
+            return accountActorExecutor.executeExclusively(request.getAccountNumbers(),
+                    accountLock.tryLockTime(), () -> proceed(pjp));
+        }
+        List<String> accountNumbers = request.getAccountNumbers().stream()
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        List<String> locked = new ArrayList<>(accountNumbers.size());
+        long[] acquiredAt = new long[accountNumbers.size()];
+        try {
+            for (String accountNumber : accountNumbers) {
+                long fencingToken = lock(accountNumber, accountLock);
+                acquiredAt[locked.size()] = System.nanoTime();
+                locked.add(accountNumber);
+                FencingTokenHolder.set(accountNumber, fencingToken);
+            }
+            return pjp.proceed();
+        } finally {
+            FencingTokenHolder.clear();
+            for (int i = locked.size() - 1; i >= 0; i--) {
+                unlock(locked.get(i), acquiredAt[i]);
+            }
+        }
+    }
+
+    /*
+        CompletableFuture 를 반환하는 메서드는 락을 기다리는 동안 요청 스레드를 붙잡지 않는다.
+        락을 얻으면 executor 에서 대상 메서드를 실행하고, 반환된 future 가 끝나면 락을 해제한다.
+        대상 메서드는 실행 스레드에서 작업을 끝내야 한다. (fencing token 이 그 스레드에만 있다)
+     */
+    @Around("@annotation(accountLock) && args(request) && execution(java.util.concurrent.CompletableFuture *(..))")
+    public Object aroundAsyncMethod(ProceedingJoinPoint pjp
+            , AccountLock accountLock
+            , AccountLockIdInterface request) throws Throwable {
+        if (hotAccountDetector != null && accountLock.debit()) {
+            hotAccountDetector.record(request.getAccountNumber());
+        }
+        if (skipLock(accountLock)) {
+            return pjp.proceed();
+        }
+        String accountNumber = request.getAccountNumber();
+        if (accountActorExecutor != null) {
+            return accountActorExecutor.submit(accountNumber, () -> proceed(pjp))
+                    .thenCompose(result -> (CompletableFuture<?>) result);
+        }
+        long ownerId = ASYNC_OWNER_ID.decrementAndGet();
+        long start = System.nanoTime();
+        //락을 얻은 시각 (hold 시간 측정용)
+        long[] acquiredAt = new long[1];
+        CompletableFuture<Long> locked = lockService.lockAsync(accountNumber, ownerId,
+                accountLock.tryLockTime(), accountLock.leaseTime())
+                .whenComplete((fencingToken, e) -> {
+                    acquiredAt[0] = System.nanoTime();
+                    if (e == null) {
+                        accountMetrics.lockAcquired(accountNumber, acquiredAt[0] - start);
+                    } else {
+                        accountMetrics.lockFailed(accountNumber, errorCode(e), acquiredAt[0] - start);
+                    }
+                });
+        return locked
+                .thenComposeAsync(fencingToken -> proceedAsync(pjp, accountNumber, fencingToken),
+                        applicationTaskExecutor)
+                .whenComplete((result, e) -> {
+                    if (!locked.isCompletedExceptionally()) {
+                        long releaseStart = System.nanoTime();
+                        accountMetrics.lockHeld(accountNumber, releaseStart - acquiredAt[0]);
+                        lockService.unlockAsync(accountNumber, ownerId)
+                                .whenComplete((v, unlockError) -> accountMetrics.lockReleased(
+                                        accountNumber, System.nanoTime() - releaseStart));
+                    }
+                });
+    }
+
+    //대기 시간은 결과(획득, 실패 ErrorCode)별로 남긴다.
+    private long lock(String accountNumber, AccountLock accountLock) {
+        long start = System.nanoTime();
+        try {
+            long fencingToken = lockService.lock(accountNumber,
+                    accountLock.tryLockTime(), accountLock.leaseTime());
+            accountMetrics.lockAcquired(accountNumber, System.nanoTime() - start);
+            return fencingToken;
+        } catch (AccountException e) {
+            accountMetrics.lockFailed(accountNumber, e.getErrorCodes(), System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    private void unlock(String accountNumber, long acquiredAt) {
+        long start = System.nanoTime();
+        accountMetrics.lockHeld(accountNumber, start - acquiredAt);
+        lockService.unlock(accountNumber);
+        accountMetrics.lockReleased(accountNumber, System.nanoTime() - start);
+    }
+
+    private static ErrorCode errorCode(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof AccountException
+                ? ((AccountException) cause).getErrorCodes()
+                : ErrorCode.INTERNAL_SERVER_ERROR;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Object> proceedAsync(ProceedingJoinPoint pjp,
+                                                   String accountNumber, long fencingToken) {
+        FencingTokenHolder.set(accountNumber, fencingToken);
+        try {
+            return (CompletableFuture<Object>) pjp.proceed();
+        } catch (Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            FencingTokenHolder.clear();
+        }
+    }
+
+    //worker 에서 실행할 수 있도록 Throwable 을 Exception 으로 바꾼다.
+    private static Object proceed(ProceedingJoinPoint pjp) throws Exception {
+        try {
+            return pjp.proceed();
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean skipLock(AccountLock accountLock) {
+        return accountLock.debit() && (debitMode == DebitMode.ATOMIC || debitMode == DebitMode.MEMORY);
+    }
 }
@@ -1,48 +1,35 @@
 package com.example.account.service;
 
-import com.example.account.exception.AccountException;
-import com.example.account.type.ErrorCode;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
-import org.springframework.stereotype.Service;
-
-import java.util.concurrent.TimeUnit;
-
-@Slf4j
-@Service
-@RequiredArgsConstructor
-public class LockService {
-    private final RedissonClient redissonClient;
-
-    public String lock(String accountNumber){
-        RLock lock=redissonClient.getLock(getLockKey(accountNumber));
-        log.debug("Trying lock for accountNumber :{}",accountNumber);
-        try{
-            boolean isLock=lock.tryLock(1,15, TimeUnit.SECONDS);
-            if(!isLock){
-                log.error("===========lock acquisition failed===========");
-                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
-            }
-        }
-        catch (AccountException e){
-            throw e;
-        }
-        catch (Exception e){
-
-            log.error("redis lock failed");
-        }
-        return "get lock success";
-    }
-    public void unlock(String accountNumber){
-
-        log.debug("Unlock for accountNumber : {}",accountNumber);
-        redissonClient.getLock(getLockKey(accountNumber)).unlock();
-    }
-
-    private String getLockKey(String accountNumber) {
-        return "ACLK"+accountNumber;
-    }
-
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 계좌 단위 락
+ * account.lock.mode 로 구현체를 고른다.
+ * redis: Redisson 분산 락 (기본값), local: JVM 내부 striped lock
+ * account.lock.fair=true 면 먼저 기다린 요청부터 락을 얻고,
+ * 대기자가 account.lock.max-waiters 를 넘으면 기다리지 않고 ACCOUNT_LOCK_QUEUE_FULL 로 거절한다.
+ */
+public interface LockService {
+    /**
+     * @param waitTime  락 획득 대기 시간 (ms)
+     * @param leaseTime 락 점유 시간 (ms), -1 이면 watchdog 으로 연장
+     * @return 계좌별로 단조 증가하는 fencing token
+     */
+    long lock(String accountNumber, long waitTime, long leaseTime);
+
+    void unlock(String accountNumber);
+
+    //락을 기다리는 요청 수
+    long queueDepth(String accountNumber);
+
+    /**
+     * 스레드를 붙잡지 않고 락을 기다린다.
+     * 락 소유자는 스레드가 아니라 ownerId 로 구분하므로 다른 스레드에서 해제할 수 있다.
+     *
+     * @return fencing token, 획득 실패 시 ACCOUNT_TRANSACTION_LOCK 으로 실패하는 future
+     */
+    CompletableFuture<Long> lockAsync(String accountNumber, long ownerId,
+                                      long waitTime, long leaseTime);
+
+    CompletableFuture<Void> unlockAsync(String accountNumber, long ownerId);
 }
@@ -0,0 +1,254 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RLock;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "account.lock.mode", havingValue = "redis", matchIfMissing = true)
+public class RedisLockService implements LockService {
+    //대기자 수 key 의 TTL 여유분. 프로세스가 죽어 감소하지 못한 수가 남지 않도록 한다.
+    private static final long QUEUE_TTL_MARGIN = 10_000L;
+    /*
+        대기자 수를 올리고, 가득 찼으면 되돌리고 0 을 돌려준다. (왕복 한 번)
+        TTL 은 늘리기만 해서 더 오래 기다리는 대기자가 남아 있는 동안 key 가 지워지지 않는다.
+        음수로 남은 값은 1 부터 다시 센다.
+     */
+    private static final String ENTER_QUEUE_SCRIPT =
+            "local depth = redis.call('incr', KEYS[1]); " +
+            "if depth < 1 then depth = 1; redis.call('set', KEYS[1], 1); end; " +
+            "if redis.call('pttl', KEYS[1]) < tonumber(ARGV[2]) then redis.call('pexpire', KEYS[1], ARGV[2]); end; " +
+            "if depth > tonumber(ARGV[1]) then redis.call('decr', KEYS[1]); return 0; end; " +
+            "return 1;";
+    //0 아래로 내려가지 않게 한다. (TTL 이 지나 지워진 key 에 늦게 도착한 감소)
+    private static final String LEAVE_QUEUE_SCRIPT =
+            "if redis.call('decr', KEYS[1]) <= 0 then redis.call('del', KEYS[1]); end; " +
+            "return 0;";
+
+    private final RedissonClient redissonClient;
+
+    //true 면 Redisson fair lock (먼저 기다린 요청부터 획득)
+    @Value("${account.lock.fair:false}")
+    private boolean fair;
+
+    @Value("${account.lock.max-waiters:100}")
+    private long maxWaiters;
+
+    @Override
+    public long lock(String accountNumber, long waitTime, long leaseTime){
+        RLock lock=getLock(accountNumber);
+        log.debug("Trying lock for accountNumber :{}",accountNumber);
+        boolean queued = fair && enterQueue(accountNumber, waitTime);
+        try{
+            boolean isLock=lock.tryLock(waitTime,leaseTime, TimeUnit.MILLISECONDS);
+            if(!isLock){
+                log.error("===========lock acquisition failed===========");
+                throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+            }
+        }
+        catch (AccountException e){
+            throw e;
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        }
+        catch (Exception e){
+
+            log.error("redis lock failed",e);
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        }
+        finally {
+            if (queued) {
+                leaveQueue(accountNumber);
+            }
+        }
+        //token 발급에 실패하면 잡은 락을 바로 해제한다.
+        try {
+            return nextFencingToken(accountNumber);
+        } catch (RuntimeException e) {
+            log.error("fencing token failed", e);
+            try {
+                lock.unlock();
+            } catch (RuntimeException unlockException) {
+                log.warn("Failed to unlock after fencing token failure. {}", accountNumber, unlockException);
+            }
+            throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+        }
+    }
+
+    /*
+        tryLockAsync 는 락이 풀릴 때까지 redis 채널 구독으로 기다리므로 대기 중에 점유하는 스레드가 없다.
+        token 발급에 실패하면 잡은 락을 바로 해제한다.
+     */
+    @Override
+    public CompletableFuture<Long> lockAsync(String accountNumber, long ownerId,
+                                             long waitTime, long leaseTime) {
+        RLock lock = getLock(accountNumber);
+        log.debug("Trying async lock for accountNumber :{}", accountNumber);
+        CompletableFuture<Boolean> queued = fair
+                ? enterQueueAsync(accountNumber, waitTime)
+                : CompletableFuture.completedFuture(false);
+        return queued
+                .thenCompose(inQueue -> lock.tryLockAsync(waitTime, leaseTime, TimeUnit.MILLISECONDS, ownerId)
+                        .toCompletableFuture()
+                        .exceptionally(e -> {
+                            log.error("redis lock failed", e);
+                            return false;
+                        })
+                        .whenComplete((isLock, e) -> {
+                            if (inQueue) {
+                                leaveQueue(accountNumber);
+                            }
+                        }))
+                .thenCompose(isLock -> {
+                    if (!isLock) {
+                        log.error("===========lock acquisition failed===========");
+                        throw new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK);
+                    }
+                    return nextFencingTokenAsync(redissonClient.getAtomicLong(getFencingTokenKey(accountNumber)))
+                            .whenComplete((token, e) -> {
+                                if (e != null) {
+                                    log.error("fencing token failed", e);
+                                    lock.unlockAsync(ownerId);
+                                }
+                            });
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> unlockAsync(String accountNumber, long ownerId) {
+        log.debug("Async unlock for accountNumber : {}", accountNumber);
+        return getLock(accountNumber)
+                .unlockAsync(ownerId)
+                .toCompletableFuture();
+    }
+
+    @Override
+    public void unlock(String accountNumber){
+
+        log.debug("Unlock for accountNumber : {}",accountNumber);
+        getLock(accountNumber).unlock();
+    }
+
+    //fair 모드에서만 집계한다.
+    @Override
+    public long queueDepth(String accountNumber) {
+        if (!fair) {
+            return 0L;
+        }
+        return Math.max(0L, redissonClient.getAtomicLong(getWaitersKey(accountNumber)).get());
+    }
+
+    /*
+        fencing token 을 발급한다.
+        redis 가 비워지거나 failover 로 카운터가 사라지면 DB 에 남은 token 보다 작아져 해당 계좌의 쓰기가 모두 거부되므로
+        LocalLockService 처럼 현재 시각 << 20 아래로는 내려가지 않게 한다. (노드 간 시계 차이가 초기화 이후 지난 시간보다 작다고 가정)
+        Lua 숫자는 double 이라 이 크기의 값을 다룰 수 없어서 compareAndSet 으로 올린다. (처음 쓰는 계좌와 초기화 직후에만 왕복이 늘어난다)
+     */
+    private long nextFencingToken(String accountNumber) {
+        RAtomicLong counter = redissonClient.getAtomicLong(getFencingTokenKey(accountNumber));
+        long token = counter.incrementAndGet();
+        long floor = fencingTokenFloor();
+        while (token < floor) {
+            if (counter.compareAndSet(token, floor)) {
+                return floor;
+            }
+            token = counter.incrementAndGet();
+        }
+        return token;
+    }
+
+    private CompletableFuture<Long> nextFencingTokenAsync(RAtomicLong counter) {
+        return counter.incrementAndGetAsync()
+                .toCompletableFuture()
+                .thenCompose(token -> {
+                    long floor = fencingTokenFloor();
+                    if (token >= floor) {
+                        return CompletableFuture.completedFuture(token);
+                    }
+                    return counter.compareAndSetAsync(token, floor)
+                            .toCompletableFuture()
+                            .thenCompose(set -> set
+                                    ? CompletableFuture.completedFuture(floor)
+                                    : nextFencingTokenAsync(counter));
+                });
+    }
+
+    private static long fencingTokenFloor() {
+        return System.currentTimeMillis() << 20;
+    }
+
+    private RLock getLock(String accountNumber) {
+        return fair
+                ? redissonClient.getFairLock(getLockKey(accountNumber))
+                : redissonClient.getLock(getLockKey(accountNumber));
+    }
+
+    //대기열이 가득 차면 기다리지 않고 바로 거절한다.
+    private boolean enterQueue(String accountNumber, long waitTime) {
+        Long entered = script().eval(RScript.Mode.READ_WRITE, ENTER_QUEUE_SCRIPT, RScript.ReturnType.INTEGER,
+                List.<Object>of(getWaitersKey(accountNumber)),
+                String.valueOf(maxWaiters), String.valueOf(waitTime + QUEUE_TTL_MARGIN));
+        return admitted(accountNumber, entered);
+    }
+
+    private CompletableFuture<Boolean> enterQueueAsync(String accountNumber, long waitTime) {
+        return script().<Long>evalAsync(RScript.Mode.READ_WRITE, ENTER_QUEUE_SCRIPT, RScript.ReturnType.INTEGER,
+                        List.<Object>of(getWaitersKey(accountNumber)),
+                        String.valueOf(maxWaiters), String.valueOf(waitTime + QUEUE_TTL_MARGIN))
+                .toCompletableFuture()
+                .thenApply(entered -> admitted(accountNumber, entered));
+    }
+
+    private static boolean admitted(String accountNumber, Long entered) {
+        if (entered == null || entered == 0L) {
+            log.error("===========lock queue is full=========== {}", accountNumber);
+            throw new AccountException(ErrorCode.ACCOUNT_LOCK_QUEUE_FULL);
+        }
+        return true;
+    }
+
+    //락 획득을 늦추지 않도록 결과를 기다리지 않는다. 실패하면 TTL 이 지나 정리된다.
+    private void leaveQueue(String accountNumber) {
+        script().evalAsync(RScript.Mode.READ_WRITE, LEAVE_QUEUE_SCRIPT, RScript.ReturnType.INTEGER,
+                        List.<Object>of(getWaitersKey(accountNumber)))
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        log.warn("Failed to leave lock queue. {}", accountNumber, e);
+                    }
+                });
+    }
+
+    private RScript script() {
+        return redissonClient.getScript(StringCodec.INSTANCE);
+    }
+
+    private String getLockKey(String accountNumber) {
+        return "ACLK"+accountNumber;
+    }
+
+    private String getFencingTokenKey(String accountNumber) {
+        return "ACFT"+accountNumber;
+    }
+
+    private String getWaitersKey(String accountNumber) {
+        return "ACWQ"+accountNumber;
+    }
+
+}
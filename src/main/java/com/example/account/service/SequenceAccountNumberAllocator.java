@@ -0,0 +1,48 @@
+package com.example.account.service;
+
+import com.example.account.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * account_number_seq 시퀀스로 블록을 받는다.
+ * 시퀀스의 increment 는 block-size 와 같아야 한다. (data.sql)
+ * 시퀀스가 기존 계좌번호에 못 미치면 ALTER SEQUENCE ... RESTART 로 옮긴다. (H2 에서는 현재 트랜잭션을 커밋하지 않음)
+ * 옮기는 것은 마이그레이션 후 처음 한 번뿐이지만, 여러 노드가 동시에 처음 기동하면 같은 블록을 받을 수 있으므로
+ * 첫 기동은 한 노드로 하거나 미리 시퀀스를 옮겨 둔다. (alter sequence account_number_seq restart with max(account_number)+1)
+ */
+@Component
+@ConditionalOnProperty(name = "account.number.allocator", havingValue = "sequence", matchIfMissing = true)
+public class SequenceAccountNumberAllocator extends BlockAccountNumberAllocator {
+    private final AccountRepository accountRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public SequenceAccountNumberAllocator(AccountRepository accountRepository,
+                                          JdbcTemplate jdbcTemplate,
+                                          @Value("${account.number.block-size:100}") long blockSize) {
+        super(blockSize);
+        this.accountRepository = accountRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    protected long allocateBlock() {
+        return accountRepository.nextAccountNumberBlock();
+    }
+
+    @Override
+    protected long findUnusedAccountNumber() {
+        return accountRepository.findMaxAccountNumber()
+                .map(max -> Long.parseLong(max) + 1)
+                .orElse(FIRST_ACCOUNT_NUMBER);
+    }
+
+    //DDL 은 parameter 를 받지 않으므로 숫자를 그대로 붙인다.
+    @Override
+    protected long allocateBlockFrom(long floor) {
+        jdbcTemplate.execute("alter sequence account_number_seq restart with " + floor);
+        return accountRepository.nextAccountNumberBlock();
+    }
+}
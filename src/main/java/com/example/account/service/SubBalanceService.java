@@ -0,0 +1,145 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountBalanceSlot;
+import com.example.account.domain.AccountStatus;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountBalanceSlotRepository;
+import com.example.account.repository.AccountRepository;
+import com.example.account.type.ErrorCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 요청이 몰리는 계좌의 잔액을 여러 slot row 로 나눠서 조건부 UPDATE 가 한 row 에 몰리지 않게 한다.
+ * row lock 은 항상 계좌 -> slot 순서로 잡는다.
+ * 나누기/다시 나누기는 계좌 락(LockService)을 잡은 상태에서 호출한다. (HotAccountDetector)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SubBalanceService {
+    private final AccountRepository accountRepository;
+    private final AccountBalanceSlotRepository accountBalanceSlotRepository;
+    private final AccountSnapshotCache accountSnapshotCache;
+
+    @Value("${account.hot-account.slots:8}")
+    private int slots;
+
+    //임의의 slot 부터 차례로 조건부 차감한다. 잔액이 충분한 slot 이 없으면 false
+    public boolean tryUse(Long accountId, int balanceSlots, Long amount) {
+        int start = ThreadLocalRandom.current().nextInt(balanceSlots);
+        for (int i = 0; i < balanceSlots; i++) {
+            if (accountBalanceSlotRepository.useBalanceIfSufficient(
+                    accountId, (start + i) % balanceSlots, amount) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long sum(Long accountId) {
+        return accountBalanceSlotRepository.sumBalanceByAccountId(accountId);
+    }
+
+    //slot 잔액을 모두 계좌로 옮긴다. 호출한 트랜잭션이 계좌 row lock 을 잡고 있어야 한다.
+    public void drainInto(Account account) {
+        drain(account, accountBalanceSlotRepository.findAllForUpdateByAccountId(account.getId()));
+    }
+
+    /*
+        계좌 row lock 을 잡고 slot 잔액을 모은 계좌를 돌려준다. (slot 하나로 부족한 차감)
+        해지됐거나 계좌 + slot 합계로도 amount 에 못 미치면 slot 을 옮기기 전에 예외를 던진다.
+     */
+    public Account lockAndDrain(String accountNumber, Long amount) {
+        Account account = lockAccount(accountNumber);
+        List<AccountBalanceSlot> slotList =
+                accountBalanceSlotRepository.findAllForUpdateByAccountId(account.getId());
+        if (account.getAccountStatus() != AccountStatus.IN_USE) {
+            throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+        }
+        long total = account.getBalance();
+        for (AccountBalanceSlot slot : slotList) {
+            total += slot.getBalance();
+        }
+        if (total < amount) {
+            throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+        }
+        drain(account, slotList);
+        return account;
+    }
+
+    private static void drain(Account account, List<AccountBalanceSlot> slotList) {
+        long total = 0;
+        for (AccountBalanceSlot slot : slotList) {
+            total += slot.getBalance();
+            slot.setBalance(0L);
+        }
+        account.setBalance(account.getBalance() + total);
+    }
+
+    @Transactional
+    public void split(String accountNumber) {
+        Account account = lockAccount(accountNumber);
+        if (account.hasSubBalances() || account.getAccountStatus() != AccountStatus.IN_USE) {
+            return;
+        }
+        long[] shares = shares(account.getBalance(), slots);
+        List<AccountBalanceSlot> created = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            created.add(AccountBalanceSlot.builder()
+                    .account(account)
+                    .slot(i)
+                    .balance(shares[i])
+                    .build());
+        }
+        accountBalanceSlotRepository.saveAll(created);
+        account.setBalance(0L);
+        account.setBalanceSlots(slots);
+        //캐시의 slot 수를 갱신해야 slot 으로 차감한다.
+        accountSnapshotCache.evict(accountNumber);
+        log.info("account {} balance split into {} slots", accountNumber, slots);
+    }
+
+    //계좌 잔액(취소로 들어온 금액 등)과 slot 잔액을 합쳐서 고르게 다시 나눈다.
+    @Transactional
+    public void rebalance(String accountNumber) {
+        Account account = lockAccount(accountNumber);
+        if (!account.hasSubBalances()) {
+            return;
+        }
+        List<AccountBalanceSlot> slotList =
+                accountBalanceSlotRepository.findAllForUpdateByAccountId(account.getId());
+        long total = account.getBalance();
+        for (AccountBalanceSlot slot : slotList) {
+            total += slot.getBalance();
+        }
+        long[] shares = shares(total, slotList.size());
+        for (int i = 0; i < slotList.size(); i++) {
+            slotList.get(i).setBalance(shares[i]);
+        }
+        account.setBalance(0L);
+    }
+
+    private Account lockAccount(String accountNumber) {
+        return accountRepository.findAllForUpdateByAccountNumberIn(List.of(accountNumber)).stream()
+                .findFirst()
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+    }
+
+    //나머지는 앞 slot 부터 1씩 더 준다.
+    static long[] shares(long total, int count) {
+        long[] shares = new long[count];
+        for (int i = 0; i < count; i++) {
+            shares[i] = total / count + (i < total % count ? 1 : 0);
+        }
+        return shares;
+    }
+}
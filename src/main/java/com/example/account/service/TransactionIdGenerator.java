@@ -0,0 +1,60 @@
+package com.example.account.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 시간순으로 증가하는 64bit 거래 id (Snowflake 방식)
+ * | 41bit 밀리초 (EPOCH 기준) | 10bit 노드 id | 12bit 밀리초 내 순번 |
+ * 16자리 hex 문자열로 저장하므로 문자열 순서와 생성 순서가 같고, 인덱스에는 뒤에만 추가된다.
+ */
+@Component
+public class TransactionIdGenerator {
+    static final long EPOCH = 1704067200000L; //2024-01-01T00:00:00Z
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long nodeId;
+    //(timestamp << SEQUENCE_BITS) | sequence
+    private final AtomicLong lastState = new AtomicLong();
+
+    public TransactionIdGenerator(@Value("${account.transaction.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("account.transaction.node-id must be 0 ~ " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public long nextId() {
+        while (true) {
+            long last = lastState.get();
+            long now = System.currentTimeMillis() - EPOCH;
+            //같은 밀리초이거나 시계가 뒤로 간 경우 순번을 올린다. 순번이 넘치면 다음 밀리초로 넘어간다.
+            long next = now > (last >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : last + 1;
+            if (lastState.compareAndSet(last, next)) {
+                return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS))
+                        | (nodeId << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    public String nextTransactionId() {
+        return toString(nextId());
+    }
+
+    //고정 길이 16자리 hex
+    static String toString(long id) {
+        char[] chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = HEX[(int) (id & 0xF)];
+            id >>>= 4;
+        }
+        return new String(chars);
+    }
+}
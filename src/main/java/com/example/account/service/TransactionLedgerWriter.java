@@ -0,0 +1,251 @@
+package com.example.account.service;
+
+import com.example.account.domain.Transaction;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.TransactionStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 거래 내역 group commit
+ * 여러 요청의 거래 내역을 모아서 한 번의 JDBC batch, 한 번의 commit 으로 저장한다.
+ * 잔액 차감과 거래 내역 저장을 묶은 작업(execute)도 같은 트랜잭션에서 실행한다. (ATOMIC 모드의 성공 내역)
+ * committer 는 계좌번호 해시로 나눈다. 같은 계좌는 같은 committer 에서 순서대로, 다른 committer 끼리는 병렬로 커밋하므로
+ * 한 계좌의 느린 작업(row lock 대기 등)은 그 committer 에 묶인 계좌만 늦춘다.
+ * 호출자는 자신의 내역이 커밋될 때까지 기다린다. (커밋 전에 응답하지 않음)
+ */
+@Slf4j
+@Component
+public class TransactionLedgerWriter {
+    private final TransactionStore transactionStore;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    //committer 별 대기열
+    private final List<BlockingQueue<PendingTransaction>> queues;
+
+    private volatile boolean running;
+    private final List<Thread> committers = new ArrayList<>();
+
+    public TransactionLedgerWriter(TransactionStore transactionStore,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${account.ledger.group-commit.enabled:true}") boolean enabled,
+                                   @Value("${account.ledger.group-commit.max-batch-size:200}") int maxBatchSize,
+                                   @Value("${account.ledger.group-commit.flush-interval:2}") long flushInterval,
+                                   @Value("${account.ledger.group-commit.queue-size:10000}") int queueSize,
+                                   @Value("${account.ledger.group-commit.committers:4}") int committers) {
+        this.transactionStore = transactionStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        this.queues = new ArrayList<>(committers);
+        for (int i = 0; i < committers; i++) {
+            queues.add(new ArrayBlockingQueue<>(queueSize));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < queues.size(); i++) {
+            BlockingQueue<PendingTransaction> queue = queues.get(i);
+            Thread committer = new Thread(() -> run(queue), "transaction-ledger-committer-" + i);
+            committer.setDaemon(true);
+            committer.start();
+            committers.add(committer);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread committer : committers) {
+            committer.interrupt();
+        }
+        for (Thread committer : committers) {
+            committer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * 거래 내역을 저장하고 커밋될 때까지 기다린다.
+     * 호출자는 DB 트랜잭션을 잡고 있으면 안 된다. (committer 가 쓸 connection 이 부족해질 수 있음)
+     */
+    public Transaction write(Transaction transaction) {
+        if (!enabled) {
+            return transactionStore.save(transaction);
+        }
+        PendingTransaction pending = new PendingTransaction(transaction, null);
+        String accountNumber = transaction.getAccount() == null ? null : transaction.getAccount().getAccountNumber();
+        if (!queueOf(accountNumber).offer(pending)) {
+            //대기열이 가득 차면 직접 저장한다.
+            log.warn("Transaction ledger queue is full. write directly.");
+            return transactionStore.save(transaction);
+        }
+        return (Transaction) await(pending);
+    }
+
+    /**
+     * 작업을 계좌의 committer 스레드에서 같은 committer 의 다른 요청과 같은 트랜잭션으로 실행하고 커밋될 때까지 기다린다.
+     * AccountException 으로 거절된 작업은 그 작업만 실패한다. 거절 전에 쓴 내용은 함께 커밋되므로
+     * 잔액을 바꾸기 전에 거절해야 한다. 호출 스레드의 ThreadLocal(fencing token 등)은 보이지 않는다.
+     * row lock 을 오래 기다릴 수 있는 작업은 묶지 말고 executeDirectly 로 실행한다.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String accountNumber, Supplier<T> work) {
+        if (!enabled) {
+            return executeDirectly(work);
+        }
+        PendingTransaction pending = new PendingTransaction(null, work);
+        if (!queueOf(accountNumber).offer(pending)) {
+            log.warn("Transaction ledger queue is full. execute directly.");
+            return executeDirectly(work);
+        }
+        return (T) await(pending);
+    }
+
+    //호출 스레드에서 자기 트랜잭션으로 실행한다. (묶지 않음)
+    public <T> T executeDirectly(Supplier<T> work) {
+        return transactionTemplate.execute(status -> work.get());
+    }
+
+    private BlockingQueue<PendingTransaction> queueOf(String accountNumber) {
+        if (accountNumber == null) {
+            return queues.get(0);
+        }
+        return queues.get(Math.floorMod(accountNumber.hashCode(), queues.size()));
+    }
+
+    private static Object await(PendingTransaction pending) {
+        try {
+            return pending.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void run(BlockingQueue<PendingTransaction> queue) {
+        List<PendingTransaction> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingTransaction first = queue.poll(100L, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                //flush-interval 동안 또는 max-batch-size 만큼 모은다.
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingTransaction next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                //종료 중. 모은 것과 남은 것을 모두 저장한다.
+                queue.drainTo(batch, maxBatchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingTransaction> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Transaction> transactions = new ArrayList<>(batch.size());
+                for (PendingTransaction pending : batch) {
+                    if (pending.work == null) {
+                        transactions.add(pending.transaction);
+                    } else {
+                        pending.run();
+                    }
+                }
+                if (!transactions.isEmpty()) {
+                    transactionStore.saveAll(transactions);
+                }
+            });
+            batch.forEach(PendingTransaction::complete);
+        } catch (RuntimeException e) {
+            //한 건 때문에 전체가 실패하지 않도록 한 건씩 다시 실행한다. (전체가 롤백됐으므로 작업도 다시 실행)
+            log.error("Failed to group commit transactions. size : {}", batch.size(), e);
+            for (PendingTransaction pending : batch) {
+                try {
+                    if (pending.work == null) {
+                        pending.transaction.setId(null);
+                        pending.future.complete(transactionTemplate.execute(status ->
+                                transactionStore.save(pending.transaction)));
+                    } else {
+                        pending.future.complete(transactionTemplate.execute(status -> pending.work.get()));
+                    }
+                } catch (RuntimeException ex) {
+                    pending.future.completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    //거래 내역 한 건(transaction) 또는 작업 하나(work). 결과는 커밋 뒤에 알린다.
+    private static final class PendingTransaction {
+        private final Transaction transaction;
+        private final Supplier<?> work;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        private Object result;
+        private AccountException rejection;
+
+        private PendingTransaction(Transaction transaction, Supplier<?> work) {
+            this.transaction = transaction;
+            this.work = work;
+        }
+
+        private void run() {
+            result = null;
+            rejection = null;
+            try {
+                result = work.get();
+            } catch (AccountException e) {
+                rejection = e;
+            }
+        }
+
+        private void complete() {
+            if (work == null) {
+                future.complete(transaction);
+            } else if (rejection != null) {
+                future.completeExceptionally(rejection);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
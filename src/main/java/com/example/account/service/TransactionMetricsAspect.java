@@ -0,0 +1,45 @@
+package com.example.account.service;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/*
+    TransactionService 메서드 시간을 validation / db / commit 으로 나눈다.
+    트랜잭션 프록시보다 바깥에서 감싸야 커밋 시간이 같은 측정 범위에 들어간다. (HIGHEST_PRECEDENCE)
+    db 는 repository 호출 시간의 합이다. 변경 감지로 나가는 UPDATE 는 커밋 때 flush 되므로 commit 에 들어간다.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class TransactionMetricsAspect {
+    private final AccountMetrics accountMetrics;
+
+    @Around("execution(public * com.example.account.service.TransactionService.*(..))")
+    public Object aroundTransactionService(ProceedingJoinPoint pjp) throws Throwable {
+        if (!accountMetrics.startPhases()) {
+            return pjp.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return pjp.proceed();
+        } finally {
+            accountMetrics.endPhases(pjp.getSignature().getName(), System.nanoTime() - start);
+        }
+    }
+
+    @Around("execution(public * org.springframework.data.repository.Repository+.*(..))")
+    public Object aroundRepository(ProceedingJoinPoint pjp) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return pjp.proceed();
+        } finally {
+            accountMetrics.addDbTime(System.nanoTime() - start);
+        }
+    }
+}
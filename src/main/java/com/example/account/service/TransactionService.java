@@ -1,69 +1,284 @@
 package com.example.account.service;
 
+import com.example.account.aop.FencingTokenHolder;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountStatus;
 import com.example.account.domain.AccountUser;
 import com.example.account.domain.Transaction;
+import com.example.account.dto.AccountSnapshot;
+import com.example.account.dto.FailedTransaction;
 import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistoryResponse;
+import com.example.account.dto.UseBalance;
 import com.example.account.exception.AccountException;
 import com.example.account.repository.AccountRepository;
 import com.example.account.repository.AccountUserRepository;
-import com.example.account.repository.TransactionRepository;
+import com.example.account.repository.TransactionStore;
+import com.example.account.type.DebitMode;
 import com.example.account.type.ErrorCode;
 import com.example.account.type.TransactionResultType;
 import com.example.account.type.TransactionType;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import static com.example.account.type.TransactionResultType.F;
 import static com.example.account.type.TransactionResultType.S;
 import static com.example.account.type.TransactionType.CANCEL;
 import static com.example.account.type.TransactionType.USE;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
-    private final TransactionRepository transactionRepository;
+    private final TransactionStore transactionStore;
     private final AccountUserRepository accountUserRepository;
     private final AccountRepository accountRepository;
+    private final AccountSnapshotCache accountSnapshotCache;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final TransactionLedgerWriter transactionLedgerWriter;
+    private final SubBalanceService subBalanceService;
+
+    @Value("${account.transaction.debit-mode:LOCK}")
+    private DebitMode debitMode;
+
+    //MEMORY 모드의 잔액 원장
+    @Autowired(required = false)
+    private BalanceLedger balanceLedger;
+
+    @Value("${account.transaction.history.max-page-size:100}")
+    private int historyMaxPageSize;
+
+    @Value("${account.transaction.history.export-chunk-size:1000}")
+    private int historyExportChunkSize;
+
     @Transactional
     public TransactionDto useBalance(Long userId, String accountNumber,
                                      Long amount) {
-        AccountUser accountUser = accountUserRepository.findById(userId)
-                .orElseThrow(() -> new AccountException(ErrorCode.USER_NOT_FOUND));
+        if (debitMode == DebitMode.ATOMIC) {
+            return useBalanceAtomically(userId, accountNumber, amount);
+        }
+        if (debitMode == DebitMode.MEMORY) {
+            return useBalanceInMemory(userId, accountNumber, amount);
+        }
+        validateFencingToken(accountNumber);
+        Account account;
+        Optional<AccountSnapshot> snapshot = accountSnapshotCache.find(accountNumber);
+        if (snapshot.isPresent()) {
+            //소유자, 상태는 캐시로 검증하고 잔액만 DB 에서 읽는다. (PK 조회)
+            validateUseBalance(userId, snapshot.get());
+            account = getAccount(snapshot.get());
+            validateBalance(account, amount);
+        } else {
+            AccountUser accountUser = accountUserRepository.findById(userId)
+                    .orElseThrow(() -> new AccountException(ErrorCode.USER_NOT_FOUND));
+
+            account = accountRepository.findByAccountNumber(accountNumber)
+                    .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+
+            validateUseBalance(accountUser, account, amount);
+        }
+
+        account.useBalance(amount);
+
+        return TransactionDto.fromEntity(saveAndGetTransaction(USE, S, account, amount));
+    }
 
+    /*
+        ATOMIC 모드의 잔액 사용. 차감 UPDATE 와 거래 내역 INSERT 를 같은 committer 의 다른 요청과 묶어 한 번에 커밋한다.
+        (TransactionLedgerWriter, committer 는 계좌번호 해시로 나뉜다)
+        slot 으로 나뉜 계좌는 계좌 row lock 을 기다릴 수 있고 slot 끼리 병렬로 차감하므로 묶지 않고 자기 트랜잭션에서 실행한다.
+        커밋을 기다리는 동안 connection 을 잡지 않도록 트랜잭션 밖에서 호출한다.
+     */
+    public TransactionDto useBalanceGrouped(Long userId, String accountNumber,
+                                            Long amount) {
+        if (debitMode != DebitMode.ATOMIC) {
+            throw new IllegalStateException("useBalanceGrouped requires ATOMIC debit mode");
+        }
+        if (accountSnapshotCache.find(accountNumber).filter(AccountSnapshot::hasSubBalances).isPresent()) {
+            return transactionLedgerWriter.executeDirectly(() -> useBalanceAtomically(userId, accountNumber, amount));
+        }
+        return transactionLedgerWriter.execute(accountNumber,
+                () -> useBalanceAtomically(userId, accountNumber, amount));
+    }
+
+    /*
+        조건부 UPDATE 한 번으로 잔액을 차감한다. (분산 락 불필요)
+        변경된 row 가 없으면 그때만 조회해서 실패 원인을 찾는다.
+     */
+    private TransactionDto useBalanceAtomically(Long userId, String accountNumber,
+                                                Long amount) {
+        Optional<AccountSnapshot> snapshot = accountSnapshotCache.find(accountNumber);
+        if (snapshot.isPresent() && snapshot.get().hasSubBalances()) {
+            return useSubBalance(userId, accountNumber, snapshot.get(), amount);
+        }
+        if (accountRepository.useBalanceIfSufficient(accountNumber, userId, amount) == 0) {
+            //캐시가 갱신되기 전에 잔액이 slot 으로 나뉜 계좌
+            Optional<Account> split = accountRepository.findByAccountNumber(accountNumber)
+                    .filter(Account::hasSubBalances);
+            if (split.isPresent()) {
+                return useSubBalance(userId, accountNumber, AccountSnapshot.fromEntity(split.get()), amount);
+            }
+            throwUseBalanceRejected(userId, accountNumber, amount);
+        }
         Account account = accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
 
-        validateUseBalance(accountUser, account, amount);
+        return TransactionDto.fromEntity(saveAndGetTransaction(USE, S, account, amount));
+    }
 
+    /*
+        잔액이 slot 으로 나뉜 계좌(HotAccountDetector)는 계좌 row 대신 slot row 하나를 조건부 차감한다.
+        slot 하나로 부족하면 계좌 row lock 을 잡고 slot 잔액을 계좌로 모은 뒤 차감한다. (다음 rebalance 때 다시 나뉜다)
+        거래 내역의 잔액은 계좌 + slot 합계다.
+     */
+    private TransactionDto useSubBalance(Long userId, String accountNumber,
+                                         AccountSnapshot snapshot, Long amount) {
+        validateUseBalance(userId, snapshot);
+        if (subBalanceService.tryUse(snapshot.getId(), snapshot.getBalanceSlots(), amount)) {
+            Account account = getAccount(snapshot);
+            Transaction transaction = buildTransaction(USE, S, account, amount);
+            transaction.setBalanceSnapshot(account.getBalance() + subBalanceService.sum(account.getId()));
+            return TransactionDto.fromEntity(transactionStore.save(transaction));
+        }
+        //잔액 검증은 slot 을 옮기기 전에 lockAndDrain 이 한다.
+        Account account = subBalanceService.lockAndDrain(accountNumber, amount);
         account.useBalance(amount);
-
         return TransactionDto.fromEntity(saveAndGetTransaction(USE, S, account, amount));
     }
 
+    /*
+        잔액은 BalanceLedger 에서 차감하고 거래 내역만 저장한다. (계좌 조회/UPDATE 없음)
+        account 테이블의 잔액은 checkpoint 때 갱신되므로 계좌 엔티티는 바꾸지 않는다.
+     */
+    private TransactionDto useBalanceInMemory(Long userId, String accountNumber, Long amount) {
+        AccountSnapshot snapshot = accountSnapshotCache.find(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        validateUseBalance(userId, snapshot);
+        long transactionId = transactionIdGenerator.nextId();
+        long balance = balanceLedger.use(snapshot.getId(), amount, transactionId);
+        Transaction transaction = buildTransaction(USE, S,
+                accountRepository.getReferenceById(snapshot.getId()), amount, transactionId);
+        transaction.setBalanceSnapshot(balance);
+        return TransactionDto.fromEntity(transactionStore.save(transaction), accountNumber);
+    }
+
+    private void throwUseBalanceRejected(Long userId, String accountNumber, Long amount) {
+        AccountUser accountUser = accountUserRepository.findById(userId)
+                .orElseThrow(() -> new AccountException(ErrorCode.USER_NOT_FOUND));
+
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+
+        validateUseBalance(accountUser, account, amount);
+        //검증은 통과했지만 그 사이 다른 거래가 잔액을 먼저 사용한 경우
+        throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+    }
+
     private void validateUseBalance(AccountUser accountUser, Account account, Long amount) {
+        validateAccountOwner(accountUser, account);
+        if (account.getBalance() < amount) {
+            throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+        }
+    }
+
+    private void validateAccountOwner(AccountUser accountUser, Account account) {
         if (!Objects.equals(accountUser.getId(), account.getAccountUser().getId())) {
             throw new AccountException(ErrorCode.USER_ACCOUNT_NOT_MATCH);
         }
         if (account.getAccountStatus() != AccountStatus.IN_USE) {
             throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
         }
+    }
+
+    private void validateUseBalance(Long userId, AccountSnapshot snapshot) {
+        if (!Objects.equals(userId, snapshot.getAccountUserId())) {
+            if (!accountUserRepository.existsById(userId)) {
+                throw new AccountException(ErrorCode.USER_NOT_FOUND);
+            }
+            throw new AccountException(ErrorCode.USER_ACCOUNT_NOT_MATCH);
+        }
+        if (snapshot.getAccountStatus() != AccountStatus.IN_USE) {
+            throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+        }
+    }
+
+    private void validateBalance(Account account, Long amount) {
+        //캐시가 evict 되기 전에 해지된 계좌
+        if (account.getAccountStatus() != AccountStatus.IN_USE) {
+            throw new AccountException(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED);
+        }
         if (account.getBalance() < amount) {
             throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
         }
     }
 
-    @Transactional
-    public void saveFailedUseTransaction(String accountNumber, Long amount) {
-        Account account = accountRepository.findByAccountNumber(accountNumber)
+    private Account getAccount(AccountSnapshot snapshot) {
+        return accountRepository.findById(snapshot.getId())
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+    }
+
+    //캐시에 있으면 계좌번호 대신 PK 로 읽는다.
+    private Account getAccount(String accountNumber) {
+        Optional<AccountSnapshot> snapshot = accountSnapshotCache.find(accountNumber);
+        if (snapshot.isPresent()) {
+            return getAccount(snapshot.get());
+        }
+        return accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
-        saveAndGetTransaction(USE, F, account, amount);
+    }
+
+    /*
+        락 점유 시간이 지나 다른 요청이 이미 같은 계좌를 변경했다면 거부한다.
+        계좌를 읽기 전에 조건부 UPDATE 로 row lock 을 잡는다. 이전 락 소유자가 아직 커밋하지 않았으면 여기서 기다리고,
+        그 뒤에 읽는 잔액에는 이전 소유자의 변경이 들어 있다. (먼저 읽고 UPDATE 하면 오래된 잔액을 다시 쓴다)
+     */
+    private void validateFencingToken(String accountNumber) {
+        Long fencingToken = FencingTokenHolder.get(accountNumber);
+        if (fencingToken == null) {
+            return;
+        }
+        if (accountRepository.updateFencingTokenByAccountNumber(accountNumber, fencingToken) == 0) {
+            accountRepository.findByAccountNumber(accountNumber)
+                    .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+            throw new AccountException(ErrorCode.LOCK_FENCING_TOKEN_EXPIRED);
+        }
+    }
+
+    //일괄 차감용. 계좌는 row lock 을 잡고 읽었으므로 읽은 잔액이 최신이다.
+    private void validateFencingToken(Account account) {
+        Long fencingToken = FencingTokenHolder.get(account.getAccountNumber());
+        if (fencingToken == null) {
+            return;
+        }
+        if (accountRepository.updateFencingToken(account.getId(), fencingToken) == 0) {
+            throw new AccountException(ErrorCode.LOCK_FENCING_TOKEN_EXPIRED);
+        }
+        //변경 감지로 계좌 row 를 다시 쓸 때 token 이 되돌아가지 않도록
+        account.setFencingToken(fencingToken);
+    }
+
+    /*
+        실패 내역은 잔액 변경이 없으므로 group commit 으로 저장한다.
+        커밋을 기다리는 동안 connection 을 잡지 않도록 트랜잭션 밖에서 호출한다.
+     */
+    public void saveFailedUseTransaction(String accountNumber, Long amount) {
+        Account account = getAccount(accountNumber);
+        transactionLedgerWriter.write(buildTransaction(USE, F, account, amount));
     }
 
 
@@ -72,28 +287,163 @@ public class TransactionService {
             TransactionResultType transactionResultType,
             Account account,
             Long amount) {
-        return transactionRepository.save(
-                Transaction.builder()
-                        .transactionType(transactionType)
-                        .transactionResultType(transactionResultType)
-                        .account(account)
-                        .amount(amount)
-                        .balanceSnapshot(account.getBalance())
-                        .transactionId(UUID.randomUUID().toString().replace("-", ""))
-                        .transactedAt(LocalDateTime.now())
-                        .build()
+        return transactionStore.save(
+                buildTransaction(transactionType, transactionResultType, account, amount)
         );
     }
+
+    private Transaction buildTransaction(
+            TransactionType transactionType,
+            TransactionResultType transactionResultType,
+            Account account,
+            Long amount) {
+        return Transaction.builder()
+                .transactionType(transactionType)
+                .transactionResultType(transactionResultType)
+                .account(account)
+                .amount(amount)
+                .balanceSnapshot(currentBalance(account))
+                .transactionId(transactionIdGenerator.nextTransactionId())
+                .transactedAt(LocalDateTime.now())
+                .build();
+    }
+
+    //MEMORY 모드: WAL record 에 남긴 거래 id 를 그대로 쓴다. 잔액은 호출하는 쪽이 채운다.
+    private Transaction buildTransaction(
+            TransactionType transactionType,
+            TransactionResultType transactionResultType,
+            Account account,
+            Long amount,
+            long transactionId) {
+        return Transaction.builder()
+                .transactionType(transactionType)
+                .transactionResultType(transactionResultType)
+                .account(account)
+                .amount(amount)
+                .transactionId(TransactionIdGenerator.toString(transactionId))
+                .transactedAt(LocalDateTime.now())
+                .build();
+    }
+
+    //MEMORY 모드에서는 원장에 올라온 계좌의 잔액이 account 테이블보다 최신이다.
+    private Long currentBalance(Account account) {
+        if (balanceLedger == null) {
+            return account.getBalance();
+        }
+        return balanceLedger.balance(account.getId()).orElse(account.getBalance());
+    }
+
+    /*
+        잔액 일괄 사용
+        사용자/계좌를 IN 쿼리로 한 번에 읽고 (계좌는 row lock),
+        항목별로 검증/차감한 뒤 거래 내역을 saveAll 로 한 번에 저장한다. (JDBC batch)
+        실패한 항목은 F 로 기록하고 나머지는 계속 처리한다.
+     */
+    @Transactional
+    public List<TransactionDto> useBalanceBatch(List<UseBalance.Request> requests) {
+        Set<Long> userIds = requests.stream()
+                .map(UseBalance.Request::getUserId)
+                .collect(Collectors.toSet());
+        Set<String> accountNumbers = requests.stream()
+                .map(UseBalance.Request::getAccountNumber)
+                .collect(Collectors.toSet());
+
+        Map<Long, AccountUser> accountUsers = accountUserRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(AccountUser::getId, Function.identity()));
+        Map<String, Account> accounts = accountRepository.findAllForUpdateByAccountNumberIn(accountNumbers).stream()
+                .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+        //락 점유 시간이 지난 계좌가 있으면 일괄 처리 전체를 거부한다.
+        accounts.values().forEach(this::validateFencingToken);
+        //slot 으로 나뉜 잔액은 계좌로 모아서 차감한다. (row lock 을 잡았으므로 계좌 -> slot 순서)
+        accounts.values().stream()
+                .filter(Account::hasSubBalances)
+                .forEach(subBalanceService::drainInto);
+
+        int size = requests.size();
+        Transaction[] transactions = new Transaction[size];
+        ErrorCode[] errorCodes = new ErrorCode[size];
+        for (int i = 0; i < size; i++) {
+            UseBalance.Request request = requests.get(i);
+            Account account = accounts.get(request.getAccountNumber());
+            try {
+                if (account == null) {
+                    throw new AccountException(ErrorCode.ACCOUNT_NOT_FOUND);
+                }
+                AccountUser accountUser = accountUsers.get(request.getUserId());
+                if (accountUser == null) {
+                    throw new AccountException(ErrorCode.USER_NOT_FOUND);
+                }
+                if (debitMode == DebitMode.MEMORY) {
+                    transactions[i] = useBalanceInMemory(accountUser, account, request.getAmount());
+                    continue;
+                }
+                validateUseBalance(accountUser, account, request.getAmount());
+
+                account.useBalance(request.getAmount());
+                transactions[i] = buildTransaction(USE, S, account, request.getAmount());
+            } catch (AccountException e) {
+                log.error("Failed to useBalance in batch. {}", e.getErrorCodes());
+                errorCodes[i] = e.getErrorCodes();
+                if (account != null) {
+                    transactions[i] = buildTransaction(USE, F, account, request.getAmount());
+                }
+            }
+        }
+
+        transactionStore.saveAll(Arrays.stream(transactions)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+
+        List<TransactionDto> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            TransactionDto transactionDto = transactions[i] != null
+                    ? TransactionDto.fromEntity(transactions[i])
+                    : TransactionDto.builder()
+                    .accountNumber(requests.get(i).getAccountNumber())
+                    .transactionType(USE)
+                    .transactionResultType(F)
+                    .amount(requests.get(i).getAmount())
+                    .transactedAt(LocalDateTime.now())
+                    .build();
+            transactionDto.setErrorCode(errorCodes[i]);
+            results.add(transactionDto);
+        }
+        return results;
+    }
+
+    //일괄 처리의 MEMORY 모드 항목. 잔액 검증/차감은 원장에서 한다.
+    private Transaction useBalanceInMemory(AccountUser accountUser, Account account, Long amount) {
+        validateAccountOwner(accountUser, account);
+        long transactionId = transactionIdGenerator.nextId();
+        long balance = balanceLedger.use(account.getId(), amount, transactionId);
+        Transaction transaction = buildTransaction(USE, S, account, amount, transactionId);
+        transaction.setBalanceSnapshot(balance);
+        return transaction;
+    }
+
     @Transactional
     public TransactionDto cancelBalance(String transactionId,String accountNumber,Long amount){
+        //잔액은 원장이 계좌별로 순서대로 바꾸므로 MEMORY 모드는 fencing token 으로 계좌 row 를 다시 쓰지 않는다.
+        if (debitMode != DebitMode.MEMORY) {
+            validateFencingToken(accountNumber);
+        }
 
-        Transaction transaction=transactionRepository.findByTransactionId(transactionId)
+        Transaction transaction=transactionStore.findByTransactionId(transactionId)
                 .orElseThrow(()->new AccountException(ErrorCode.TRANSACTION_NOT_FOUND));
 
-        Account account= accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(()->new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        Account account = getAccount(accountNumber);
 
         validateCancelBalance(transaction,account,amount);
+        if (debitMode == DebitMode.MEMORY) {
+            long cancelTransactionId = transactionIdGenerator.nextId();
+            Transaction cancelTransaction = buildTransaction(CANCEL, S, account, amount, cancelTransactionId);
+            cancelTransaction.setBalanceSnapshot(
+                    balanceLedger.cancel(account.getId(), amount, cancelTransactionId));
+            return TransactionDto.fromEntity(transactionStore.save(cancelTransaction));
+        }
+        if (debitMode == DebitMode.ATOMIC) {
+            return cancelBalanceAtomically(account, amount);
+        }
         account.cancelBalance(amount);
         return TransactionDto.fromEntity(
                 saveAndGetTransaction(CANCEL,S,account,amount)
@@ -101,6 +451,25 @@ public class TransactionService {
 
     }
 
+    /*
+        ATOMIC 모드의 차감은 락 없이 조건부 UPDATE 로 실행되므로 취소도 UPDATE 한 번으로 더한다.
+        읽어 둔 잔액에 더해서 row 를 다시 쓰면 그 사이 커밋된 차감이나 slot 모으기(SubBalanceService)가 사라진다.
+     */
+    private TransactionDto cancelBalanceAtomically(Account account, Long amount) {
+        if (amount < 0) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
+        accountRepository.cancelBalance(account.getId(), amount);
+        //UPDATE 가 영속성 컨텍스트를 비우므로 더한 뒤의 잔액을 다시 읽는다.
+        Account canceled = accountRepository.findById(account.getId())
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        Transaction transaction = buildTransaction(CANCEL, S, canceled, amount);
+        if (canceled.hasSubBalances()) {
+            transaction.setBalanceSnapshot(canceled.getBalance() + subBalanceService.sum(canceled.getId()));
+        }
+        return TransactionDto.fromEntity(transactionStore.save(transaction));
+    }
+
     private void validateCancelBalance(Transaction transaction, Account account, Long amount) {
         if(!Objects.equals(transaction.getAccount().getId(), account.getId())){
             throw new AccountException(ErrorCode.TRANSACTION_ACCOUNT_UN_MATCH);
@@ -113,21 +482,95 @@ public class TransactionService {
         }
 
     }
-    @Transactional
     public void saveFailedCancelTransaction(String accountNumber, Long amount) {
-        Account account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        Account account = getAccount(accountNumber);
 
-        saveAndGetTransaction(CANCEL, F, account, amount);
+        transactionLedgerWriter.write(buildTransaction(CANCEL, F, account, amount));
     }
 
-
+    /*
+        FailedTransactionRecorder 가 모은 실패 내역을 한 번에 저장한다.
+        거래 시각은 실패한 시각으로 남긴다.
+     */
     @Transactional
+    public void saveFailedTransactions(List<FailedTransaction> failedTransactions) {
+        Set<String> accountNumbers = failedTransactions.stream()
+                .map(FailedTransaction::getAccountNumber)
+                .collect(Collectors.toSet());
+        Map<String, Account> accounts = accountRepository.findAllByAccountNumberIn(accountNumbers).stream()
+                .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+
+        List<Transaction> transactions = new ArrayList<>(failedTransactions.size());
+        for (FailedTransaction failedTransaction : failedTransactions) {
+            Account account = accounts.get(failedTransaction.getAccountNumber());
+            if (account == null) {
+                log.error("Failed transaction for unknown account. {}", failedTransaction.encode());
+                continue;
+            }
+            Transaction transaction = buildTransaction(failedTransaction.getTransactionType(), F,
+                    account, failedTransaction.getAmount());
+            transaction.setTransactedAt(failedTransaction.getTransactedAt());
+            transactions.add(transaction);
+        }
+        transactionStore.saveAll(transactions);
+    }
+
+
+    //조회 전용: projection 으로 읽으므로 영속성 컨텍스트와 dirty checking 을 거치지 않는다.
+    @Transactional(readOnly = true)
     public TransactionDto queryTransaction(String transactionId){
-        return TransactionDto.fromEntity(
-                transactionRepository.findByTransactionId(transactionId)
-                        .orElseThrow(()->new AccountException(ErrorCode.TRANSACTION_NOT_FOUND)));
+        return transactionStore.findTransactionDtoByTransactionId(transactionId)
+                .orElseThrow(()->new AccountException(ErrorCode.TRANSACTION_NOT_FOUND));
+    }
+
+    /*
+        계좌별 거래 내역 (최신순).
+        OFFSET 대신 커서(마지막 거래의 transactedAt, id) 이후를 읽으므로 몇 번째 페이지든 비용이 같다.
+     */
+    @Transactional(readOnly = true)
+    public TransactionHistoryResponse getTransactionHistory(String accountNumber,
+                                                            TransactionType transactionType,
+                                                            TransactionResultType transactionResultType,
+                                                            String cursor, int size) {
+        return findTransactionHistory(accountNumber, transactionType, transactionResultType,
+                cursor, Math.max(1, Math.min(size, historyMaxPageSize)));
+    }
+
+    //내보내기용. 청크마다 짧은 트랜잭션으로 읽어서 긴 내보내기가 커넥션을 붙잡지 않는다.
+    @Transactional(readOnly = true)
+    public TransactionHistoryResponse getTransactionHistoryChunk(String accountNumber,
+                                                                 TransactionType transactionType,
+                                                                 TransactionResultType transactionResultType,
+                                                                 String cursor) {
+        return findTransactionHistory(accountNumber, transactionType, transactionResultType,
+                cursor, historyExportChunkSize);
+    }
+
+    private TransactionHistoryResponse findTransactionHistory(String accountNumber,
+                                                              TransactionType transactionType,
+                                                              TransactionResultType transactionResultType,
+                                                              String cursor, int size) {
+        Long accountId = accountSnapshotCache.find(accountNumber)
+                .map(AccountSnapshot::getId)
+                .orElseThrow(() -> new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
+        //다음 페이지가 있는지 알기 위해 한 건 더 읽는다.
+        Limit limit = Limit.of(size + 1);
+        if (cursor == null) {
+            return TransactionHistoryResponse.of(transactionStore.findHistory(
+                    accountId, transactionType, transactionResultType, limit), size);
+        }
+        TransactionHistoryResponse.Cursor position = decodeCursor(cursor);
+        return TransactionHistoryResponse.of(transactionStore.findHistoryAfter(
+                accountId, transactionType, transactionResultType,
+                position.getTransactedAt(), position.getId(), limit), size);
+    }
 
+    private TransactionHistoryResponse.Cursor decodeCursor(String cursor) {
+        try {
+            return TransactionHistoryResponse.Cursor.decode(cursor);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
     }
 
 
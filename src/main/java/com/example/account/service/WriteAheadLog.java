@@ -0,0 +1,347 @@
+package com.example.account.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * BalanceLedger 의 잔액 변경 로그. 고정 크기 segment 파일을 mmap 해서 순서대로 붙여 쓴다.
+ * record 는 48 byte 고정 길이: seq, 계좌 id, 변경 후 잔액, 차액, 거래 id, pending (seq 0 은 빈 자리)
+ * 변경 후 잔액을 남기므로 같은 record 를 여러 번 적용해도 결과가 같다. (계좌별 가장 큰 seq 가 최종 잔액)
+ * pending record 는 커밋 여부를 아직 모르는 변경이다. 차액은 복구 때 커밋되지 않은 변경을 되돌리는 데 쓴다.
+ * force 는 flusher 가 모아서 하고, 요청 스레드는 awaitDurable 로 자기 record 가 디스크에 내려갈 때까지 기다린다.
+ */
+@Slf4j
+class WriteAheadLog implements Closeable {
+    static final int RECORD_SIZE = 48;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    //append/rotate 는 appendLock, durable seq 대기는 durableLock (가상 스레드 pinning 을 피하려고 synchronized 대신)
+    private final ReentrantLock appendLock = new ReentrantLock();
+    //force 는 한 번에 하나씩. fsync 동안 append 가 막히지 않도록 appendLock 밖에서 한다.
+    private final ReentrantLock forceLock = new ReentrantLock();
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableChanged = durableLock.newCondition();
+    //커밋/롤백이 끝나지 않은 pending record 의 seq
+    private final NavigableSet<Long> pending = new ConcurrentSkipListSet<>();
+    //다 쓴 segment 의 마지막 seq
+    private final Map<Path, Long> lastSeqs = new ConcurrentHashMap<>();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private Path segment;
+    private long segmentIndex;
+    private long nextSeq = 1L;
+    //현재 segment 에서 force 하지 않은 구간의 시작 위치
+    private int forcedPosition;
+    private volatile long appendedSeq;
+    private volatile long durableSeq;
+
+    WriteAheadLog(Path directory, int segmentSize) {
+        if (segmentSize < RECORD_SIZE || segmentSize % RECORD_SIZE != 0) {
+            throw new IllegalArgumentException("segment size must be a multiple of " + RECORD_SIZE);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 남아 있는 segment 를 순서대로 읽어서 계좌별 마지막 잔액과 되돌려지지 않은 pending 변경을 돌려준다.
+     * 다 쓰지 못한 record(seq 0)에서 해당 segment 읽기를 멈춘다. open 전에 호출한다.
+     */
+    Replay replay() throws IOException {
+        Map<Long, Long> balances = new HashMap<>();
+        Map<Long, Change> changes = new HashMap<>();
+        Map<Long, Long> seqs = new HashMap<>();
+        for (Path path : segments()) {
+            try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+                while (readRecord(readChannel, record)) {
+                    long seq = record.getLong();
+                    if (seq == 0L) {
+                        break;
+                    }
+                    long accountId = record.getLong();
+                    long balance = record.getLong();
+                    long delta = record.getLong();
+                    long transactionId = record.getLong();
+                    boolean pendingRecord = record.getLong() != 0L;
+                    if (seq > seqs.getOrDefault(accountId, 0L)) {
+                        seqs.put(accountId, seq);
+                        balances.put(accountId, balance);
+                    }
+                    //롤백으로 되돌린 record 는 같은 거래 id 의 차액을 상쇄한다. (원래 record 가 지워졌으면 무시)
+                    if (pendingRecord || changes.containsKey(transactionId)) {
+                        Change change = changes.getOrDefault(transactionId, new Change(accountId, 0L));
+                        changes.put(transactionId, new Change(accountId, change.delta() + delta));
+                    }
+                    nextSeq = Math.max(nextSeq, seq + 1);
+                }
+            }
+            segmentIndex = Math.max(segmentIndex, indexOf(path));
+        }
+        appendedSeq = nextSeq - 1;
+        durableSeq = appendedSeq;
+        changes.values().removeIf(change -> change.delta() == 0L);
+        return new Replay(balances, changes);
+    }
+
+    private static boolean readRecord(FileChannel readChannel, ByteBuffer record) throws IOException {
+        record.clear();
+        while (record.hasRemaining()) {
+            if (readChannel.read(record) < 0) {
+                return false;
+            }
+        }
+        record.flip();
+        return true;
+    }
+
+    //새 segment 를 열어서 이어 쓴다.
+    void open() throws IOException {
+        Files.createDirectories(directory);
+        appendLock.lock();
+        try {
+            openSegment();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * record 를 붙여 쓰고 seq 를 돌려준다. force 전이라 아직 durable 하지 않다.
+     * 같은 계좌의 record 는 호출하는 쪽이 잔액을 바꾼 순서대로 붙여 써야 한다.
+     * pending 이면 settle 할 때까지 record 가 있는 segment 를 지우지 않는다.
+     */
+    long append(long accountId, long balance, long delta, long transactionId, boolean pendingRecord) {
+        appendLock.lock();
+        try {
+            if (!buffer.hasRemaining()) {
+                rollSegment();
+            }
+            long seq = nextSeq++;
+            int position = buffer.position();
+            //seq 를 마지막에 써서 중간에 멈춘 record 는 빈 자리로 읽힌다.
+            buffer.putLong(position + 8, accountId);
+            buffer.putLong(position + 16, balance);
+            buffer.putLong(position + 24, delta);
+            buffer.putLong(position + 32, transactionId);
+            buffer.putLong(position + 40, pendingRecord ? 1L : 0L);
+            buffer.putLong(position, seq);
+            buffer.position(position + RECORD_SIZE);
+            appendedSeq = seq;
+            if (pendingRecord) {
+                pending.add(seq);
+            }
+            return seq;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    //pending record 의 트랜잭션이 끝났다. (커밋 또는 되돌리는 record 를 붙여 쓴 뒤)
+    void settle(long seq) {
+        pending.remove(seq);
+    }
+
+    //붙여 쓴 record 를 디스크에 내린다. (group fsync, flusher 가 주기적으로 호출)
+    void force() {
+        forceLock.lock();
+        try {
+            long seq;
+            MappedByteBuffer target;
+            int from;
+            int to;
+            //appendLock 안에서는 구간만 잡는다.
+            appendLock.lock();
+            try {
+                seq = appendedSeq;
+                if (seq == durableSeq) {
+                    return;
+                }
+                target = buffer;
+                from = forcedPosition;
+                to = buffer.position();
+            } finally {
+                appendLock.unlock();
+            }
+            //그 사이 segment 가 넘어갔으면 rollSegment 가 이전 buffer 전체를 이미 force 했다.
+            target.force(from, to - from);
+            appendLock.lock();
+            try {
+                if (buffer == target) {
+                    forcedPosition = to;
+                }
+            } finally {
+                appendLock.unlock();
+            }
+            markDurable(seq);
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    private void markDurable(long seq) {
+        durableLock.lock();
+        try {
+            if (seq > durableSeq) {
+                durableSeq = seq;
+            }
+            durableChanged.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /**
+     * seq 까지 디스크에 내려갈 때까지 기다린다.
+     * @return timeout 안에 내려가면 true
+     */
+    boolean awaitDurable(long seq, long timeoutMillis) throws InterruptedException {
+        if (durableSeq >= seq) {
+            return true;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        durableLock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (remaining <= 0L) {
+                    return false;
+                }
+                remaining = durableChanged.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /**
+     * 새 segment 로 넘어가고 그 전 segment 중 pending record 가 남지 않은 것들을 돌려준다.
+     * checkpoint 가 끝나면 돌려받은 segment 를 지운다. 끝나지 않은 트랜잭션의 record 는 복구 때 대사해야 하므로 남긴다.
+     */
+    List<Path> rotate() throws IOException {
+        appendLock.lock();
+        try {
+            rollSegment();
+        } finally {
+            appendLock.unlock();
+        }
+        Long oldestPending = pending.ceiling(0L);
+        List<Path> settled = new ArrayList<>();
+        for (Path path : previousSegments()) {
+            //replay 한 segment 는 마지막 seq 를 모르지만 pending 이 없다.
+            if (oldestPending == null || lastSeqs.getOrDefault(path, 0L) < oldestPending) {
+                settled.add(path);
+            }
+        }
+        return settled;
+    }
+
+    //지금 쓰는 segment 보다 앞의 segment 들
+    List<Path> previousSegments() throws IOException {
+        List<Path> previous = new ArrayList<>();
+        for (Path path : segments()) {
+            if (indexOf(path) < segmentIndex) {
+                previous.add(path);
+            }
+        }
+        return previous;
+    }
+
+    void delete(List<Path> paths) throws IOException {
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+            lastSeqs.remove(path);
+        }
+    }
+
+    //appendLock 을 잡고 호출한다.
+    private void rollSegment() {
+        try {
+            long seq = appendedSeq;
+            buffer.force();
+            channel.close();
+            markDurable(seq);
+            lastSeqs.put(segment, seq);
+            openSegment();
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to roll wal segment " + segment, e);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        segmentIndex++;
+        segment = directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        //새 파일은 0 으로 채워지므로 빈 자리는 seq 0 으로 읽힌다.
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        forcedPosition = 0;
+        log.info("wal segment opened. {}", segment);
+    }
+
+    private List<Path> segments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            //segment 번호는 0 으로 채운 고정 길이라 이름 순서가 쓴 순서다.
+            return paths.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long indexOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    //replay 결과. pending 은 거래 id 별로 되돌려지지 않은 pending 변경의 차액 합
+    record Replay(Map<Long, Long> balances, Map<Long, Change> pending) {
+    }
+
+    record Change(long accountId, long delta) {
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (channel != null) {
+                long seq = appendedSeq;
+                buffer.force();
+                channel.close();
+                markDurable(seq);
+                channel = null;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+}
@@ -19,7 +19,12 @@ public enum ErrorCode {
     ACCOUNT_ALREADY_UNREGISTERED("계좌가 이미 해지되었습니다."),
     TOO_OLD_ORDER_TO_CANCEL("1년이 지난 거래는 취소가 불가능 합니다."),
     ACCOUNT_TRANSACTION_LOCK("해당 계좌는 사용중입니다."),
-    BALANCE_NOT_EMPTY("계좌의 잔액이 0원이 아닙니다.");
+    BALANCE_NOT_EMPTY("계좌의 잔액이 0원이 아닙니다."),
+    ACCOUNT_NUMBER_EXHAUSTED("발급 가능한 계좌번호가 없습니다."),
+    LOCK_FENCING_TOKEN_EXPIRED("락 점유 시간이 지난 요청입니다."),
+    ACCOUNT_LOCK_QUEUE_FULL("해당 계좌의 거래 대기열이 가득 찼습니다."),
+    IDEMPOTENCY_KEY_IN_PROGRESS("같은 Idempotency-Key 의 요청을 처리하고 있습니다."),
+    IDEMPOTENCY_KEY_REUSED("Idempotency-Key 가 다른 요청에 사용되었습니다.");
 
 
     private final String description;
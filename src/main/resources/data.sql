@@ -1,9 +1,14 @@
-insert into account_user(id,name,created_at,updated_at)
+create sequence if not exists account_number_seq start with 1000000000 increment by 100;
+
+insert into account_number_hi_lo(name, next_hi)
+values ('account_number', 0);
+
+insert into account_user(id,name,crated_at,update_at)
 values (1,'Pororo',now(),now());
 
-insert into account_user(id, name, created_at, updated_at)
+insert into account_user(id, name, crated_at, update_at)
 values (2,'Lupi',now(),now());
 
-insert into account_user(id, name, created_at, updated_at)
+insert into account_user(id, name, crated_at, update_at)
 values (3,'Eddie',now(),now());
 
@@ -3,9 +3,11 @@ package com.example.account.controller;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountStatus;
 import com.example.account.dto.AccountDto;
+import com.example.account.dto.AccountInfo;
 import com.example.account.dto.CreateAccount;
 import com.example.account.dto.DeleteAccount;
 import com.example.account.exception.AccountException;
+import com.example.account.service.AccountMetrics;
 import com.example.account.service.AccountService;
 import com.example.account.service.LockService;
 import com.example.account.type.ErrorCode;
@@ -30,6 +32,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 @WebMvcTest(AccountController.class)
 class AccountControllerTest {
+    @MockBean
+    private AccountMetrics accountMetrics;
     @MockBean
     private AccountService accountService;
 
@@ -109,19 +113,13 @@ class AccountControllerTest {
     @Test
     void successGetAccountByUserId() throws Exception{
         //given
-        List<AccountDto> accountDtos=
+        List<AccountInfo> accountInfos=
                 Arrays.asList(
-                    AccountDto.builder()
-                        .accountNumber("1234567890")
-                        .balance(1000L).build(),
-                    AccountDto.builder()
-                         .accountNumber("1111111111")
-                         .balance(2000L).build(),
-                    AccountDto.builder()
-                         .accountNumber("22222222222")
-                          .balance(3000L).build());
+                    new AccountInfo("1234567890", 1000L),
+                    new AccountInfo("1111111111", 2000L),
+                    new AccountInfo("22222222222", 3000L));
         given(accountService.getAccountsByUserId(anyLong()))
-                .willReturn(accountDtos);
+                .willReturn(accountInfos);
         //when
         mockMvc.perform(get("/account?userId=1"))
                 .andDo(print())
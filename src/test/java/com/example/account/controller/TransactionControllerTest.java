@@ -2,7 +2,16 @@ package com.example.account.controller;
 
 import com.example.account.dto.CancelBalance;
 import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistoryItem;
+import com.example.account.dto.TransactionHistoryResponse;
 import com.example.account.dto.UseBalance;
+import com.example.account.dto.UseBalanceBatch;
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import com.example.account.service.AccountMetrics;
+import com.example.account.service.FailedTransactionRecorder;
+import com.example.account.service.FaultInjector;
+import com.example.account.service.LockService;
 import com.example.account.service.TransactionService;
 import com.example.account.type.TransactionType;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -12,21 +21,41 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
+import static com.example.account.type.TransactionResultType.F;
 import static com.example.account.type.TransactionResultType.S;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 @WebMvcTest(TransactionController.class)
 class TransactionControllerTest {
+    @MockBean
+    private AccountMetrics accountMetrics;
     @MockBean
     private TransactionService transactionService;
+    @MockBean
+    private FaultInjector faultInjector;
+    @MockBean
+    private LockService lockService;
+    @MockBean
+    private FailedTransactionRecorder failedTransactionRecorder;
 
     @Autowired
     private MockMvc mockMvc;
@@ -61,6 +90,94 @@ class TransactionControllerTest {
                 .andExpect(jsonPath("$.amount").value(12345L));
 
     }
+    @Test
+    void failUseBalance_recordFailedTransaction() throws Exception {
+        //given
+        given(transactionService.useBalance(anyLong(), anyString(), anyLong()))
+                .willThrow(new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE));
+
+        //when
+        mockMvc.perform(post("/transaction/use")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new UseBalance.Request(1L, "2000000000", 3000L)
+                        )))
+                .andDo(print())
+                .andExpect(jsonPath("$.errorCode").value("AMOUNT_EXCEED_BALANCE"));
+
+        //then
+        verify(failedTransactionRecorder, times(1))
+                .record(TransactionType.USE, "2000000000", 3000L);
+        verify(transactionService, never()).saveFailedUseTransaction(anyString(), anyLong());
+        verify(accountMetrics, times(1)).error(ErrorCode.AMOUNT_EXCEED_BALANCE);
+    }
+
+    @Test
+    void successUseBalanceAsync() throws Exception {
+        //given
+        given(transactionService.useBalance(anyLong(), anyString(), anyLong()))
+                .willReturn(TransactionDto.builder()
+                        .accountNumber("1000000000")
+                        .transactedAt(LocalDateTime.now())
+                        .amount(12345L)
+                        .transactionId("transactionId")
+                        .transactionResultType(S)
+                        .build());
+
+        //when
+        MvcResult mvcResult = mockMvc.perform(post("/transaction/use/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new UseBalance.Request(1L, "2000000000", 3000L)
+                        )))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //then
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accountNumber").value("1000000000"))
+                .andExpect(jsonPath("$.transactionResultType").value("S"))
+                .andExpect(jsonPath("$.transactionId").value("transactionId"));
+    }
+    @Test
+    void successUseBalanceBatch() throws Exception {
+        //given
+        given(transactionService.useBalanceBatch(anyList()))
+                .willReturn(List.of(
+                        TransactionDto.builder()
+                                .accountNumber("1000000000")
+                                .transactedAt(LocalDateTime.now())
+                                .amount(1000L)
+                                .transactionId("transactionId")
+                                .transactionResultType(S)
+                                .build(),
+                        TransactionDto.builder()
+                                .accountNumber("2000000000")
+                                .transactedAt(LocalDateTime.now())
+                                .amount(3000L)
+                                .transactionResultType(F)
+                                .errorCode(ErrorCode.AMOUNT_EXCEED_BALANCE)
+                                .build()));
+
+        //when
+        //then
+        mockMvc.perform(post("/transaction/use/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new UseBalanceBatch.Request(List.of(
+                                        new UseBalance.Request(1L, "1000000000", 1000L),
+                                        new UseBalance.Request(1L, "2000000000", 3000L)))
+                        )))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].transactionResultType").value("S"))
+                .andExpect(jsonPath("$.results[0].transactionId").value("transactionId"))
+                .andExpect(jsonPath("$.results[1].transactionResultType").value("F"))
+                .andExpect(jsonPath("$.results[1].errorCode").value("AMOUNT_EXCEED_BALANCE"));
+    }
+
     @Test
     void successCancelBalance() throws Exception {
         //given
@@ -89,6 +206,21 @@ class TransactionControllerTest {
                 .andExpect(jsonPath("$.amount").value(12345L));
 
     }
+    @Test
+    void successGetLockQueue() throws Exception {
+        //given
+        given(lockService.queueDepth(anyString()))
+                .willReturn(3L);
+
+        //when
+        //then
+        mockMvc.perform(get("/transaction/lock/1000000000"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accountNumber").value("1000000000"))
+                .andExpect(jsonPath("$.queueDepth").value(3));
+    }
+
     @Test
     void successQueryTransaction() throws Exception{
         //given
@@ -113,6 +245,58 @@ class TransactionControllerTest {
                 .andExpect(jsonPath("$.amount").value(12345L));
     }
 
+    @Test
+    void successGetTransactionHistory() throws Exception {
+        //given
+        given(transactionService.getTransactionHistory(anyString(), any(), any(), any(), anyInt()))
+                .willReturn(new TransactionHistoryResponse(List.of(
+                        TransactionHistoryItem.builder()
+                                .id(2L)
+                                .transactionId("transactionId")
+                                .transactionType(TransactionType.USE)
+                                .transactionResultType(S)
+                                .amount(1000L)
+                                .balanceSnapshot(9000L)
+                                .transactedAt(LocalDateTime.now())
+                                .build()), "nextCursor"));
+        //when
+        //then
+        mockMvc.perform(get("/account/1000000000/transactions?transactionType=USE&size=1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions[0].transactionId").value("transactionId"))
+                .andExpect(jsonPath("$.transactions[0].amount").value(1000))
+                .andExpect(jsonPath("$.transactions[0].id").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").value("nextCursor"));
+        verify(transactionService, times(1)).getTransactionHistory(
+                "1000000000", TransactionType.USE, null, null, 1);
+    }
+
+    @Test
+    void successExportTransactionHistory() throws Exception {
+        //given
+        given(transactionService.getTransactionHistoryChunk(anyString(), any(), any(), isNull()))
+                .willReturn(new TransactionHistoryResponse(List.of(
+                        TransactionHistoryItem.builder().id(2L).transactionId("second").build()),
+                        "cursor"));
+        given(transactionService.getTransactionHistoryChunk(anyString(), any(), any(), eq("cursor")))
+                .willReturn(new TransactionHistoryResponse(List.of(
+                        TransactionHistoryItem.builder().id(1L).transactionId("first").build()),
+                        null));
+        //when
+        MvcResult mvcResult = mockMvc.perform(get("/account/1000000000/transactions/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //then
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].transactionId").value("second"))
+                .andExpect(jsonPath("$[1].transactionId").value("first"));
+    }
+
 }
 
 
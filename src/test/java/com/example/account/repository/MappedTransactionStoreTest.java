@@ -0,0 +1,283 @@
+package com.example.account.repository;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountStatus;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistoryItem;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class MappedTransactionStoreTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 1, 12, 0, 0, 123_456_789);
+
+    @Mock
+    private AccountRepository accountRepository;
+    @TempDir
+    private Path directory;
+
+    //segment 하나에 record 8 건, index block 4 건
+    private MappedTransactionStore store() throws IOException {
+        MappedTransactionStore store = new MappedTransactionStore(accountRepository,
+                directory.toString(), MappedTransactionStore.RECORD_SIZE * 8, 4);
+        store.open();
+        return store;
+    }
+
+    private static Account account(Long id) {
+        return Account.builder()
+                .id(id)
+                .accountNumber("10000000" + id)
+                .accountStatus(AccountStatus.IN_USE)
+                .build();
+    }
+
+    private static Transaction transaction(Long accountId, long transactionId, TransactionType transactionType) {
+        return Transaction.builder()
+                .account(account(accountId))
+                .transactionType(transactionType)
+                .transactionResultType(TransactionResultType.S)
+                .amount(100L)
+                .balanceSnapshot(1000L - transactionId)
+                .transactionId(String.format("%016x", transactionId))
+                .transactedAt(NOW.plusSeconds(transactionId))
+                .build();
+    }
+
+    //계좌 11, 12 에 번갈아 20 건 (segment 3 개에 걸침)
+    private List<Transaction> saveAlternately(MappedTransactionStore store) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            transactions.add(transaction(i % 2 == 1 ? 11L : 12L, i,
+                    i % 3 == 0 ? TransactionType.CANCEL : TransactionType.USE));
+        }
+        return store.saveAll(transactions);
+    }
+
+    @Test
+    @DisplayName("저장한 순서대로 id 를 매기고 거래 id 로 찾기")
+    void saveAndFindByTransactionId() throws IOException {
+        //given
+        MappedTransactionStore store = store();
+        given(accountRepository.getReferenceById(12L))
+                .willReturn(account(12L));
+
+        //when
+        List<Transaction> saved = saveAlternately(store);
+        Optional<Transaction> found = store.findByTransactionId(String.format("%016x", 14L));
+
+        //then
+        assertEquals(1L, saved.get(0).getId());
+        assertEquals(20L, saved.get(19).getId());
+        assertTrue(found.isPresent());
+        assertEquals(14L, found.get().getId());
+        assertEquals(12L, found.get().getAccount().getId());
+        assertEquals(986L, found.get().getBalanceSnapshot());
+        assertEquals(NOW.plusSeconds(14), found.get().getTransactedAt());
+        assertEquals(TransactionType.USE, found.get().getTransactionType());
+        assertFalse(store.findByTransactionId(String.format("%016x", 21L)).isPresent());
+        assertFalse(store.findByTransactionId("transactionId").isPresent());
+        store.close();
+    }
+
+    @Test
+    @DisplayName("거래 확인은 계좌번호를 함께 돌려준다")
+    void findTransactionDtoByTransactionId() throws IOException {
+        //given
+        MappedTransactionStore store = store();
+        saveAlternately(store);
+        given(accountRepository.findById(11L))
+                .willReturn(Optional.of(account(11L)));
+
+        //when
+        Optional<TransactionDto> found = store.findTransactionDtoByTransactionId(String.format("%016x", 3L));
+
+        //then
+        assertTrue(found.isPresent());
+        assertEquals("1000000011", found.get().getAccountNumber());
+        assertEquals(TransactionType.CANCEL, found.get().getTransactionType());
+        assertEquals(String.format("%016x", 3L), found.get().getTransactionId());
+        store.close();
+    }
+
+    @Test
+    @DisplayName("계좌별 거래 내역을 최신순으로, 커서 다음 페이지는 커서의 이전 record 부터")
+    void findHistory() throws IOException {
+        //given
+        MappedTransactionStore store = store();
+        saveAlternately(store);
+
+        //when
+        List<TransactionHistoryItem> first = store.findHistory(12L, null, null, Limit.of(3));
+        TransactionHistoryItem last = first.get(first.size() - 1);
+        List<TransactionHistoryItem> next = store.findHistoryAfter(12L, null, null,
+                last.getTransactedAt(), last.getId(), Limit.of(3));
+        List<TransactionHistoryItem> canceled = store.findHistory(12L, TransactionType.CANCEL, null, Limit.of(10));
+
+        //then
+        assertEquals(List.of(20L, 18L, 16L), first.stream().map(TransactionHistoryItem::getId).toList());
+        assertEquals(List.of(14L, 12L, 10L), next.stream().map(TransactionHistoryItem::getId).toList());
+        assertEquals(List.of(18L, 12L, 6L), canceled.stream().map(TransactionHistoryItem::getId).toList());
+        //다른 계좌의 커서는 무시
+        assertTrue(store.findHistoryAfter(11L, null, null, NOW, 14L, Limit.of(3)).isEmpty());
+        store.close();
+    }
+
+    @Test
+    @DisplayName("다시 열면 계좌별 마지막 record 와 index 를 다시 만들고 이어서 쓴다")
+    void reopen() throws IOException {
+        //given
+        MappedTransactionStore store = store();
+        saveAlternately(store);
+        store.close();
+
+        given(accountRepository.getReferenceById(11L))
+                .willReturn(account(11L));
+
+        //when
+        MappedTransactionStore reopened = store();
+        Transaction saved = reopened.save(transaction(11L, 21L, TransactionType.USE));
+
+        //then
+        assertEquals(21L, saved.getId());
+        assertEquals(List.of(21L, 19L), reopened.findHistory(11L, null, null, Limit.of(2)).stream()
+                .map(TransactionHistoryItem::getId).toList());
+        assertEquals(3L, reopened.findByTransactionId(String.format("%016x", 3L)).get().getId());
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("segment 중간에 빈 자리가 있으면 그 앞까지 복구하고 뒤에 남은 record 는 지운다")
+    void reopenWithHole() throws IOException {
+        //given
+        MappedTransactionStore store = store();
+        for (long i = 1; i <= 6; i++) {
+            store.save(transaction(11L, i, TransactionType.USE));
+        }
+        store.close();
+        //3번째 record 가 디스크에 내려가기 전에 종료된 경우 (id 자리가 0)
+        try (FileChannel channel = FileChannel.open(directory.resolve("transaction-0000000000.seg"),
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8), 2L * MappedTransactionStore.RECORD_SIZE);
+        }
+
+        //when
+        MappedTransactionStore reopened = store();
+        Transaction saved = reopened.save(transaction(11L, 7L, TransactionType.USE));
+        reopened.close();
+        MappedTransactionStore reopenedAgain = store();
+
+        //then
+        assertEquals(3L, saved.getId());
+        assertEquals(List.of(3L, 2L, 1L), reopenedAgain.findHistory(11L, null, null, Limit.of(10)).stream()
+                .map(TransactionHistoryItem::getId).toList());
+        assertEquals(Set.of(String.format("%016x", 1L), String.format("%016x", 7L)),
+                reopenedAgain.findExistingTransactionIds(List.of(String.format("%016x", 1L),
+                        String.format("%016x", 4L), String.format("%016x", 6L), String.format("%016x", 7L))));
+        reopenedAgain.close();
+    }
+
+    @Test
+    @DisplayName("DB 트랜잭션 안에서 저장한 거래 내역은 커밋된 뒤에 보인다")
+    void visibleAfterCommit() throws IOException {
+        //given
+        MappedTransactionStore store = store();
+        String transactionId = String.format("%016x", 1L);
+
+        //when
+        TransactionSynchronizationManager.initSynchronization();
+        List<String> beforeCommit;
+        List<TransactionHistoryItem> historyBeforeCommit;
+        try {
+            store.save(transaction(11L, 1L, TransactionType.USE));
+            beforeCommit = List.copyOf(store.findExistingTransactionIds(List.of(transactionId)));
+            historyBeforeCommit = store.findHistory(11L, null, null, Limit.of(10));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(TransactionSynchronization::afterCommit);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(
+                            TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //then
+        assertTrue(beforeCommit.isEmpty());
+        assertTrue(historyBeforeCommit.isEmpty());
+        assertEquals(Set.of(transactionId), store.findExistingTransactionIds(List.of(transactionId)));
+        assertEquals(1, store.findHistory(11L, null, null, Limit.of(10)).size());
+        store.close();
+    }
+
+    @Test
+    @DisplayName("커밋 전에 종료된 거래 내역은 다시 열면 없는 것으로 본다")
+    void reopenWithUncommitted() throws IOException {
+        //given
+        MappedTransactionStore store = store();
+        store.save(transaction(11L, 1L, TransactionType.USE));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.save(transaction(11L, 2L, TransactionType.CANCEL));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        store.close();
+
+        //when
+        MappedTransactionStore reopened = store();
+        reopened.save(transaction(11L, 3L, TransactionType.USE));
+
+        //then
+        assertEquals(List.of(3L, 1L), reopened.findHistory(11L, null, null, Limit.of(10)).stream()
+                .map(TransactionHistoryItem::getId).toList());
+        assertTrue(reopened.findExistingTransactionIds(List.of(String.format("%016x", 2L))).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("DB 트랜잭션이 롤백되면 저장한 거래 내역을 지운 것으로 표시")
+    void rollback() throws IOException {
+        //given
+        MappedTransactionStore store = store();
+
+        //when
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.save(transaction(11L, 1L, TransactionType.USE));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(
+                            TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //then
+        assertFalse(store.findByTransactionId(String.format("%016x", 1L)).isPresent());
+        assertTrue(store.findHistory(11L, null, null, Limit.of(10)).isEmpty());
+        store.close();
+    }
+}
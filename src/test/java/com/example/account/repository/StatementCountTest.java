@@ -0,0 +1,216 @@
+package com.example.account.repository;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountStatus;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.AccountInfo;
+import com.example.account.dto.AccountSnapshot;
+import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistoryItem;
+import com.example.account.dto.TransactionHistoryResponse;
+import com.example.account.service.AccountNumberAllocator;
+import com.example.account.service.AccountService;
+import com.example.account.service.AccountSnapshotCache;
+import com.example.account.service.SubBalanceService;
+import com.example.account.service.TransactionIdGenerator;
+import com.example.account.service.TransactionLedgerWriter;
+import com.example.account.service.TransactionService;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+
+/*
+    endpoint 별로 실행되는 SQL 수 확인 (지연 로딩 + fetch join)
+    controller 가 호출하는 서비스 메서드를 그대로 실행한다. 변경은 flush 해서 insert/update 까지 센다.
+    캐시(redis)와 계좌번호 발급은 SQL 수와 관계없으므로 mock 으로 둔다.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.sql.init.mode=never"
+})
+@Import({AccountService.class, TransactionService.class, SubBalanceService.class,
+        JpaTransactionStore.class, TransactionIdGenerator.class})
+class StatementCountTest {
+    @Autowired
+    private TestEntityManager testEntityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransactionService transactionService;
+    @MockBean
+    private AccountSnapshotCache accountSnapshotCache;
+    @MockBean
+    private AccountNumberAllocator accountNumberAllocator;
+    @MockBean
+    private TransactionLedgerWriter transactionLedgerWriter;
+
+    private Statistics statistics;
+    private Long userId;
+    private final Map<String, Account> accounts = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        AccountUser accountUser = testEntityManager.persist(AccountUser.builder()
+                .name("pobi")
+                .build());
+        userId = accountUser.getId();
+        for (int i = 0; i < 3; i++) {
+            Account account = testEntityManager.persist(Account.builder()
+                    .accountUser(accountUser)
+                    .accountStatus(AccountStatus.IN_USE)
+                    .accountNumber("100000000" + i)
+                    .balance(10000L)
+                    .registeredAt(LocalDateTime.now())
+                    .build());
+            accounts.put(account.getAccountNumber(), account);
+            testEntityManager.persist(Transaction.builder()
+                    .account(account)
+                    .transactionType(TransactionType.USE)
+                    .transactionResultType(TransactionResultType.S)
+                    .transactionId("000000000000000" + i)
+                    .amount(1000L)
+                    .balanceSnapshot(9000L)
+                    .transactedAt(LocalDateTime.now())
+                    .build());
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    private void givenCachedSnapshot(String accountNumber) {
+        given(accountSnapshotCache.find(accountNumber))
+                .willReturn(Optional.of(AccountSnapshot.fromEntity(accounts.get(accountNumber))));
+    }
+
+    private long accountUserLoadCount() {
+        return statistics.getEntityStatistics(AccountUser.class.getName()).getLoadCount();
+    }
+
+    @Test
+    @DisplayName("거래 확인 - projection 으로 거래와 계좌번호를 한 번에 조회, 엔티티 없음")
+    void queryTransaction() {
+        //when
+        TransactionDto transactionDto = transactionService.queryTransaction("0000000000000001");
+
+        //then
+        assertEquals("1000000001", transactionDto.getAccountNumber());
+        assertEquals(1000L, transactionDto.getAmount());
+        assertEquals(1L, statistics.getPrepareStatementCount());
+        assertEquals(0L, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    @DisplayName("계좌 확인 - 사용자 존재 확인 1번, 계좌 목록 projection 1번 (N+1 없음)")
+    void getAccountsByUserId() {
+        //when
+        List<AccountInfo> accountInfos = accountService.getAccountsByUserId(userId);
+
+        //then
+        assertEquals(3, accountInfos.size());
+        assertEquals(2L, statistics.getPrepareStatementCount());
+        assertEquals(0L, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    @DisplayName("잔액 사용 - 캐시로 소유자를 검증하고 계좌 조회, 거래 insert, 계좌 update 만 실행")
+    void useBalance() {
+        //given
+        givenCachedSnapshot("1000000002");
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(userId, "1000000002", 1000L);
+        testEntityManager.flush();
+
+        //then
+        assertEquals(9000L, transactionDto.getBalanceSnapshot());
+        assertEquals(3L, statistics.getPrepareStatementCount());
+        assertEquals(0L, accountUserLoadCount());
+    }
+
+    @Test
+    @DisplayName("잔액 사용 취소 - 거래와 계좌를 fetch join 으로 한 번에 읽고, 소유자는 조회하지 않음")
+    void cancelBalance() {
+        //given
+        givenCachedSnapshot("1000000001");
+
+        //when
+        TransactionDto transactionDto = transactionService.cancelBalance(
+                "0000000000000001", "1000000001", 1000L);
+        testEntityManager.flush();
+
+        //then
+        assertEquals(11000L, transactionDto.getBalanceSnapshot());
+        //select(거래 + 계좌) 1, insert 1, update 1
+        assertEquals(3L, statistics.getPrepareStatementCount());
+        assertEquals(0L, accountUserLoadCount());
+    }
+
+    @Test
+    @DisplayName("거래 내역 - 커서 페이지마다 1번, 같은 시각의 거래도 빠짐없이 최신순")
+    void transactionHistoryKeyset() {
+        //given
+        givenCachedSnapshot("1000000001");
+        Account account = testEntityManager.find(Account.class, accounts.get("1000000001").getId());
+        LocalDateTime transactedAt = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < 4; i++) {
+            testEntityManager.persist(Transaction.builder()
+                    .account(account)
+                    .transactionType(TransactionType.USE)
+                    .transactionResultType(TransactionResultType.S)
+                    .transactionId("100000000000000" + i)
+                    .amount(100L)
+                    .balanceSnapshot(9000L)
+                    .transactedAt(transactedAt) //커서 경계에 같은 시각이 걸리도록
+                    .build());
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+        statistics.clear();
+
+        //when
+        List<TransactionHistoryItem> items = new ArrayList<>();
+        TransactionHistoryResponse page = transactionService.getTransactionHistory(
+                "1000000001", null, null, null, 2);
+        items.addAll(page.getTransactions());
+        while (page.getNextCursor() != null) {
+            page = transactionService.getTransactionHistory(
+                    "1000000001", null, null, page.getNextCursor(), 2);
+            items.addAll(page.getTransactions());
+        }
+
+        //then
+        assertEquals(5, items.size());
+        assertEquals("0000000000000001", items.get(0).getTransactionId());
+        //같은 시각의 거래는 id 역순
+        for (int i = 2; i < items.size(); i++) {
+            assertTrue(items.get(i).getId() < items.get(i - 1).getId());
+        }
+        assertEquals(3L, statistics.getPrepareStatementCount());
+    }
+}
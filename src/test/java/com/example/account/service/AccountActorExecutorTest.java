@@ -0,0 +1,98 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountActorExecutorTest {
+    private final AccountActorExecutor accountActorExecutor = new AccountActorExecutor(4, 10);
+
+    @AfterEach
+    void tearDown() {
+        accountActorExecutor.shutdown();
+    }
+
+    @Test
+    @DisplayName("같은 계좌의 작업은 한 worker 에서 순서대로 실행")
+    void executeSerially() {
+        //given
+        long[] balance = {0L};
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 8; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    assertDoesNotThrow(() -> accountActorExecutor.execute("1234567890", 1000L,
+                            () -> balance[0]++));
+                }
+            }));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        //then
+        assertEquals(8000L, balance[0]);
+    }
+
+    @Test
+    @DisplayName("대기 시간 안에 시작하지 못하면 실행하지 않고 실패")
+    void failExecute() throws Exception {
+        //given
+        CountDownLatch release = new CountDownLatch(1);
+        accountActorExecutor.submit("1234567890", () -> release.await(1, TimeUnit.SECONDS));
+        boolean[] executed = {false};
+
+        //when
+        AccountException exception = assertThrows(AccountException.class, () ->
+                accountActorExecutor.execute("1234567890", 50L, () -> executed[0] = true));
+        release.countDown();
+        accountActorExecutor.execute("1234567890", 1000L, () -> null);
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCodes());
+        assertFalse(executed[0]);
+    }
+
+    @Test
+    @DisplayName("작업에서 발생한 예외는 호출자에게 그대로 전달")
+    void propagateException() {
+        //given
+        //when
+        AccountException exception = assertThrows(AccountException.class, () ->
+                accountActorExecutor.execute("1234567890", 1000L, () -> {
+                    throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+                }));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCodes());
+    }
+
+    @Test
+    @DisplayName("여러 계좌 작업 중에는 해당 worker 가 멈춤")
+    void executeExclusively() throws Exception {
+        //given
+        List<String> order = new ArrayList<>();
+
+        //when
+        accountActorExecutor.executeExclusively(List.of("1000000000", "2000000000"), 1000L, () -> {
+            accountActorExecutor.submit("1000000000", () -> order.add("single"));
+            Thread.sleep(50L);
+            order.add("batch");
+            return null;
+        });
+        accountActorExecutor.execute("1000000000", 1000L, () -> null);
+
+        //then
+        assertEquals(List.of("batch", "single"), order);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.account.service;
+
+import com.example.account.type.ErrorCode;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountMetricsTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AccountMetrics accountMetrics = new AccountMetrics(meterRegistry, 16);
+
+    @Test
+    @DisplayName("락 대기/점유 시간은 계좌번호 bucket 별로 기록")
+    void lockTimersByBucket() {
+        //given
+        String bucket = String.valueOf(accountMetrics.bucket("1000000000"));
+
+        //when
+        accountMetrics.lockAcquired("1000000000", TimeUnit.MILLISECONDS.toNanos(3));
+        accountMetrics.lockHeld("1000000000", TimeUnit.MILLISECONDS.toNanos(5));
+        accountMetrics.lockFailed("1000000000", ErrorCode.ACCOUNT_TRANSACTION_LOCK,
+                TimeUnit.MILLISECONDS.toNanos(1000));
+
+        //then
+        Timer acquired = meterRegistry.get("account.lock.wait")
+                .tags("bucket", bucket, "result", "ACQUIRED").timer();
+        assertEquals(1, acquired.count());
+        assertEquals(3.0, acquired.totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(1, meterRegistry.get("account.lock.wait")
+                .tags("bucket", bucket, "result", "ACCOUNT_TRANSACTION_LOCK").timer().count());
+        assertEquals(1.0, meterRegistry.get("account.lock.failures")
+                .tags("bucket", bucket, "errorCode", "ACCOUNT_TRANSACTION_LOCK").counter().count());
+        assertEquals(5.0, meterRegistry.get("account.lock.hold")
+                .tag("bucket", bucket).timer().totalTime(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("validation = 전체 - db - commit")
+    void transactionPhases() {
+        //given
+        assertTrue(accountMetrics.startPhases());
+        assertFalse(accountMetrics.startPhases()); //중첩 호출은 바깥에서만 잰다.
+
+        //when
+        accountMetrics.addDbTime(TimeUnit.MILLISECONDS.toNanos(4));
+        accountMetrics.addDbTime(TimeUnit.MILLISECONDS.toNanos(2));
+        accountMetrics.beforeCommit(null);
+        accountMetrics.afterCommit(null, null);
+        accountMetrics.endPhases("useBalance", TimeUnit.MILLISECONDS.toNanos(10));
+
+        //then
+        double db = phase("db").totalTime(TimeUnit.MILLISECONDS);
+        double commit = phase("commit").totalTime(TimeUnit.MILLISECONDS);
+        double validation = phase("validation").totalTime(TimeUnit.MILLISECONDS);
+        assertEquals(6.0, db);
+        assertEquals(1, phase("commit").count());
+        assertEquals(10.0, db + commit + validation, 0.001);
+        //측정이 끝나면 더 이상 누적하지 않는다.
+        accountMetrics.addDbTime(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(6.0, phase("db").totalTime(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("ErrorCode 별 응답 횟수")
+    void errors() {
+        //when
+        accountMetrics.error(ErrorCode.AMOUNT_EXCEED_BALANCE);
+        accountMetrics.error(ErrorCode.AMOUNT_EXCEED_BALANCE);
+        accountMetrics.error(ErrorCode.ACCOUNT_NOT_FOUND);
+
+        //then
+        assertEquals(2.0, meterRegistry.get("account.errors")
+                .tag("errorCode", "AMOUNT_EXCEED_BALANCE").counter().count());
+        assertEquals(1.0, meterRegistry.get("account.errors")
+                .tag("errorCode", "ACCOUNT_NOT_FOUND").counter().count());
+    }
+
+    private Timer phase(String phase) {
+        return meterRegistry.get("account.transaction.phase")
+                .tags("operation", "useBalance", "phase", phase).timer();
+    }
+}
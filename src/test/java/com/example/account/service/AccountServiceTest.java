@@ -4,7 +4,9 @@ import com.example.account.domain.Account;
 import com.example.account.domain.AccountStatus;
 import com.example.account.domain.AccountUser;
 import com.example.account.dto.AccountDto;
+import com.example.account.dto.AccountInfo;
 import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountBalanceSlotRepository;
 import com.example.account.repository.AccountRepository;
 import com.example.account.repository.AccountUserRepository;
 import com.example.account.type.ErrorCode;
@@ -27,6 +29,7 @@ import java.util.Optional;
 
 import static org.assertj.core.api.BDDAssumptions.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
@@ -39,6 +42,12 @@ class AccountServiceTest {
     private AccountRepository accountRepository;
     @Mock
     private AccountUserRepository accountUserRepository;
+    @Mock
+    private AccountNumberAllocator accountNumberAllocator;
+    @Mock
+    private AccountSnapshotCache accountSnapshotCache;
+    @Mock
+    private AccountBalanceSlotRepository accountBalanceSlotRepository;
 
     @InjectMocks
     private AccountService accountService;
@@ -55,11 +64,8 @@ class AccountServiceTest {
         given(accountUserRepository.findById(anyLong()))
                 .willReturn(Optional.of(accountUser));
 
-        given(accountRepository.findFirstByOrderByIdDesc())
-                .willReturn(Optional.of(Account.builder()
-                                .accountUser(accountUser)
-                                .accountNumber("1000000012")
-                        .build()));
+        given(accountNumberAllocator.nextAccountNumber())
+                .willReturn("1000000013");
 
         given(accountRepository.save(any()))
                 .willReturn(Account.builder()
@@ -93,8 +99,8 @@ class AccountServiceTest {
         given(accountUserRepository.findById(anyLong()))
                 .willReturn(Optional.of(accountUser));
 
-        given(accountRepository.findFirstByOrderByIdDesc())
-                .willReturn(Optional.empty());
+        given(accountNumberAllocator.nextAccountNumber())
+                .willReturn("1000000000");
 
         given(accountRepository.save(any()))
                 .willReturn(Account.builder()
@@ -183,6 +189,7 @@ class AccountServiceTest {
         assertEquals(12L,accountDto.getUserId());
         assertEquals("10000000012",captor.getValue().getAccountNumber());
         assertEquals(AccountStatus.UNREGISTERED,captor.getValue().getAccountStatus());
+        verify(accountSnapshotCache,times(1)).evict("1234567890");
     }
 
     @Test
@@ -277,6 +284,36 @@ class AccountServiceTest {
         assertEquals(ErrorCode.BALANCE_NOT_EMPTY,exception.getErrorCodes());
     }
     @Test
+    @DisplayName("slot 으로 나뉜 잔액이 남은 계좌는 해지할 수 없다.")
+    void deleteAccountFailed_SubBalanceNotEmpty() {
+        //given
+        AccountUser accountUser= AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(1L);
+
+        given(accountUserRepository.findById(anyLong()))
+                .willReturn(Optional.of(accountUser));
+
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(Account.builder()
+                        .id(7L)
+                        .accountUser(accountUser)
+                        .accountStatus(AccountStatus.IN_USE)
+                        .balance(0L)
+                        .balanceSlots(4)
+                        .accountNumber("1000000012")
+                        .build()));
+        given(accountBalanceSlotRepository.sumBalanceByAccountId(7L))
+                .willReturn(100L);
+        //when
+        AccountException exception= assertThrows(AccountException.class,()->
+                accountService.deleteAccount(1L,"1000000012"));
+        //then
+        assertEquals(ErrorCode.BALANCE_NOT_EMPTY,exception.getErrorCodes());
+        verify(accountSnapshotCache,times(0)).evict(anyString());
+    }
+    @Test
     @DisplayName("해지 계좌는 해지할 수 없다.")
     void deleteAccountFailed_alreadyUnregistered() {
         //given
@@ -307,58 +344,40 @@ class AccountServiceTest {
     @Test
     void successGetAccountsByUserId() {
         //given
-        AccountUser accountUser=AccountUser.builder()
-                .name("pobi")
-
-                .build();
-        accountUser.setId(1L);
-
-        List<Account> accounts= Arrays.asList(
-                Account.builder()
-                        .accountUser(accountUser)
-                        .accountNumber("1111111111")
-                        .balance(1000L)
-                        .build(),
-                Account.builder()
-                       .accountUser(accountUser)
-                        .accountNumber("2222222222")
-                        .balance(2000L)
-                        .build(),
-                Account.builder()
-                        .accountUser(accountUser)
-                        .accountNumber("3333333333")
-                        .balance(3000L)
-                        .build()
+        List<AccountInfo> accounts= Arrays.asList(
+                new AccountInfo("1111111111", 1000L),
+                new AccountInfo("2222222222", 2000L),
+                new AccountInfo("3333333333", 3000L)
         );
 
+        given(accountUserRepository.existsById(anyLong()))
+                .willReturn(true);
 
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(accountUser));
-
-        given(accountRepository.findByAccountUser(any()))
+        given(accountRepository.findAccountInfosByUserId(anyLong()))
                 .willReturn(accounts);
 
 
         //when
-        List<AccountDto> accountDtos=accountService.getAccountsByUserId(1L);
+        List<AccountInfo> accountInfos=accountService.getAccountsByUserId(1L);
 
 
         //then
-        assertEquals(3,accountDtos.size());
-        assertEquals(accountDtos.get(0).getAccountNumber(),"1111111111");
-        assertEquals(accountDtos.get(0).getBalance(),1000);
-        assertEquals(accountDtos.get(1).getAccountNumber(),"2222222222");
-        assertEquals(accountDtos.get(1).getBalance(),2000);
-        assertEquals(accountDtos.get(2).getAccountNumber(),"3333333333");
-        assertEquals(accountDtos.get(2).getBalance(),3000);
+        assertEquals(3,accountInfos.size());
+        assertEquals(accountInfos.get(0).getAccountNumber(),"1111111111");
+        assertEquals(accountInfos.get(0).getBalance(),1000);
+        assertEquals(accountInfos.get(1).getAccountNumber(),"2222222222");
+        assertEquals(accountInfos.get(1).getBalance(),2000);
+        assertEquals(accountInfos.get(2).getAccountNumber(),"3333333333");
+        assertEquals(accountInfos.get(2).getBalance(),3000);
+        verify(accountRepository,times(0)).findByAccountUser(any());
 
 
     }
     @Test
     void failedToGetAccounts() {
         //given
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.empty());
+        given(accountUserRepository.existsById(anyLong()))
+                .willReturn(false);
 
         //when
         AccountException exception=assertThrows(AccountException.class,()->
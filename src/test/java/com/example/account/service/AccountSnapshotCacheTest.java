@@ -0,0 +1,114 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountStatus;
+import com.example.account.domain.AccountUser;
+import com.example.account.dto.AccountSnapshot;
+import com.example.account.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AccountSnapshotCacheTest {
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private RedissonClient redissonClient;
+    @Mock
+    private RMapCache<String, String> remoteCache;
+    @Mock
+    private RTopic evictTopic;
+
+    private AccountSnapshotCache accountSnapshotCache;
+
+    @BeforeEach
+    void setUp() {
+        given(redissonClient.<String, String>getMapCache(anyString(), any(Codec.class)))
+                .willReturn(remoteCache);
+        given(redissonClient.getTopic(anyString(), any(Codec.class)))
+                .willReturn(evictTopic);
+        accountSnapshotCache = new AccountSnapshotCache(accountRepository, redissonClient,
+                100L, 60000L, 600000L);
+        accountSnapshotCache.init();
+    }
+
+    @Test
+    @DisplayName("캐시에 없으면 DB 에서 읽어 redis 와 local 에 채움")
+    void findFromDatabase() {
+        //given
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(1L);
+        Account account = Account.builder()
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .accountNumber("1000000012")
+                .build();
+        account.setId(7L);
+        given(accountRepository.findByAccountNumber("1000000012"))
+                .willReturn(Optional.of(account));
+
+        //when
+        AccountSnapshot first = accountSnapshotCache.find("1000000012").get();
+        AccountSnapshot second = accountSnapshotCache.find("1000000012").get();
+
+        //then
+        assertEquals(7L, first.getId());
+        assertEquals(1L, first.getAccountUserId());
+        assertSame(first, second);
+        verify(accountRepository, times(1)).findByAccountNumber("1000000012");
+        verify(remoteCache, times(1)).fastPut(eq("1000000012"), eq("7:1:IN_USE:0"),
+                eq(600000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("redis 에 있으면 DB 조회 없음")
+    void findFromRemote() {
+        //given
+        given(remoteCache.get("1000000012"))
+                .willReturn("7:1:UNREGISTERED");
+
+        //when
+        AccountSnapshot snapshot = accountSnapshotCache.find("1000000012").get();
+
+        //then
+        assertEquals(AccountStatus.UNREGISTERED, snapshot.getAccountStatus());
+        verify(accountRepository, times(0)).findByAccountNumber(anyString());
+    }
+
+    @Test
+    @DisplayName("evict 시 redis 에서 지우고 다른 노드에 알림")
+    void evict() {
+        //given
+        given(remoteCache.get("1000000012"))
+                .willReturn("7:1:IN_USE");
+        accountSnapshotCache.find("1000000012");
+
+        //when
+        accountSnapshotCache.evict("1000000012");
+        accountSnapshotCache.find("1000000012");
+
+        //then
+        verify(remoteCache, times(1)).fastRemove("1000000012");
+        verify(evictTopic, times(1)).publish("1000000012");
+        verify(remoteCache, times(2)).get("1000000012");
+    }
+}
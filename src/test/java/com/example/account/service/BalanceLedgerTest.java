@@ -0,0 +1,239 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountStatus;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.TransactionStore;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceLedgerTest {
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private TransactionStore transactionStore;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @TempDir
+    private Path walDir;
+
+    //checkpoint 는 직접 호출한다.
+    private BalanceLedger ledger() throws IOException {
+        BalanceLedger balanceLedger = new BalanceLedger(accountRepository, transactionStore,
+                new TransactionTemplate(transactionManager), walDir,
+                WriteAheadLog.RECORD_SIZE * 4, 1L, 1000L, 60_000L);
+        balanceLedger.start();
+        return balanceLedger;
+    }
+
+    private void givenAccount(Long balance) {
+        given(accountRepository.findById(7L))
+                .willReturn(Optional.of(Account.builder()
+                        .id(7L)
+                        .accountNumber("1000000012")
+                        .accountStatus(AccountStatus.IN_USE)
+                        .balance(balance)
+                        .build()));
+    }
+
+    @Test
+    @DisplayName("처음 쓰는 계좌는 DB 잔액에서 시작해서 차감/취소")
+    void useAndCancel() throws Exception {
+        //given
+        givenAccount(1000L);
+        BalanceLedger balanceLedger = ledger();
+
+        //when
+        long used = balanceLedger.use(7L, 300L, 1L);
+        long canceled = balanceLedger.cancel(7L, 100L, 2L);
+
+        //then
+        assertEquals(700L, used);
+        assertEquals(800L, canceled);
+        assertEquals(800L, balanceLedger.balance("1000000012").getAsLong());
+        verify(accountRepository, times(1)).findById(7L);
+        balanceLedger.stop();
+    }
+
+    @Test
+    @DisplayName("잔액 부족 - 잔액과 WAL 그대로")
+    void useBalance_exceed() throws Exception {
+        //given
+        givenAccount(100L);
+        BalanceLedger balanceLedger = ledger();
+
+        //when
+        AccountException accountException = assertThrows(AccountException.class,
+                () -> balanceLedger.use(7L, 300L, 1L));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, accountException.getErrorCodes());
+        assertEquals(100L, balanceLedger.balance(7L).getAsLong());
+        balanceLedger.stop();
+        verify(accountRepository, times(0)).updateBalance(anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("트랜잭션이 롤백되면 차감을 되돌린다")
+    void useBalance_rollback() throws Exception {
+        //given
+        givenAccount(1000L);
+        BalanceLedger balanceLedger = ledger();
+
+        //when
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            balanceLedger.use(7L, 300L, 1L);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(
+                            TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //then
+        assertEquals(1000L, balanceLedger.balance(7L).getAsLong());
+        balanceLedger.stop();
+    }
+
+    @Test
+    @DisplayName("checkpoint 는 바뀐 잔액을 쓰고 이전 segment 를 지운다")
+    void checkpoint() throws Exception {
+        //given
+        givenAccount(1000L);
+        BalanceLedger balanceLedger = ledger();
+        //segment 하나에 record 4 개, 여러 segment 에 걸쳐 쓴다.
+        for (int i = 0; i < 10; i++) {
+            balanceLedger.use(7L, 10L, i);
+        }
+
+        //when
+        balanceLedger.checkpoint();
+
+        //then
+        verify(accountRepository, times(1)).updateBalance(7L, 900L);
+        assertEquals(1, segmentCount());
+        balanceLedger.stop();
+    }
+
+    @Test
+    @DisplayName("checkpoint 전에 종료되면 재시작할 때 WAL 의 마지막 잔액을 반영")
+    void recover() throws Exception {
+        //given
+        givenAccount(1000L);
+        BalanceLedger crashed = ledger();
+        for (int i = 0; i < 6; i++) {
+            crashed.use(7L, 100L, i);
+        }
+        crashed.cancel(7L, 50L, 6L);
+
+        //when
+        BalanceLedger restarted = ledger();
+
+        //then
+        verify(accountRepository, times(1)).updateBalance(7L, 450L);
+        assertEquals(1, segmentCount());
+        restarted.stop();
+    }
+
+    @Test
+    @DisplayName("fsync 후 커밋 전에 종료된 변경은 재시작할 때 거래 내역이 없으면 되돌린다")
+    void recover_revertUncommitted() throws Exception {
+        //given
+        givenAccount(1000L);
+        BalanceLedger crashed = ledger();
+        crashed.use(7L, 100L, 1L);
+        //커밋 직전 fsync 까지 마치고 커밋 전에 종료
+        inTransaction(() -> crashed.use(7L, 300L, 2L), null);
+        inTransaction(() -> crashed.use(7L, 200L, 3L), TransactionSynchronization.STATUS_COMMITTED);
+        given(transactionStore.findExistingTransactionIds(
+                Set.of(TransactionIdGenerator.toString(2L), TransactionIdGenerator.toString(3L))))
+                .willReturn(Set.of(TransactionIdGenerator.toString(3L)));
+
+        //when
+        BalanceLedger restarted = ledger();
+
+        //then
+        verify(accountRepository, times(1)).updateBalance(7L, 700L);
+        restarted.stop();
+    }
+
+    @Test
+    @DisplayName("checkpoint 는 끝나지 않은 트랜잭션의 record 가 있는 segment 를 남긴다")
+    void checkpoint_keepPendingSegment() throws Exception {
+        //given
+        givenAccount(1000L);
+        BalanceLedger balanceLedger = ledger();
+        List<TransactionSynchronization> synchronizations;
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            balanceLedger.use(7L, 10L, 100L);
+            synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        //segment 하나에 record 4 개, 여러 segment 에 걸쳐 쓴다.
+        for (int i = 0; i < 10; i++) {
+            balanceLedger.use(7L, 10L, i);
+        }
+
+        //when
+        balanceLedger.checkpoint();
+        long kept = segmentCount();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(
+                TransactionSynchronization.STATUS_COMMITTED));
+        balanceLedger.use(7L, 10L, 11L);
+        balanceLedger.checkpoint();
+
+        //then
+        assertEquals(4, kept);
+        assertEquals(1, segmentCount());
+        balanceLedger.stop();
+    }
+
+    //status 가 null 이면 커밋 직전(beforeCommit)에서 멈춘다.
+    private void inTransaction(Runnable work, Integer status) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(synchronization -> synchronization.beforeCommit(false));
+            if (status != null) {
+                synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> paths = Files.list(walDir)) {
+            return paths.count();
+        }
+    }
+}
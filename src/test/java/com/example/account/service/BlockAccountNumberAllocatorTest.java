@@ -0,0 +1,168 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockAccountNumberAllocatorTest {
+
+    //DB 시퀀스 대신 메모리 카운터로 블록을 발급
+    static class CountingAllocator extends BlockAccountNumberAllocator {
+        private final AtomicLong sequence;
+        private final AtomicInteger allocateCount = new AtomicInteger();
+        private final long unusedAccountNumber;
+
+        CountingAllocator(long firstBlock, long blockSize) {
+            this(firstBlock, blockSize, FIRST_ACCOUNT_NUMBER);
+        }
+
+        CountingAllocator(long firstBlock, long blockSize, long unusedAccountNumber) {
+            super(blockSize);
+            this.sequence = new AtomicLong(firstBlock);
+            this.unusedAccountNumber = unusedAccountNumber;
+        }
+
+        @Override
+        protected long allocateBlock() {
+            allocateCount.incrementAndGet();
+            return sequence.getAndAdd(getBlockSize());
+        }
+
+        @Override
+        protected long findUnusedAccountNumber() {
+            return unusedAccountNumber;
+        }
+
+        @Override
+        protected long allocateBlockFrom(long floor) {
+            sequence.accumulateAndGet(floor, Math::max);
+            return allocateBlock();
+        }
+    }
+
+    @Test
+    void firstAccountNumber() {
+        //given
+        CountingAllocator allocator = new CountingAllocator(1_000_000_000L, 10);
+
+        //when
+        //then
+        assertEquals("1000000000", allocator.nextAccountNumber());
+        assertEquals("1000000001", allocator.nextAccountNumber());
+        assertEquals(1, allocator.allocateCount.get());
+    }
+
+    @Test
+    @DisplayName("블록을 다 쓰면 다음 블록을 받는다")
+    void refillBlock() {
+        //given
+        CountingAllocator allocator = new CountingAllocator(1_000_000_000L, 2);
+
+        //when
+        allocator.nextAccountNumber();
+        allocator.nextAccountNumber();
+        String third = allocator.nextAccountNumber();
+
+        //then
+        assertEquals("1000000002", third);
+        assertEquals(2, allocator.allocateCount.get());
+    }
+
+    @Test
+    @DisplayName("기존 계좌번호가 있으면 그 다음 번호부터 발급")
+    void startAfterExistingAccountNumbers() {
+        //given
+        CountingAllocator allocator = new CountingAllocator(1_000_000_000L, 10, 1_000_000_123L);
+
+        //when
+        String first = allocator.nextAccountNumber();
+
+        //then
+        assertEquals("1000000123", first);
+        assertEquals(1_000_000_133L, allocator.sequence.get());
+    }
+
+    @Test
+    @DisplayName("카운터가 이미 기존 계좌번호를 지났으면 그대로 발급")
+    void counterAheadOfExistingAccountNumbers() {
+        //given
+        CountingAllocator allocator = new CountingAllocator(1_000_000_500L, 10, 1_000_000_123L);
+
+        //when
+        String first = allocator.nextAccountNumber();
+
+        //then
+        assertEquals("1000000500", first);
+        assertEquals(1, allocator.allocateCount.get());
+    }
+
+    @Test
+    @DisplayName("int 범위를 넘는 계좌번호 발급")
+    void accountNumberOverIntRange() {
+        //given
+        CountingAllocator allocator = new CountingAllocator(2_147_483_647L, 10);
+
+        //when
+        allocator.nextAccountNumber();
+
+        //then
+        assertEquals("2147483648", allocator.nextAccountNumber());
+    }
+
+    @Test
+    @DisplayName("10자리 계좌번호 소진")
+    void accountNumberExhausted() {
+        //given
+        CountingAllocator allocator = new CountingAllocator(9_999_999_999L, 10);
+
+        //when
+        assertEquals("9999999999", allocator.nextAccountNumber());
+        AccountException exception = assertThrows(AccountException.class,
+                allocator::nextAccountNumber);
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_NUMBER_EXHAUSTED, exception.getErrorCodes());
+    }
+
+    @Test
+    @DisplayName("동시 발급 시 중복 없음")
+    void noDuplicateUnderConcurrency() throws InterruptedException {
+        //given
+        CountingAllocator allocator = new CountingAllocator(1_000_000_000L, 7);
+        int threads = 8;
+        int perThread = 1000;
+        Set<String> issued = ConcurrentHashMap.newKeySet();
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+
+        //when
+        for (int i = 0; i < threads; i++) {
+            executorService.submit(() -> {
+                try {
+                    for (int j = 0; j < perThread; j++) {
+                        issued.add(allocator.nextAccountNumber());
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await(10, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+        //then
+        assertEquals(threads * perThread, issued.size());
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.account.service;
+
+import com.example.account.dto.FailedTransaction;
+import com.example.account.type.TransactionType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FailedTransactionRecorderTest {
+    @Mock
+    private TransactionService transactionService;
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("백그라운드에서 모아서 저장")
+    void recordAsync() throws InterruptedException {
+        //given
+        FailedTransactionRecorder recorder = recorder(true, 100);
+        recorder.start();
+
+        //when
+        recorder.record(TransactionType.USE, "1000000000", 1000L);
+        recorder.record(TransactionType.CANCEL, "1000000000", 2000L);
+        recorder.stop();
+
+        //then
+        verify(transactionService, atLeastOnce()).saveFailedTransactions(anyList());
+        verify(transactionService, never()).saveFailedUseTransaction(anyString(), anyLong());
+    }
+
+    @Test
+    @DisplayName("큐가 가득 차면 spill 파일에 남기고 나중에 저장")
+    void spillAndReplay() throws Exception {
+        //given
+        FailedTransactionRecorder recorder = recorder(true, 1);
+        recorder.record(TransactionType.USE, "1000000000", 1000L);
+
+        //when
+        recorder.record(TransactionType.USE, "2000000000", 2000L);
+        Path spillFile = tempDir.resolve("failed.spill");
+        List<String> spilled = Files.readAllLines(spillFile);
+        recorder.start();
+        Path replayFile = tempDir.resolve("failed.spill.replay");
+        for (int i = 0; i < 200 && (Files.exists(spillFile) || Files.exists(replayFile)); i++) {
+            Thread.sleep(10L);
+        }
+        recorder.stop();
+
+        //then
+        assertEquals(1, spilled.size());
+        assertTrue(spilled.get(0).startsWith("USE,2000000000,2000,"));
+        ArgumentCaptor<List<FailedTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionService, atLeast(2)).saveFailedTransactions(captor.capture());
+        assertTrue(captor.getAllValues().stream().flatMap(List::stream)
+                .anyMatch(failedTransaction -> "2000000000".equals(failedTransaction.getAccountNumber())));
+        assertFalse(Files.exists(spillFile));
+        assertFalse(Files.exists(replayFile));
+    }
+
+    @Test
+    @DisplayName("spill 파일에서 읽을 수 없는 줄은 quarantine 파일로 옮기고 나머지는 저장")
+    void quarantineUndecodableLine() throws Exception {
+        //given
+        FailedTransactionRecorder recorder = recorder(true, 100);
+        Path spillFile = tempDir.resolve("failed.spill");
+        Files.write(spillFile, List.of(
+                "USE,1000000000,1000,2024-01-01T00:00",
+                "USE,1000000000,broken",
+                "CANCEL,1000000000,2000,2024-01-01T00:01"));
+
+        //when
+        recorder.start();
+        Path replayFile = tempDir.resolve("failed.spill.replay");
+        for (int i = 0; i < 200 && (Files.exists(spillFile) || Files.exists(replayFile)); i++) {
+            Thread.sleep(10L);
+        }
+        recorder.stop();
+
+        //then
+        assertFalse(Files.exists(spillFile));
+        assertFalse(Files.exists(replayFile));
+        assertEquals(List.of("USE,1000000000,broken"),
+                Files.readAllLines(tempDir.resolve("failed.spill.quarantine")));
+        ArgumentCaptor<List<FailedTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionService, times(1)).saveFailedTransactions(captor.capture());
+        assertEquals(2, captor.getValue().size());
+    }
+
+    @Test
+    @DisplayName("비동기 기록을 끄면 요청 중에 저장")
+    void recordSync() {
+        //given
+        FailedTransactionRecorder recorder = recorder(false, 100);
+
+        //when
+        recorder.record(TransactionType.USE, "1000000000", 1000L);
+        recorder.record(TransactionType.CANCEL, "1000000000", 1000L);
+
+        //then
+        verify(transactionService, times(1)).saveFailedUseTransaction("1000000000", 1000L);
+        verify(transactionService, times(1)).saveFailedCancelTransaction("1000000000", 1000L);
+    }
+
+    private FailedTransactionRecorder recorder(boolean async, int queueSize) {
+        return new FailedTransactionRecorder(transactionService, async, queueSize, 100,
+                10L, 0L, tempDir.resolve("failed.spill").toString());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.account.service;
+
+import com.example.account.config.FaultInjectionProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FaultInjectorTest {
+
+    @Test
+    @DisplayName("비활성화 상태에서는 주입하지 않음")
+    void disabled() {
+        //given
+        FaultInjectionProperties properties = new FaultInjectionProperties();
+        properties.getEndpoints().put("transaction-use", rule(Map.of(100.0, 10_000L), 1.0));
+        FaultInjector faultInjector = new FaultInjector(properties);
+
+        //when
+        //then
+        assertDoesNotThrow(() -> faultInjector.inject("transaction-use"));
+    }
+
+    @Test
+    void injectError() {
+        //given
+        FaultInjectionProperties properties = new FaultInjectionProperties();
+        properties.setEnabled(true);
+        properties.getEndpoints().put("transaction-use", rule(Map.of(), 1.0));
+        FaultInjector faultInjector = new FaultInjector(properties);
+
+        //when
+        //then
+        assertThrows(IllegalStateException.class, () -> faultInjector.inject("transaction-use"));
+        assertDoesNotThrow(() -> faultInjector.inject("transaction-cancel"));
+    }
+
+    @Test
+    @DisplayName("분위별 지연시간")
+    void latencyAtPercentile() {
+        //given
+        FaultInjectionProperties.Rule rule = rule(Map.of(50.0, 0L, 99.0, 200L, 100.0, 5000L), 0.0);
+
+        //when
+        //then
+        assertEquals(0L, rule.latencyAt(10.0));
+        assertEquals(200L, rule.latencyAt(75.0));
+        assertEquals(200L, rule.latencyAt(99.0));
+        assertEquals(5000L, rule.latencyAt(99.5));
+    }
+
+    private FaultInjectionProperties.Rule rule(Map<Double, Long> latency, double errorRate) {
+        FaultInjectionProperties.Rule rule = new FaultInjectionProperties.Rule();
+        rule.setLatency(latency);
+        rule.setErrorRate(errorRate);
+        return rule;
+    }
+}
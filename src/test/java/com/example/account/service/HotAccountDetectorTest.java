@@ -0,0 +1,128 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountRepository;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class HotAccountDetectorTest {
+    @Mock
+    private SubBalanceService subBalanceService;
+    @Mock
+    private LockService lockService;
+    @Mock
+    private AccountRepository accountRepository;
+
+    //worker 는 띄우지 않고 split/rebalance 를 직접 호출한다.
+    private HotAccountDetector detector(long threshold, long window) {
+        return new HotAccountDetector(subBalanceService, lockService, accountRepository,
+                1024, 4, threshold, window, 1000L);
+    }
+
+    @Test
+    @DisplayName("threshold 에 닿은 요청에서 한 번만 나누기 요청")
+    void detectOnce() {
+        //given
+        HotAccountDetector hotAccountDetector = detector(100, 60_000L);
+
+        //when
+        int detected = 0;
+        for (int i = 0; i < 300; i++) {
+            if (hotAccountDetector.record("1000000000")) {
+                detected++;
+            }
+        }
+        for (int i = 0; i < 99; i++) {
+            hotAccountDetector.record("1000000001");
+        }
+
+        //then
+        assertEquals(1, detected);
+        assertFalse(hotAccountDetector.record("1000000002"));
+        //count-min sketch 는 실제보다 작게 세지 않는다.
+        assertTrue(hotAccountDetector.estimate("1000000001") >= 99);
+        assertTrue(hotAccountDetector.estimate("1000000000") >= 300);
+    }
+
+    @Test
+    @DisplayName("window 가 지나면 다시 센다")
+    void resetWindow() throws InterruptedException {
+        //given
+        HotAccountDetector hotAccountDetector = detector(100, 10L);
+        for (int i = 0; i < 50; i++) {
+            hotAccountDetector.record("1000000000");
+        }
+
+        //when
+        Thread.sleep(20L);
+        hotAccountDetector.record("1000000000");
+
+        //then
+        assertEquals(1, hotAccountDetector.estimate("1000000000"));
+    }
+
+    @Test
+    @DisplayName("계좌 락을 잡고 나누기")
+    void splitWithLock() {
+        //when
+        detector(100, 60_000L).split("1000000000");
+
+        //then
+        InOrder inOrder = inOrder(lockService, subBalanceService);
+        inOrder.verify(lockService).lock(eq("1000000000"), anyLong(), anyLong());
+        inOrder.verify(subBalanceService).split("1000000000");
+        inOrder.verify(lockService).unlock("1000000000");
+    }
+
+    @Test
+    @DisplayName("락을 못 잡으면 다음 threshold 에 다시 요청")
+    void splitLockFailed() {
+        //given
+        HotAccountDetector hotAccountDetector = detector(1, 60_000L);
+        given(lockService.lock(anyString(), anyLong(), anyLong()))
+                .willThrow(new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK));
+        assertTrue(hotAccountDetector.record("1000000000"));
+
+        //when
+        hotAccountDetector.split("1000000000");
+
+        //then
+        verify(subBalanceService, never()).split(anyString());
+        verify(lockService, never()).unlock(anyString());
+        assertTrue(hotAccountDetector.record("1000000000"));
+    }
+
+    @Test
+    @DisplayName("나뉜 계좌마다 다시 나누기")
+    void rebalance() {
+        //given
+        given(accountRepository.findAccountNumbersWithSubBalances())
+                .willReturn(List.of("1000000000", "1000000001"));
+
+        //when
+        detector(100, 60_000L).rebalance();
+
+        //then
+        verify(subBalanceService, times(1)).rebalance("1000000000");
+        verify(subBalanceService, times(1)).rebalance("1000000001");
+        verify(lockService, times(2)).unlock(anyString());
+    }
+}
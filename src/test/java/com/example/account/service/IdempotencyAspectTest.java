@@ -0,0 +1,201 @@
+package com.example.account.service;
+
+import com.example.account.aop.Idempotent;
+import com.example.account.controller.TransactionController;
+import com.example.account.dto.IdempotencyRecord;
+import com.example.account.dto.UseBalance;
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import com.example.account.type.TransactionResultType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyAspectTest {
+    @Mock
+    private IdempotencyStore idempotencyStore;
+    @Mock
+    private ProceedingJoinPoint proceedingJoinPoint;
+    @Mock
+    private MethodSignature methodSignature;
+    @Mock
+    private Idempotent idempotent;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final MockHttpServletRequest httpServletRequest = new MockHttpServletRequest();
+    private final UseBalance.Request request = new UseBalance.Request(1L, "1000000012", 1000L);
+    private IdempotencyAspect idempotencyAspect;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyAspect = new IdempotencyAspect(idempotencyStore, objectMapper);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(httpServletRequest));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private void givenHeader(String methodName, Class<?> parameterType) throws NoSuchMethodException {
+        httpServletRequest.addHeader(IdempotencyAspect.HEADER, "retry-1");
+        given(idempotent.value()).willReturn("transaction-use");
+        given(proceedingJoinPoint.getSignature()).willReturn(methodSignature);
+        given(methodSignature.getMethod())
+                .willReturn(TransactionController.class.getMethod(methodName, parameterType));
+    }
+
+    private static UseBalance.Response response() {
+        return UseBalance.Response.builder()
+                .accountNumber("1000000012")
+                .transactionResultType(TransactionResultType.S)
+                .transactionId("00000000000000ff")
+                .amount(1000L)
+                .transactedAt(LocalDateTime.of(2024, 3, 1, 12, 0))
+                .build();
+    }
+
+    @Test
+    @DisplayName("헤더가 없으면 그대로 실행")
+    void withoutHeader() throws Throwable {
+        //when
+        idempotencyAspect.aroundMethod(proceedingJoinPoint, idempotent, request);
+
+        //then
+        verify(proceedingJoinPoint, times(1)).proceed();
+        verify(idempotencyStore, times(0)).find(anyString());
+    }
+
+    @Test
+    @DisplayName("처음 요청은 실행하고 응답을 저장")
+    void firstRequest() throws Throwable {
+        //given
+        givenHeader("useBalance", UseBalance.Request.class);
+        String fingerprint = objectMapper.writeValueAsString(request);
+        given(idempotencyStore.claim("transaction-use:retry-1", fingerprint))
+                .willReturn(true);
+        given(proceedingJoinPoint.proceed())
+                .willReturn(response());
+
+        //when
+        Object result = idempotencyAspect.aroundMethod(proceedingJoinPoint, idempotent, request);
+
+        //then
+        assertEquals("00000000000000ff", ((UseBalance.Response) result).getTransactionId());
+        verify(idempotencyStore, times(1)).complete(eq("transaction-use:retry-1"), eq(fingerprint),
+                eq(objectMapper.writeValueAsString(response())));
+    }
+
+    @Test
+    @DisplayName("재요청은 실행하지 않고 저장된 응답을 돌려준다")
+    void replay() throws Throwable {
+        //given
+        givenHeader("useBalance", UseBalance.Request.class);
+        given(idempotencyStore.find("transaction-use:retry-1"))
+                .willReturn(IdempotencyRecord.done(objectMapper.writeValueAsString(request),
+                        objectMapper.writeValueAsString(response())));
+
+        //when
+        Object result = idempotencyAspect.aroundMethod(proceedingJoinPoint, idempotent, request);
+
+        //then
+        UseBalance.Response replayed = (UseBalance.Response) result;
+        assertEquals("00000000000000ff", replayed.getTransactionId());
+        assertEquals(LocalDateTime.of(2024, 3, 1, 12, 0), replayed.getTransactedAt());
+        verify(proceedingJoinPoint, times(0)).proceed();
+    }
+
+    @Test
+    @DisplayName("비동기 API 재요청은 완료된 future 로 돌려준다")
+    void replay_async() throws Throwable {
+        //given
+        givenHeader("useBalanceAsync", UseBalance.Request.class);
+        given(idempotencyStore.find("transaction-use:retry-1"))
+                .willReturn(IdempotencyRecord.done(objectMapper.writeValueAsString(request),
+                        objectMapper.writeValueAsString(response())));
+
+        //when
+        Object result = idempotencyAspect.aroundMethod(proceedingJoinPoint, idempotent, request);
+
+        //then
+        UseBalance.Response replayed = ((CompletableFuture<?>) result).thenApply(UseBalance.Response.class::cast).get();
+        assertEquals(1000L, replayed.getAmount());
+        verify(proceedingJoinPoint, times(0)).proceed();
+    }
+
+    @Test
+    @DisplayName("같은 key 로 다른 요청 - 실패")
+    void reusedKey() throws Throwable {
+        //given
+        givenHeader("useBalance", UseBalance.Request.class);
+        given(idempotencyStore.find("transaction-use:retry-1"))
+                .willReturn(IdempotencyRecord.done(objectMapper.writeValueAsString(
+                                new UseBalance.Request(1L, "1000000012", 2000L)),
+                        objectMapper.writeValueAsString(response())));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> idempotencyAspect.aroundMethod(proceedingJoinPoint, idempotent, request));
+
+        //then
+        assertEquals(ErrorCode.IDEMPOTENCY_KEY_REUSED, exception.getErrorCodes());
+        verify(proceedingJoinPoint, times(0)).proceed();
+    }
+
+    @Test
+    @DisplayName("같은 key 의 요청이 처리 중 - 실패")
+    void inProgress() throws Throwable {
+        //given
+        givenHeader("useBalance", UseBalance.Request.class);
+        given(idempotencyStore.claim(anyString(), anyString()))
+                .willReturn(false);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> idempotencyAspect.aroundMethod(proceedingJoinPoint, idempotent, request));
+
+        //then
+        assertEquals(ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS, exception.getErrorCodes());
+        verify(proceedingJoinPoint, times(0)).proceed();
+    }
+
+    @Test
+    @DisplayName("실패한 요청은 저장하지 않고 key 를 풀어준다")
+    void releaseOnFailure() throws Throwable {
+        //given
+        givenHeader("useBalance", UseBalance.Request.class);
+        given(idempotencyStore.claim(anyString(), anyString()))
+                .willReturn(true);
+        given(proceedingJoinPoint.proceed())
+                .willThrow(new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE));
+
+        //when
+        assertThrows(AccountException.class,
+                () -> idempotencyAspect.aroundMethod(proceedingJoinPoint, idempotent, request));
+
+        //then
+        verify(idempotencyStore, times(1)).release("transaction-use:retry-1");
+        verify(idempotencyStore, times(0)).complete(anyString(), anyString(), anyString());
+    }
+}
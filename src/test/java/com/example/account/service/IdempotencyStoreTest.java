@@ -0,0 +1,134 @@
+package com.example.account.service;
+
+import com.example.account.dto.IdempotencyRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.Codec;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyStoreTest {
+    @Mock
+    private RedissonClient redissonClient;
+    @Mock
+    private RMapCache<String, String> remoteCache;
+
+    private IdempotencyStore idempotencyStore;
+
+    @BeforeEach
+    void setUp() {
+        given(redissonClient.<String, String>getMapCache(anyString(), any(Codec.class)))
+                .willReturn(remoteCache);
+        idempotencyStore = new IdempotencyStore(redissonClient, 100L, 60000L, 1000L);
+        idempotencyStore.init();
+    }
+
+    @Test
+    @DisplayName("같은 key 는 한 번만 시작하고, 끝난 응답은 local 에서 찾는다")
+    void claimAndComplete() {
+        //given
+        given(remoteCache.putIfAbsent(eq("use:1"), anyString(), eq(1000L), eq(TimeUnit.MILLISECONDS)))
+                .willReturn(null);
+
+        //when
+        boolean first = idempotencyStore.claim("use:1", "{}");
+        boolean second = idempotencyStore.claim("use:1", "{}");
+        idempotencyStore.complete("use:1", "{}", "{\"amount\":1000}");
+        IdempotencyRecord record = idempotencyStore.find("use:1");
+
+        //then
+        assertTrue(first);
+        assertFalse(second);
+        assertTrue(record.isDone());
+        assertEquals("{\"amount\":1000}", record.getResponse());
+        verify(remoteCache, times(1)).fastPut("use:1", "D\n{}\n{\"amount\":1000}", 60000L, TimeUnit.MILLISECONDS);
+        verify(remoteCache, times(0)).get(anyString());
+    }
+
+    @Test
+    @DisplayName("다른 노드가 먼저 시작한 key 는 시작하지 않는다")
+    void claimedByOtherNode() {
+        //given
+        given(remoteCache.putIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .willReturn("P\n{}");
+
+        //when
+        boolean claimed = idempotencyStore.claim("use:1", "{}");
+
+        //then
+        assertFalse(claimed);
+        //local 에 남은 처리 중 표시도 지워서 remote 의 결과를 읽는다.
+        given(remoteCache.get("use:1"))
+                .willReturn("D\n{}\n{\"amount\":1000}");
+        assertTrue(idempotencyStore.find("use:1").isDone());
+    }
+
+    @Test
+    @DisplayName("redis 장애 시에는 이 노드 안에서만 중복을 막는다")
+    void claim_redisDown() {
+        //given
+        given(remoteCache.putIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .willThrow(new RedisException("down"));
+
+        //when
+        boolean first = idempotencyStore.claim("use:1", "{}");
+        boolean second = idempotencyStore.claim("use:1", "{}");
+
+        //then
+        assertTrue(first);
+        assertFalse(second);
+    }
+
+    @Test
+    @DisplayName("local 의 처리 중 표시는 pending-ttl, 끝난 응답은 ttl 이 지나면 만료")
+    void localExpiry() throws InterruptedException {
+        //given
+        IdempotencyStore shortPending = new IdempotencyStore(redissonClient, 100L, 60000L, 50L);
+        shortPending.init();
+        given(remoteCache.putIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .willThrow(new RedisException("down"));
+        shortPending.claim("use:1", "{}");
+        shortPending.claim("use:2", "{}");
+        shortPending.complete("use:2", "{}", "{\"amount\":1000}");
+
+        //when
+        Thread.sleep(100L);
+        boolean reclaimed = shortPending.claim("use:1", "{}");
+        IdempotencyRecord done = shortPending.find("use:2");
+
+        //then
+        assertTrue(reclaimed);
+        assertTrue(done.isDone());
+        verify(remoteCache, times(0)).get(anyString());
+    }
+
+    @Test
+    @DisplayName("실패한 요청의 key 는 다시 시작할 수 있다")
+    void release() {
+        //given
+        given(remoteCache.putIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .willReturn(null);
+        idempotencyStore.claim("use:1", "{}");
+
+        //when
+        idempotencyStore.release("use:1");
+
+        //then
+        assertTrue(idempotencyStore.claim("use:1", "{}"));
+        verify(remoteCache, times(1)).fastRemove("use:1");
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalLockServiceTest {
+    private final LocalLockService lockService = new LocalLockService(16, false, 0);
+
+    @Test
+    void successGetLock() {
+        //given
+        //when
+        assertDoesNotThrow(() -> lockService.lock("1234567890", 100L, -1L));
+        lockService.unlock("1234567890");
+
+        //then
+        assertDoesNotThrow(() -> CompletableFuture.runAsync(() -> {
+            lockService.lock("1234567890", 100L, -1L);
+            lockService.unlock("1234567890");
+        }).join());
+    }
+
+    @Test
+    @DisplayName("다른 스레드가 락을 잡고 있으면 대기 후 실패")
+    void failGetLock() {
+        //given
+        lockService.lock("1234567890", 100L, -1L);
+
+        //when
+        AccountException accountException = CompletableFuture.supplyAsync(() ->
+                assertThrows(AccountException.class,
+                        () -> lockService.lock("1234567890", 100L, -1L))).join();
+        lockService.unlock("1234567890");
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, accountException.getErrorCodes());
+    }
+
+    @Test
+    @DisplayName("fencing token 은 락을 잡을 때마다 증가")
+    void fencingTokenIncreases() {
+        //given
+        long first = lockService.lock("1234567890", 100L, -1L);
+        lockService.unlock("1234567890");
+
+        //when
+        long second = lockService.lock("1234567890", 100L, -1L);
+        lockService.unlock("1234567890");
+
+        //then
+        assertTrue(second > first);
+    }
+
+    @Test
+    @DisplayName("락을 잡지 않은 스레드의 해제는 무시")
+    void unlockWithoutLock() {
+        assertDoesNotThrow(() -> lockService.unlock("1234567890"));
+    }
+
+    @Test
+    @DisplayName("fair 모드 - 대기자가 가득 차면 기다리지 않고 거절")
+    void queueFull() {
+        //given
+        LocalLockService fairLockService = new LocalLockService(16, true, 0);
+
+        //when
+        AccountException accountException = assertThrows(AccountException.class,
+                () -> fairLockService.lock("1234567890", 100L, -1L));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_LOCK_QUEUE_FULL, accountException.getErrorCodes());
+        assertEquals(0L, fairLockService.queueDepth("1234567890"));
+    }
+
+    @Test
+    @DisplayName("fair 모드 - 대기자 수 집계")
+    void queueDepth() throws InterruptedException {
+        //given
+        LocalLockService fairLockService = new LocalLockService(16, true, 10);
+        fairLockService.lock("1234567890", 100L, -1L);
+        CompletableFuture<AccountException> waiter = CompletableFuture.supplyAsync(() ->
+                assertThrows(AccountException.class,
+                        () -> fairLockService.lock("1234567890", 1000L, -1L)));
+
+        //when
+        long depth = 0;
+        for (int i = 0; i < 50 && depth == 0; i++) {
+            Thread.sleep(10L);
+            depth = fairLockService.queueDepth("1234567890");
+        }
+        waiter.join();
+        fairLockService.unlock("1234567890");
+
+        //then
+        assertEquals(1L, depth);
+        assertEquals(0L, fairLockService.queueDepth("1234567890"));
+    }
+
+    @Test
+    @DisplayName("비동기 락 - 동기 락이 풀리면 넘겨받는다")
+    void lockAsyncAfterUnlock() {
+        //given
+        long first = lockService.lock("1234567890", 100L, -1L);
+
+        //when
+        CompletableFuture<Long> locked = lockService.lockAsync("1234567890", -1L, 1000L, -1L);
+        boolean waited = !locked.isDone();
+        lockService.unlock("1234567890");
+        long second = locked.join();
+
+        //then
+        assertTrue(waited);
+        assertTrue(second > first);
+        //비동기 소유자가 잡고 있으므로 다른 스레드는 실패
+        AccountException accountException = CompletableFuture.supplyAsync(() ->
+                assertThrows(AccountException.class,
+                        () -> lockService.lock("1234567890", 50L, -1L))).join();
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, accountException.getErrorCodes());
+        lockService.unlockAsync("1234567890", -1L).join();
+    }
+
+    @Test
+    @DisplayName("비동기 락 - 다른 스레드에서 해제하면 기다리던 스레드가 얻는다")
+    void unlockAsyncFromOtherThread() {
+        //given
+        lockService.lockAsync("1234567890", -2L, 100L, -1L).join();
+        CompletableFuture<Long> waiter = CompletableFuture.supplyAsync(() -> {
+            long token = lockService.lock("1234567890", 1000L, -1L);
+            lockService.unlock("1234567890");
+            return token;
+        });
+
+        //when
+        CompletableFuture.runAsync(() -> lockService.unlockAsync("1234567890", -2L).join()).join();
+
+        //then
+        assertDoesNotThrow(() -> waiter.join());
+    }
+
+    @Test
+    @DisplayName("비동기 락 - 대기 시간이 지나면 실패")
+    void lockAsyncTimeout() {
+        //given
+        lockService.lock("1234567890", 100L, -1L);
+
+        //when
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> lockService.lockAsync("1234567890", -3L, 50L, -1L).join());
+        lockService.unlock("1234567890");
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK,
+                ((AccountException) exception.getCause()).getErrorCodes());
+        assertEquals(0L, lockService.queueDepth("1234567890"));
+    }
+}
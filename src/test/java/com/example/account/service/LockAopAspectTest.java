@@ -1,19 +1,36 @@
 package com.example.account.service;
 
+import com.example.account.aop.AccountLock;
+import com.example.account.aop.FencingTokenHolder;
 import com.example.account.dto.UseBalance;
+import com.example.account.dto.UseBalanceBatch;
 import com.example.account.exception.AccountException;
 import com.example.account.type.ErrorCode;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -23,6 +40,12 @@ class LockAopAspectTest {
     LockService lockService;
     @Mock
     private ProceedingJoinPoint proceedingJoinPoint;
+    @Mock
+    private AccountLock accountLock;
+    @Mock
+    private Executor applicationTaskExecutor;
+    @Mock
+    private AccountMetrics accountMetrics;
     @InjectMocks
     private LockAopAspect lockAopAspect;
     @Test
@@ -34,10 +57,10 @@ class LockAopAspectTest {
                 new UseBalance.Request(123L,"1234",1000L);
 
         //when
-        lockAopAspect.aroundMethod(proceedingJoinPoint,request);
+        lockAopAspect.aroundMethod(proceedingJoinPoint,accountLock,request);
         //then
         verify(lockService,times(1)).
-                lock(lockArgumentCaptor.capture());
+                lock(lockArgumentCaptor.capture(),anyLong(),anyLong());
         verify(lockService,times(1))
                 .unlock(unLockArgumentCaptor.capture());
 
@@ -58,11 +81,11 @@ class LockAopAspectTest {
 
         //when
         assertThrows(AccountException.class, ()->
-                lockAopAspect.aroundMethod(proceedingJoinPoint,request));
+                lockAopAspect.aroundMethod(proceedingJoinPoint,accountLock,request));
 
         //then
         verify(lockService,times(1)).
-                lock(lockArgumentCaptor.capture());
+                lock(lockArgumentCaptor.capture(),anyLong(),anyLong());
         verify(lockService,times(1))
                 .unlock(unLockArgumentCaptor.capture());
 
@@ -71,4 +94,169 @@ class LockAopAspectTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    void lockWithAnnotationTimesAndFencingToken() throws Throwable {
+        //given
+        UseBalance.Request request=
+                new UseBalance.Request(123L,"1234",1000L);
+        given(accountLock.tryLockTime()).willReturn(300L);
+        given(accountLock.leaseTime()).willReturn(2000L);
+        given(lockService.lock("1234",300L,2000L)).willReturn(42L);
+        given(proceedingJoinPoint.proceed())
+                .willAnswer(invocation -> FencingTokenHolder.get("1234"));
+
+        //when
+        Object tokenInside=lockAopAspect.aroundMethod(proceedingJoinPoint,accountLock,request);
+
+        //then
+        assertEquals(42L,tokenInside);
+        assertNull(FencingTokenHolder.get("1234"));
+    }
+
+    @Test
+    void lockBatchInAccountNumberOrder() throws Throwable {
+        //given
+        UseBalanceBatch.Request request = new UseBalanceBatch.Request(List.of(
+                new UseBalance.Request(1L,"3000000000",1000L),
+                new UseBalance.Request(1L,"1000000000",1000L),
+                new UseBalance.Request(1L,"3000000000",1000L)));
+
+        //when
+        lockAopAspect.aroundBatchMethod(proceedingJoinPoint,accountLock,request);
+
+        //then
+        InOrder inOrder = inOrder(lockService);
+        inOrder.verify(lockService).lock(eq("1000000000"),anyLong(),anyLong());
+        inOrder.verify(lockService).lock(eq("3000000000"),anyLong(),anyLong());
+        inOrder.verify(lockService).unlock("3000000000");
+        inOrder.verify(lockService).unlock("1000000000");
+    }
+
+    @Test
+    void unlockAcquiredWhenBatchLockFails() throws Throwable {
+        //given
+        UseBalanceBatch.Request request = new UseBalanceBatch.Request(List.of(
+                new UseBalance.Request(1L,"1000000000",1000L),
+                new UseBalance.Request(1L,"2000000000",1000L)));
+        given(lockService.lock(eq("1000000000"),anyLong(),anyLong()))
+                .willReturn(1L);
+        given(lockService.lock(eq("2000000000"),anyLong(),anyLong()))
+                .willThrow(new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK));
+
+        //when
+        assertThrows(AccountException.class, ()->
+                lockAopAspect.aroundBatchMethod(proceedingJoinPoint,accountLock,request));
+
+        //then
+        verify(lockService,times(1)).unlock("1000000000");
+        verify(lockService,never()).unlock("2000000000");
+        verify(proceedingJoinPoint,never()).proceed();
+    }
+
+    @Test
+    void lockAsyncAndUnlockAfterComplete() throws Throwable {
+        //given
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",1000L);
+        given(lockService.lockAsync(eq("1234"),anyLong(),anyLong(),anyLong()))
+                .willReturn(CompletableFuture.completedFuture(7L));
+        willAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).given(applicationTaskExecutor).execute(any());
+        given(proceedingJoinPoint.proceed())
+                .willAnswer(invocation -> CompletableFuture.completedFuture(FencingTokenHolder.get("1234")));
+        given(lockService.unlockAsync(eq("1234"),anyLong()))
+                .willReturn(CompletableFuture.completedFuture(null));
+
+        //when
+        CompletableFuture<?> result = (CompletableFuture<?>)
+                lockAopAspect.aroundAsyncMethod(proceedingJoinPoint,accountLock,request);
+
+        //then
+        assertEquals(7L, result.get());
+        assertNull(FencingTokenHolder.get("1234"));
+        verify(lockService,times(1)).unlockAsync(eq("1234"),anyLong());
+        verify(accountMetrics,times(1)).lockAcquired(eq("1234"),anyLong());
+        verify(accountMetrics,times(1)).lockHeld(eq("1234"),anyLong());
+        verify(accountMetrics,times(1)).lockReleased(eq("1234"),anyLong());
+    }
+
+    @Test
+    void lockAsyncFailed() throws Throwable {
+        //given
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",1000L);
+        given(lockService.lockAsync(eq("1234"),anyLong(),anyLong(),anyLong()))
+                .willReturn(CompletableFuture.failedFuture(
+                        new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK)));
+
+        //when
+        CompletableFuture<?> result = (CompletableFuture<?>)
+                lockAopAspect.aroundAsyncMethod(proceedingJoinPoint,accountLock,request);
+
+        //then
+        ExecutionException exception = assertThrows(ExecutionException.class, result::get);
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK,
+                ((AccountException) exception.getCause()).getErrorCodes());
+        verify(lockService,never()).unlockAsync(anyString(),anyLong());
+        verify(proceedingJoinPoint,never()).proceed();
+        verify(accountMetrics,times(1)).lockFailed(eq("1234"),
+                eq(ErrorCode.ACCOUNT_TRANSACTION_LOCK),anyLong());
+    }
+
+    @Test
+    void recordLockWaitAndHold() throws Throwable {
+        //given
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",1000L);
+
+        //when
+        lockAopAspect.aroundMethod(proceedingJoinPoint,accountLock,request);
+
+        //then
+        InOrder inOrder = inOrder(accountMetrics, lockService);
+        inOrder.verify(lockService).lock(eq("1234"),anyLong(),anyLong());
+        inOrder.verify(accountMetrics).lockAcquired(eq("1234"),anyLong());
+        inOrder.verify(accountMetrics).lockHeld(eq("1234"),anyLong());
+        inOrder.verify(lockService).unlock("1234");
+        inOrder.verify(accountMetrics).lockReleased(eq("1234"),anyLong());
+    }
+
+    @Test
+    void recordLockFailure() throws Throwable {
+        //given
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",1000L);
+        given(lockService.lock(eq("1234"),anyLong(),anyLong()))
+                .willThrow(new AccountException(ErrorCode.ACCOUNT_LOCK_QUEUE_FULL));
+
+        //when
+        assertThrows(AccountException.class, () ->
+                lockAopAspect.aroundMethod(proceedingJoinPoint,accountLock,request));
+
+        //then
+        verify(accountMetrics,times(1)).lockFailed(eq("1234"),
+                eq(ErrorCode.ACCOUNT_LOCK_QUEUE_FULL),anyLong());
+        verify(accountMetrics,never()).lockHeld(anyString(),anyLong());
+        verify(lockService,never()).unlock(anyString());
+    }
+
+    @Test
+    void executeOnActorWithoutLock() throws Throwable {
+        //given
+        AccountActorExecutor accountActorExecutor = new AccountActorExecutor(1, 10);
+        ReflectionTestUtils.setField(lockAopAspect, "accountActorExecutor", accountActorExecutor);
+        UseBalance.Request request = new UseBalance.Request(123L,"1234",1000L);
+        given(accountLock.tryLockTime())
+                .willReturn(1000L);
+        given(proceedingJoinPoint.proceed())
+                .willAnswer(invocation -> Thread.currentThread().getName());
+
+        //when
+        Object result = lockAopAspect.aroundMethod(proceedingJoinPoint,accountLock,request);
+        accountActorExecutor.shutdown();
+
+        //then
+        assertEquals("account-actor-0", result);
+        verify(lockService,never()).lock(anyString(),anyLong(),anyLong());
+        verify(lockService,never()).unlock(anyString());
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.example.account.service;
+
+import com.example.account.exception.AccountException;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RFuture;
+import org.redisson.api.RLock;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.springframework.test.util.ReflectionTestUtils;
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class RedisLockServiceTest {
+    //현재 시각 << 20 보다 큰 token (카운터가 이미 시드된 상태)
+    private static final long TOKEN = Long.MAX_VALUE / 2;
+    @Mock
+    private RedissonClient redissonClient;
+    @Mock
+    private RLock rLock;
+    @Mock
+    private RAtomicLong rAtomicLong;
+    @Mock
+    private RScript rScript;
+    @Mock
+    private RFuture<Object> rFuture;
+    @InjectMocks
+    private RedisLockService lockService;
+    @Test
+    void successGetLock() throws InterruptedException {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willReturn(true);
+        given(redissonClient.getAtomicLong(anyString()))
+                .willReturn(rAtomicLong);
+        given(rAtomicLong.incrementAndGet())
+                .willReturn(TOKEN);
+        //when
+        assertDoesNotThrow(()->lockService.lock("123",1000L,-1L));
+        long fencingToken=lockService.lock("123",1000L,-1L);
+
+        //then
+        assertEquals(TOKEN,fencingToken);
+        verify(rLock,times(2)).tryLock(1000L,-1L,TimeUnit.MILLISECONDS);
+    }
+    @Test
+    void seedFencingToken() throws InterruptedException {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willReturn(true);
+        given(redissonClient.getAtomicLong(anyString()))
+                .willReturn(rAtomicLong);
+        //redis 가 비워져서 카운터가 1 부터 다시 시작
+        given(rAtomicLong.incrementAndGet())
+                .willReturn(1L);
+        given(rAtomicLong.compareAndSet(eq(1L),anyLong()))
+                .willReturn(true);
+        long floor=System.currentTimeMillis() << 20;
+
+        //when
+        long fencingToken=lockService.lock("123",1000L,-1L);
+
+        //then
+        assertTrue(fencingToken>=floor);
+        verify(rAtomicLong,times(1)).compareAndSet(1L,fencingToken);
+    }
+
+    @Test
+    void fencingTokenFailedUnlock() throws InterruptedException {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willReturn(true);
+        given(redissonClient.getAtomicLong(anyString()))
+                .willReturn(rAtomicLong);
+        given(rAtomicLong.incrementAndGet())
+                .willThrow(new IllegalStateException("redis down"));
+
+        //when
+        AccountException accountException= assertThrows(AccountException.class,
+                ()->lockService.lock("123",1000L,-1L));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK,accountException.getErrorCodes());
+        verify(rLock,times(1)).unlock();
+    }
+
+    @Test
+    void failGetLock() throws InterruptedException {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willReturn(false);
+
+        //when
+        AccountException accountException= assertThrows(AccountException.class,
+                ()->lockService.lock("123",1000L,-1L));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK,accountException.getErrorCodes());
+    }
+
+    @Test
+    void queueFull() throws InterruptedException {
+        //given
+        ReflectionTestUtils.setField(lockService, "fair", true);
+        ReflectionTestUtils.setField(lockService, "maxWaiters", 1L);
+        given(redissonClient.getFairLock(anyString()))
+                .willReturn(rLock);
+        given(redissonClient.getScript(any(Codec.class)))
+                .willReturn(rScript);
+        //script 안에서 증가를 되돌리고 0 을 돌려준다.
+        given(rScript.eval(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.INTEGER),
+                eq(List.<Object>of("ACWQ123")), eq("1"), eq("11000")))
+                .willReturn(0L);
+
+        //when
+        AccountException accountException= assertThrows(AccountException.class,
+                ()->lockService.lock("123",1000L,-1L));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_LOCK_QUEUE_FULL,accountException.getErrorCodes());
+        verify(rScript,times(0)).evalAsync(any(RScript.Mode.class),anyString(),any(RScript.ReturnType.class),anyList());
+        verify(rLock,times(0)).tryLock(anyLong(),anyLong(),any());
+    }
+
+    @Test
+    void fairLockLeavesQueue() throws InterruptedException {
+        //given
+        ReflectionTestUtils.setField(lockService, "fair", true);
+        ReflectionTestUtils.setField(lockService, "maxWaiters", 1L);
+        given(redissonClient.getFairLock(anyString()))
+                .willReturn(rLock);
+        given(redissonClient.getScript(any(Codec.class)))
+                .willReturn(rScript);
+        given(rScript.eval(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.INTEGER),
+                eq(List.<Object>of("ACWQ123")), eq("1"), eq("11000")))
+                .willReturn(1L);
+        given(rScript.evalAsync(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.INTEGER),
+                eq(List.<Object>of("ACWQ123"))))
+                .willReturn(rFuture);
+        given(rLock.tryLock(anyLong(),anyLong(),any()))
+                .willReturn(true);
+        given(redissonClient.getAtomicLong(anyString()))
+                .willReturn(rAtomicLong);
+        given(rAtomicLong.incrementAndGet())
+                .willReturn(TOKEN);
+
+        //when
+        long fencingToken=lockService.lock("123",1000L,-1L);
+
+        //then
+        assertEquals(TOKEN,fencingToken);
+        //대기열 진입과 이탈은 각각 script 한 번
+        verify(rScript,times(1)).eval(any(RScript.Mode.class),anyString(),any(RScript.ReturnType.class),anyList(),any(),any());
+        verify(rScript,times(1)).evalAsync(any(RScript.Mode.class),anyString(),any(RScript.ReturnType.class),anyList());
+        verify(rAtomicLong,times(0)).decrementAndGet();
+    }
+
+}
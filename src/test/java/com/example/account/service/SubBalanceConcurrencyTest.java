@@ -0,0 +1,174 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountBalanceSlot;
+import com.example.account.domain.AccountStatus;
+import com.example.account.domain.AccountUser;
+import com.example.account.domain.Transaction;
+import com.example.account.dto.AccountSnapshot;
+import com.example.account.repository.AccountBalanceSlotRepository;
+import com.example.account.repository.AccountRepository;
+import com.example.account.repository.AccountUserRepository;
+import com.example.account.repository.JpaTransactionStore;
+import com.example.account.repository.TransactionRepository;
+import com.example.account.type.TransactionResultType;
+import com.example.account.type.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+
+/*
+    ATOMIC 모드에서 취소와 slot 잔액 모으기(차감의 lockAndDrain, rebalance)가 겹쳐도 잔액을 잃지 않는지 확인한다.
+    각 작업이 실제로 커밋되도록 테스트 트랜잭션 없이 실행한다.
+ */
+@DataJpaTest(properties = {
+        "spring.sql.init.mode=never",
+        "account.transaction.debit-mode=ATOMIC"
+})
+@Import({TransactionService.class, SubBalanceService.class,
+        JpaTransactionStore.class, TransactionIdGenerator.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SubBalanceConcurrencyTest {
+    private static final String ACCOUNT_NUMBER = "1000000000";
+    private static final long INITIAL_BALANCE = 1000L;
+    private static final int SLOTS = 4;
+
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private SubBalanceService subBalanceService;
+    @Autowired
+    private AccountUserRepository accountUserRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private AccountBalanceSlotRepository accountBalanceSlotRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @MockBean
+    private AccountSnapshotCache accountSnapshotCache;
+    @MockBean
+    private TransactionLedgerWriter transactionLedgerWriter;
+
+    private Long userId;
+    private Long accountId;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            AccountUser accountUser = accountUserRepository.save(AccountUser.builder()
+                    .name("pobi")
+                    .build());
+            Account account = accountRepository.save(Account.builder()
+                    .accountUser(accountUser)
+                    .accountStatus(AccountStatus.IN_USE)
+                    .accountNumber(ACCOUNT_NUMBER)
+                    .balance(0L)
+                    .balanceSlots(SLOTS)
+                    .registeredAt(LocalDateTime.now())
+                    .build());
+            List<AccountBalanceSlot> slots = new ArrayList<>();
+            for (int i = 0; i < SLOTS; i++) {
+                slots.add(AccountBalanceSlot.builder()
+                        .account(account)
+                        .slot(i)
+                        .balance(INITIAL_BALANCE / SLOTS)
+                        .build());
+            }
+            accountBalanceSlotRepository.saveAll(slots);
+            //취소할 거래 (취소는 원 거래의 계좌, 금액만 확인한다)
+            transactionRepository.save(Transaction.builder()
+                    .account(account)
+                    .transactionType(TransactionType.USE)
+                    .transactionResultType(TransactionResultType.S)
+                    .transactionId("0000000000000001")
+                    .amount(100L)
+                    .balanceSnapshot(INITIAL_BALANCE)
+                    .transactedAt(LocalDateTime.now())
+                    .build());
+            userId = accountUser.getId();
+            accountId = account.getId();
+            given(accountSnapshotCache.find(ACCOUNT_NUMBER))
+                    .willReturn(Optional.of(AccountSnapshot.fromEntity(account)));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> {
+            transactionRepository.deleteAllInBatch();
+            accountBalanceSlotRepository.deleteAllInBatch();
+            accountRepository.deleteAllInBatch();
+            accountUserRepository.deleteAllInBatch();
+        });
+    }
+
+    @Test
+    @DisplayName("취소, slot 을 모으는 차감, rebalance 가 동시에 실행돼도 잔액 합계가 맞다")
+    void cancelWhileDraining() throws Exception {
+        //given
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger canceled = new AtomicInteger();
+        AtomicInteger used = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 60; i++) {
+            int task = i % 3;
+            futures.add(executorService.submit(() -> {
+                start.await();
+                try {
+                    if (task == 0) {
+                        transactionService.cancelBalance("0000000000000001", ACCOUNT_NUMBER, 100L);
+                        canceled.incrementAndGet();
+                    } else if (task == 1) {
+                        //slot 하나의 몫(250)보다 커서 계좌 row lock 을 잡고 slot 잔액을 모은 뒤 차감한다.
+                        transactionService.useBalance(userId, ACCOUNT_NUMBER, 300L);
+                        used.incrementAndGet();
+                    } else {
+                        subBalanceService.rebalance(ACCOUNT_NUMBER);
+                    }
+                } catch (RuntimeException e) {
+                    //잔액 부족, lock timeout 은 롤백되므로 합계에 영향이 없다.
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executorService.shutdown();
+
+        //then
+        long balance = accountRepository.findById(accountId).orElseThrow().getBalance()
+                + accountBalanceSlotRepository.sumBalanceByAccountId(accountId);
+        assertTrue(canceled.get() > 0);
+        assertEquals(INITIAL_BALANCE + 100L * canceled.get() - 300L * used.get(), balance);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.account.service;
+
+import com.example.account.domain.Account;
+import com.example.account.domain.AccountBalanceSlot;
+import com.example.account.domain.AccountStatus;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.AccountBalanceSlotRepository;
+import com.example.account.repository.AccountRepository;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class SubBalanceServiceTest {
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private AccountBalanceSlotRepository accountBalanceSlotRepository;
+    @Mock
+    private AccountSnapshotCache accountSnapshotCache;
+    @InjectMocks
+    private SubBalanceService subBalanceService;
+
+    @Test
+    @DisplayName("잔액이 충분한 slot 이 나올 때까지 차례로 차감")
+    void tryUse() {
+        //given
+        given(accountBalanceSlotRepository.useBalanceIfSufficient(eq(7L), anyInt(), eq(100L)))
+                .willReturn(0, 0, 1);
+
+        //when
+        boolean used = subBalanceService.tryUse(7L, 4, 100L);
+
+        //then
+        assertTrue(used);
+        verify(accountBalanceSlotRepository, times(3)).useBalanceIfSufficient(eq(7L), anyInt(), eq(100L));
+    }
+
+    @Test
+    @DisplayName("모든 slot 이 부족하면 false")
+    void tryUse_allSlotsShort() {
+        //given
+        given(accountBalanceSlotRepository.useBalanceIfSufficient(anyLong(), anyInt(), anyLong()))
+                .willReturn(0);
+
+        //when
+        boolean used = subBalanceService.tryUse(7L, 4, 100L);
+
+        //then
+        assertFalse(used);
+        verify(accountBalanceSlotRepository, times(4)).useBalanceIfSufficient(anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    @DisplayName("계좌 잔액을 slot 으로 나누기")
+    @SuppressWarnings("unchecked")
+    void split() {
+        //given
+        ReflectionTestUtils.setField(subBalanceService, "slots", 4);
+        Account account = account(1003L, null);
+        given(accountRepository.findAllForUpdateByAccountNumberIn(anyList()))
+                .willReturn(List.of(account));
+        ArgumentCaptor<List<AccountBalanceSlot>> captor = ArgumentCaptor.forClass(List.class);
+
+        //when
+        subBalanceService.split("1000000012");
+
+        //then
+        verify(accountBalanceSlotRepository, times(1)).saveAll(captor.capture());
+        assertEquals(List.of(251L, 251L, 251L, 250L),
+                captor.getValue().stream().map(AccountBalanceSlot::getBalance).toList());
+        assertEquals(0L, account.getBalance());
+        assertEquals(4, account.getBalanceSlots());
+        verify(accountSnapshotCache, times(1)).evict("1000000012");
+    }
+
+    @Test
+    @DisplayName("계좌 잔액과 slot 잔액을 합쳐서 고르게 다시 나누기")
+    void rebalance() {
+        //given
+        Account account = account(100L, 2);
+        List<AccountBalanceSlot> slots = List.of(slot(0, 0L), slot(1, 900L));
+        given(accountRepository.findAllForUpdateByAccountNumberIn(anyList()))
+                .willReturn(List.of(account));
+        given(accountBalanceSlotRepository.findAllForUpdateByAccountId(7L))
+                .willReturn(slots);
+
+        //when
+        subBalanceService.rebalance("1000000012");
+
+        //then
+        assertEquals(0L, account.getBalance());
+        assertEquals(500L, slots.get(0).getBalance());
+        assertEquals(500L, slots.get(1).getBalance());
+    }
+
+    @Test
+    @DisplayName("slot 잔액을 계좌로 모으기")
+    void drainInto() {
+        //given
+        Account account = account(100L, 2);
+        List<AccountBalanceSlot> slots = List.of(slot(0, 300L), slot(1, 600L));
+        given(accountBalanceSlotRepository.findAllForUpdateByAccountId(7L))
+                .willReturn(slots);
+
+        //when
+        subBalanceService.drainInto(account);
+
+        //then
+        assertEquals(1000L, account.getBalance());
+        assertEquals(0L, slots.get(0).getBalance());
+        assertEquals(0L, slots.get(1).getBalance());
+    }
+
+    @Test
+    @DisplayName("계좌 + slot 합계로 차감 가능 - slot 잔액을 계좌로 모으기")
+    void lockAndDrain() {
+        //given
+        Account account = account(100L, 2);
+        List<AccountBalanceSlot> slots = List.of(slot(0, 300L), slot(1, 600L));
+        given(accountRepository.findAllForUpdateByAccountNumberIn(anyList()))
+                .willReturn(List.of(account));
+        given(accountBalanceSlotRepository.findAllForUpdateByAccountId(7L))
+                .willReturn(slots);
+
+        //when
+        Account drained = subBalanceService.lockAndDrain("1000000012", 1000L);
+
+        //then
+        assertEquals(1000L, drained.getBalance());
+        assertEquals(0L, slots.get(0).getBalance());
+        assertEquals(0L, slots.get(1).getBalance());
+    }
+
+    @Test
+    @DisplayName("계좌 + slot 합계로도 부족 - slot 을 옮기지 않고 실패")
+    void lockAndDrain_exceed() {
+        //given
+        Account account = account(100L, 2);
+        List<AccountBalanceSlot> slots = List.of(slot(0, 300L), slot(1, 600L));
+        given(accountRepository.findAllForUpdateByAccountNumberIn(anyList()))
+                .willReturn(List.of(account));
+        given(accountBalanceSlotRepository.findAllForUpdateByAccountId(7L))
+                .willReturn(slots);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> subBalanceService.lockAndDrain("1000000012", 1001L));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCodes());
+        assertEquals(100L, account.getBalance());
+        assertEquals(300L, slots.get(0).getBalance());
+        assertEquals(600L, slots.get(1).getBalance());
+    }
+
+    private static Account account(Long balance, Integer balanceSlots) {
+        return Account.builder()
+                .id(7L)
+                .accountNumber("1000000012")
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(balance)
+                .balanceSlots(balanceSlots)
+                .build();
+    }
+
+    private static AccountBalanceSlot slot(int slot, Long balance) {
+        return AccountBalanceSlot.builder()
+                .slot(slot)
+                .balance(balance)
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.account.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionIdGeneratorTest {
+
+    @Test
+    @DisplayName("생성 순서대로 증가하는 16자리 id")
+    void nextTransactionId() {
+        //given
+        TransactionIdGenerator transactionIdGenerator = new TransactionIdGenerator(5L);
+
+        //when
+        String previous = transactionIdGenerator.nextTransactionId();
+        for (int i = 0; i < 10_000; i++) {
+            String next = transactionIdGenerator.nextTransactionId();
+
+            //then
+            assertEquals(16, next.length());
+            assertTrue(next.compareTo(previous) > 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    @DisplayName("노드 id 포함")
+    void nodeId() {
+        //given
+        TransactionIdGenerator transactionIdGenerator = new TransactionIdGenerator(5L);
+
+        //when
+        long id = transactionIdGenerator.nextId();
+
+        //then
+        assertEquals(5L, (id >>> TransactionIdGenerator.SEQUENCE_BITS) & TransactionIdGenerator.MAX_NODE_ID);
+        assertEquals("000000000000000f", TransactionIdGenerator.toString(15L));
+    }
+
+    @Test
+    void invalidNodeId() {
+        //given
+        //when
+        //then
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator(1024L));
+    }
+}
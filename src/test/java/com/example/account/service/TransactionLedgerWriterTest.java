@@ -0,0 +1,192 @@
+package com.example.account.service;
+
+import com.example.account.domain.Transaction;
+import com.example.account.exception.AccountException;
+import com.example.account.repository.TransactionStore;
+import com.example.account.type.ErrorCode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionLedgerWriterTest {
+    @Mock
+    private TransactionStore transactionStore;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("동시에 들어온 내역은 한 번에 커밋")
+    void groupCommit() throws InterruptedException {
+        //given
+        TransactionLedgerWriter writer = new TransactionLedgerWriter(transactionStore,
+                transactionManager, true, 100, 50L, 1000, 1);
+        writer.start();
+        ExecutorService executorService = Executors.newFixedThreadPool(20);
+        List<CompletableFuture<Transaction>> futures = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 20; i++) {
+            Transaction transaction = Transaction.builder().amount((long) i).build();
+            futures.add(CompletableFuture.supplyAsync(() -> writer.write(transaction), executorService));
+        }
+        futures.forEach(CompletableFuture::join);
+        writer.stop();
+        executorService.shutdown();
+
+        //then
+        verify(transactionStore, atMost(5)).saveAll(anyList());
+        verify(transactionManager, atMost(5)).commit(any());
+        verify(transactionStore, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("일괄 저장에 실패하면 한 건씩 저장")
+    void retryOneByOne() throws InterruptedException {
+        //given
+        TransactionLedgerWriter writer = new TransactionLedgerWriter(transactionStore,
+                transactionManager, true, 100, 0L, 1000, 1);
+        writer.start();
+        Transaction transaction = Transaction.builder().amount(1000L).build();
+        given(transactionStore.saveAll(anyList()))
+                .willThrow(new IllegalStateException("batch failed"));
+        given(transactionStore.save(any()))
+                .willReturn(transaction);
+
+        //when
+        Transaction saved = writer.write(transaction);
+        writer.stop();
+
+        //then
+        assertSame(transaction, saved);
+        verify(transactionStore, times(1)).save(transaction);
+    }
+
+    @Test
+    @DisplayName("작업은 한 번에 커밋하고, 거절된 작업만 실패")
+    void groupCommitWork() throws InterruptedException {
+        //given
+        TransactionLedgerWriter writer = new TransactionLedgerWriter(transactionStore,
+                transactionManager, true, 100, 50L, 1000, 1);
+        writer.start();
+        ExecutorService executorService = Executors.newFixedThreadPool(20);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 20; i++) {
+            long amount = i;
+            futures.add(CompletableFuture.supplyAsync(() -> writer.execute("1000000000", () -> {
+                if (amount == 7L) {
+                    throw new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE);
+                }
+                return amount;
+            }), executorService));
+        }
+        CompletionException rejected = assertThrows(CompletionException.class, () -> futures.get(7).join());
+        for (int i = 0; i < 20; i++) {
+            if (i != 7) {
+                assertEquals((long) i, futures.get(i).join());
+            }
+        }
+        writer.stop();
+        executorService.shutdown();
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, ((AccountException) rejected.getCause()).getErrorCodes());
+        verify(transactionManager, atMost(5)).commit(any());
+        verify(transactionManager, never()).rollback(any());
+    }
+
+    @Test
+    @DisplayName("일괄 커밋에 실패하면 작업을 한 건씩 다시 실행")
+    void retryWorkOneByOne() throws InterruptedException {
+        //given
+        TransactionLedgerWriter writer = new TransactionLedgerWriter(transactionStore,
+                transactionManager, true, 100, 0L, 1000, 1);
+        writer.start();
+        willThrow(new IllegalStateException("commit failed"))
+                .willDoNothing()
+                .given(transactionManager).commit(any());
+        AtomicInteger runs = new AtomicInteger();
+
+        //when
+        int result = writer.execute("1000000000", runs::incrementAndGet);
+        writer.stop();
+
+        //then
+        assertEquals(2, result);
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    @DisplayName("다른 committer 의 계좌는 느린 작업을 기다리지 않는다")
+    void shardByAccountNumber() throws Exception {
+        //given
+        TransactionLedgerWriter writer = new TransactionLedgerWriter(transactionStore,
+                transactionManager, true, 100, 0L, 1000, 2);
+        writer.start();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        //계좌번호 끝자리만 다르면 해시도 1 차이라서 committer 가 다르다.
+        CompletableFuture<Integer> slow = CompletableFuture.supplyAsync(() -> writer.execute("1000000000", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }), executorService);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        //when
+        int fast = writer.execute("1000000001", () -> 2);
+        boolean slowDone = slow.isDone();
+        release.countDown();
+
+        //then
+        assertEquals(2, fast);
+        assertFalse(slowDone);
+        assertEquals(1, slow.get(5, TimeUnit.SECONDS));
+        writer.stop();
+        executorService.shutdown();
+    }
+
+    @Test
+    void disabled() throws InterruptedException {
+        //given
+        TransactionLedgerWriter writer = new TransactionLedgerWriter(transactionStore,
+                transactionManager, false, 100, 2L, 1000, 1);
+        writer.start();
+        Transaction transaction = Transaction.builder().amount(1000L).build();
+
+        //when
+        writer.write(transaction);
+        writer.stop();
+
+        //then
+        verify(transactionStore, times(1)).save(transaction);
+        verify(transactionStore, never()).saveAll(anyList());
+    }
+}
@@ -1,14 +1,20 @@
 package com.example.account.service;
 
+import com.example.account.aop.FencingTokenHolder;
 import com.example.account.domain.Account;
 import com.example.account.domain.AccountStatus;
 import com.example.account.domain.AccountUser;
 import com.example.account.domain.Transaction;
+import com.example.account.dto.AccountSnapshot;
 import com.example.account.dto.TransactionDto;
+import com.example.account.dto.TransactionHistoryItem;
+import com.example.account.dto.TransactionHistoryResponse;
+import com.example.account.dto.UseBalance;
 import com.example.account.exception.AccountException;
 import com.example.account.repository.AccountRepository;
 import com.example.account.repository.AccountUserRepository;
-import com.example.account.repository.TransactionRepository;
+import com.example.account.repository.TransactionStore;
+import com.example.account.type.DebitMode;
 import com.example.account.type.ErrorCode;
 import com.example.account.type.TransactionResultType;
 import com.example.account.type.TransactionType;
@@ -16,16 +22,22 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -38,7 +50,17 @@ class TransactionServiceTest {
     private AccountUserRepository accountUserRepository;
 
     @Mock
-    private TransactionRepository transactionRepository;
+    private TransactionStore transactionStore;
+    @Mock
+    private AccountSnapshotCache accountSnapshotCache;
+    @Mock
+    private TransactionIdGenerator transactionIdGenerator;
+    @Mock
+    private TransactionLedgerWriter transactionLedgerWriter;
+    @Mock
+    private SubBalanceService subBalanceService;
+    @Mock
+    private BalanceLedger balanceLedger;
 
     @InjectMocks
     private TransactionService transactionService;
@@ -66,7 +88,7 @@ class TransactionServiceTest {
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(account));
 
-        given(transactionRepository.save(any()))
+        given(transactionStore.save(any()))
                 .willReturn(Transaction.builder()
                         .account(account)
                         .transactionType(TransactionType.USE)
@@ -83,7 +105,7 @@ class TransactionServiceTest {
                 "10000000000", 200L);
 
         //then
-        verify(transactionRepository, times(1)).save(captor.capture());
+        verify(transactionStore, times(1)).save(captor.capture());
         assertEquals(200L, captor.getValue().getAmount());
         assertEquals(9800L, captor.getValue().getBalanceSnapshot());
         assertEquals(9000L, transactionDto.getBalanceSnapshot());
@@ -92,6 +114,448 @@ class TransactionServiceTest {
         assertEquals(1000L, transactionDto.getAmount());
     }
 
+    @Test
+    @DisplayName("캐시된 계좌 정보로 검증 - 잔액 사용 성공")
+    void successUseBalance_cachedSnapshot() {
+        //given
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(1L);
+        Account account = Account.builder()
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012")
+                .build();
+        account.setId(7L);
+
+        given(accountSnapshotCache.find(anyString()))
+                .willReturn(Optional.of(new AccountSnapshot(7L, 1L, AccountStatus.IN_USE, 0)));
+        given(accountRepository.findById(7L))
+                .willReturn(Optional.of(account));
+        given(transactionStore.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(1L, "1000000012", 1000L);
+
+        //then
+        assertEquals(9000L, account.getBalance());
+        assertEquals(TransactionResultType.S, transactionDto.getTransactionResultType());
+        verify(accountUserRepository, times(0)).findById(anyLong());
+        verify(accountRepository, times(0)).findByAccountNumber(anyString());
+    }
+
+    @Test
+    @DisplayName("캐시된 계좌 정보로 검증 - 계좌 소유주 다름")
+    void useBalance_cachedSnapshotUserUnMatch() {
+        //given
+        given(accountSnapshotCache.find(anyString()))
+                .willReturn(Optional.of(new AccountSnapshot(7L, 2L, AccountStatus.IN_USE, 0)));
+        given(accountUserRepository.existsById(1L))
+                .willReturn(true);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.useBalance(1L, "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.USER_ACCOUNT_NOT_MATCH, exception.getErrorCodes());
+        verify(accountRepository, times(0)).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("조건부 UPDATE 로 잔액 사용 성공")
+    void successUseBalance_atomic() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "debitMode", DebitMode.ATOMIC);
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(1L);
+
+        Account account = Account.builder()
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(9800L)
+                .accountNumber("1000000012")
+                .build();
+
+        given(accountRepository.useBalanceIfSufficient(anyString(), anyLong(), anyLong()))
+                .willReturn(1);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(transactionStore.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        ArgumentCaptor<Transaction> captor = ArgumentCaptor.forClass(Transaction.class);
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(1L,
+                "1000000012", 200L);
+
+        //then
+        verify(accountUserRepository, times(0)).findById(anyLong());
+        verify(transactionStore, times(1)).save(captor.capture());
+        assertEquals(200L, captor.getValue().getAmount());
+        assertEquals(9800L, captor.getValue().getBalanceSnapshot());
+        assertEquals(TransactionResultType.S, transactionDto.getTransactionResultType());
+        assertEquals(TransactionType.USE, transactionDto.getTransactionType());
+    }
+
+    @Test
+    @DisplayName("조건부 UPDATE 실패 - 잔액 부족")
+    void exceedAmount_UseBalance_atomic() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "debitMode", DebitMode.ATOMIC);
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(12L);
+
+        Account account = Account.builder()
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(100L)
+                .accountNumber("1000000012")
+                .build();
+
+        given(accountRepository.useBalanceIfSufficient(anyString(), anyLong(), anyLong()))
+                .willReturn(0);
+        given(accountUserRepository.findById(anyLong()))
+                .willReturn(Optional.of(accountUser));
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+
+        //when
+        AccountException accountException = assertThrows(AccountException.class,
+                () -> transactionService.useBalance(12L, "1000000012", 3000L));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, accountException.getErrorCodes());
+        verify(transactionStore, times(0)).save(any());
+    }
+
+    @Test
+    @DisplayName("ATOMIC 모드 잔액 사용은 차감과 거래 내역 저장을 group commit 작업으로 넘긴다")
+    void successUseBalanceGrouped() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "debitMode", DebitMode.ATOMIC);
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(1L);
+
+        Account account = Account.builder()
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(9800L)
+                .accountNumber("1000000012")
+                .build();
+
+        given(transactionLedgerWriter.execute(eq("1000000012"), any()))
+                .willAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        given(accountRepository.useBalanceIfSufficient(anyString(), anyLong(), anyLong()))
+                .willReturn(1);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(transactionStore.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalanceGrouped(1L,
+                "1000000012", 200L);
+
+        //then
+        verify(transactionLedgerWriter, times(1)).execute(eq("1000000012"), any());
+        verify(accountRepository, times(1)).useBalanceIfSufficient("1000000012", 1L, 200L);
+        assertEquals(200L, transactionDto.getAmount());
+        assertEquals(TransactionResultType.S, transactionDto.getTransactionResultType());
+    }
+
+    @Test
+    @DisplayName("ATOMIC 모드가 아니면 group commit 으로 차감하지 않는다")
+    void useBalanceGrouped_notAtomic() {
+        //when
+        assertThrows(IllegalStateException.class,
+                () -> transactionService.useBalanceGrouped(1L, "1000000012", 200L));
+
+        //then
+        verify(transactionLedgerWriter, times(0)).execute(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("slot 으로 나뉜 계좌는 묶지 않고 자기 트랜잭션에서 차감한다")
+    void useBalanceGrouped_subBalances() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "debitMode", DebitMode.ATOMIC);
+        given(accountSnapshotCache.find("1000000012"))
+                .willReturn(Optional.of(new AccountSnapshot(7L, 1L, AccountStatus.IN_USE, 4)));
+        TransactionDto used = TransactionDto.builder()
+                .accountNumber("1000000012")
+                .amount(200L)
+                .build();
+        given(transactionLedgerWriter.executeDirectly(any()))
+                .willReturn(used);
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalanceGrouped(1L, "1000000012", 200L);
+
+        //then
+        assertSame(used, transactionDto);
+        verify(transactionLedgerWriter, times(0)).execute(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("메모리 원장에서 잔액 사용 성공 - 계좌를 읽거나 쓰지 않는다")
+    void successUseBalance_memory() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "debitMode", DebitMode.MEMORY);
+        ReflectionTestUtils.setField(transactionService, "balanceLedger", balanceLedger);
+        given(accountSnapshotCache.find(anyString()))
+                .willReturn(Optional.of(new AccountSnapshot(7L, 1L, AccountStatus.IN_USE, 0)));
+        given(transactionIdGenerator.nextId())
+                .willReturn(255L);
+        given(balanceLedger.use(7L, 200L, 255L))
+                .willReturn(9800L);
+        given(transactionStore.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        ArgumentCaptor<Transaction> captor = ArgumentCaptor.forClass(Transaction.class);
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(1L,
+                "1000000012", 200L);
+
+        //then
+        verify(transactionStore, times(1)).save(captor.capture());
+        verify(accountRepository, times(0)).findById(anyLong());
+        verify(accountRepository, times(0)).useBalanceIfSufficient(anyString(), anyLong(), anyLong());
+        assertEquals(9800L, captor.getValue().getBalanceSnapshot());
+        assertEquals("00000000000000ff", captor.getValue().getTransactionId());
+        assertEquals("1000000012", transactionDto.getAccountNumber());
+        assertEquals(TransactionResultType.S, transactionDto.getTransactionResultType());
+    }
+
+    @Test
+    @DisplayName("메모리 원장 잔액 부족 - 거래 내역을 저장하지 않는다")
+    void exceedAmount_UseBalance_memory() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "debitMode", DebitMode.MEMORY);
+        ReflectionTestUtils.setField(transactionService, "balanceLedger", balanceLedger);
+        given(accountSnapshotCache.find(anyString()))
+                .willReturn(Optional.of(new AccountSnapshot(7L, 1L, AccountStatus.IN_USE, 0)));
+        given(balanceLedger.use(anyLong(), anyLong(), anyLong()))
+                .willThrow(new AccountException(ErrorCode.AMOUNT_EXCEED_BALANCE));
+
+        //when
+        AccountException accountException = assertThrows(AccountException.class,
+                () -> transactionService.useBalance(1L, "1000000012", 3000L));
+
+        //then
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, accountException.getErrorCodes());
+        verify(transactionStore, times(0)).save(any());
+    }
+
+    @Test
+    @DisplayName("slot 으로 나뉜 계좌 - slot 에서 차감, 거래 잔액은 합계")
+    void successUseBalance_subBalance() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "debitMode", DebitMode.ATOMIC);
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(1L);
+        Account account = Account.builder()
+                .id(7L)
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(300L)
+                .balanceSlots(4)
+                .accountNumber("1000000012")
+                .build();
+
+        given(accountSnapshotCache.find(anyString()))
+                .willReturn(Optional.of(AccountSnapshot.fromEntity(account)));
+        given(subBalanceService.tryUse(7L, 4, 200L))
+                .willReturn(true);
+        given(accountRepository.findById(7L))
+                .willReturn(Optional.of(account));
+        given(subBalanceService.sum(7L))
+                .willReturn(9500L);
+        given(transactionStore.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(1L,
+                "1000000012", 200L);
+
+        //then
+        verify(accountRepository, times(0)).useBalanceIfSufficient(anyString(), anyLong(), anyLong());
+        verify(subBalanceService, times(0)).lockAndDrain(anyString(), anyLong());
+        assertEquals(9800L, transactionDto.getBalanceSnapshot());
+        assertEquals(TransactionResultType.S, transactionDto.getTransactionResultType());
+    }
+
+    @Test
+    @DisplayName("slot 하나로 부족 - 계좌로 모아서 차감")
+    void successUseBalance_subBalanceDrained() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "debitMode", DebitMode.ATOMIC);
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(1L);
+        Account account = Account.builder()
+                .id(7L)
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L) //slot 잔액을 모은 뒤
+                .balanceSlots(4)
+                .accountNumber("1000000012")
+                .build();
+
+        given(accountSnapshotCache.find(anyString()))
+                .willReturn(Optional.of(AccountSnapshot.fromEntity(account)));
+        given(subBalanceService.tryUse(anyLong(), anyInt(), anyLong()))
+                .willReturn(false);
+        given(subBalanceService.lockAndDrain("1000000012", 6000L))
+                .willReturn(account);
+        given(transactionStore.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(1L,
+                "1000000012", 6000L);
+
+        //then
+        assertEquals(4000L, account.getBalance());
+        assertEquals(4000L, transactionDto.getBalanceSnapshot());
+    }
+
+    @Test
+    @DisplayName("점유 시간이 지난 락의 fencing token - 잔액 사용 실패")
+    void useBalance_staleFencingToken() {
+        //given
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(12L);
+
+        Account account = Account.builder()
+                .id(3L)
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .fencingToken(8L)
+                .accountNumber("1000000012")
+                .build();
+
+        given(accountRepository.updateFencingTokenByAccountNumber("1000000012", 5L))
+                .willReturn(0);
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+
+        //when
+        FencingTokenHolder.set("1000000012", 5L);
+        AccountException accountException;
+        try {
+            accountException = assertThrows(AccountException.class,
+                    () -> transactionService.useBalance(12L, "1000000012", 3000L));
+        } finally {
+            FencingTokenHolder.clear();
+        }
+
+        //then
+        assertEquals(ErrorCode.LOCK_FENCING_TOKEN_EXPIRED, accountException.getErrorCodes());
+        assertEquals(10000L, account.getBalance());
+        verify(transactionStore, times(0)).save(any());
+    }
+
+    @Test
+    @DisplayName("fencing token 을 먼저 갱신(row lock)한 뒤에 잔액을 읽는다")
+    void useBalance_fencingTokenBeforeRead() {
+        //given
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(12L);
+
+        Account account = Account.builder()
+                .id(3L)
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .fencingToken(5L)
+                .accountNumber("1000000012")
+                .build();
+
+        given(accountRepository.updateFencingTokenByAccountNumber("1000000012", 5L))
+                .willReturn(1);
+        given(accountUserRepository.findById(anyLong()))
+                .willReturn(Optional.of(accountUser));
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(transactionStore.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        FencingTokenHolder.set("1000000012", 5L);
+        try {
+            transactionService.useBalance(12L, "1000000012", 3000L);
+        } finally {
+            FencingTokenHolder.clear();
+        }
+
+        //then
+        InOrder inOrder = inOrder(accountRepository);
+        inOrder.verify(accountRepository).updateFencingTokenByAccountNumber("1000000012", 5L);
+        inOrder.verify(accountRepository).findByAccountNumber("1000000012");
+        assertEquals(7000L, account.getBalance());
+    }
+
+    @Test
+    @DisplayName("잔액 일괄 사용 - 항목별 성공/실패")
+    void useBalanceBatch() {
+        //given
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(1L);
+
+        Account account = Account.builder()
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(1000L)
+                .accountNumber("1000000012")
+                .build();
+
+        given(accountUserRepository.findAllById(any()))
+                .willReturn(List.of(accountUser));
+        given(accountRepository.findAllForUpdateByAccountNumberIn(any()))
+                .willReturn(List.of(account));
+
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+        //when
+        List<TransactionDto> results = transactionService.useBalanceBatch(List.of(
+                new UseBalance.Request(1L, "1000000012", 600L),
+                new UseBalance.Request(1L, "1000000012", 600L),
+                new UseBalance.Request(1L, "1000000099", 100L)));
+
+        //then
+        verify(transactionStore, times(1)).saveAll(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertEquals(400L, account.getBalance());
+
+        assertEquals(3, results.size());
+        assertEquals(TransactionResultType.S, results.get(0).getTransactionResultType());
+        assertEquals(400L, results.get(0).getBalanceSnapshot());
+        assertEquals(TransactionResultType.F, results.get(1).getTransactionResultType());
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, results.get(1).getErrorCode());
+        assertEquals(TransactionResultType.F, results.get(2).getTransactionResultType());
+        assertEquals(ErrorCode.ACCOUNT_NOT_FOUND, results.get(2).getErrorCode());
+        assertNull(results.get(2).getTransactionId());
+    }
+
     @Test
     @DisplayName("해당 유저 없음 -잔액 사용 실패 ")
     void useBalance_UserNotFound() {
@@ -209,7 +673,7 @@ class TransactionServiceTest {
 
         //then
         assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, accountException.getErrorCodes());
-        verify(transactionRepository, times(0)).save(any());
+        verify(transactionStore, times(0)).save(any());
 
     }
 
@@ -231,23 +695,12 @@ class TransactionServiceTest {
                 .build();
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(account));
-        given(transactionRepository.save(any()))
-                .willReturn(Transaction.builder()
-                        .account(account)
-                        .transactionType(TransactionType.USE)
-                        .transactionResultType(TransactionResultType.S)
-                        .transactionId("transactionId")
-                        .transactedAt(LocalDateTime.now())
-                        .amount(1000L)
-                        .balanceSnapshot(9000L)
-                        .build());
-
         ArgumentCaptor<Transaction> captor = ArgumentCaptor.forClass(Transaction.class);
         //when
         transactionService.saveFailedUseTransaction("1000000000", 1000L);
 
         //then
-        verify(transactionRepository, times(1)).save(captor.capture());
+        verify(transactionLedgerWriter, times(1)).write(captor.capture());
         assertEquals(1000L, captor.getValue().getAmount());
         assertEquals(10000L, captor.getValue().getBalanceSnapshot());
         assertEquals(TransactionResultType.F, captor.getValue().getTransactionResultType());
@@ -279,12 +732,12 @@ class TransactionServiceTest {
                 .balanceSnapshot(9000L)
                 .build();
 
-        given(transactionRepository.findByTransactionId(anyString()))
+        given(transactionStore.findByTransactionId(anyString()))
                 .willReturn(Optional.of(transaction));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(account));
 
-        given(transactionRepository.save(any()))
+        given(transactionStore.save(any()))
                 .willReturn(Transaction.builder()
                         .account(account)
                         .transactionType(TransactionType.CANCEL)
@@ -301,7 +754,7 @@ class TransactionServiceTest {
                 "10000000000", 200L);
 
         //then
-        verify(transactionRepository, times(1)).save(captor.capture());
+        verify(transactionStore, times(1)).save(captor.capture());
         assertEquals(200L, captor.getValue().getAmount());
         assertEquals(10000L + 200L, captor.getValue().getBalanceSnapshot());
         assertEquals(TransactionResultType.S, transactionDto.getTransactionResultType());
@@ -310,6 +763,113 @@ class TransactionServiceTest {
         assertEquals(200L, transactionDto.getAmount());
     }
 
+    @Test
+    @DisplayName("메모리 원장에 취소 금액을 더하고 계좌 엔티티는 그대로 둔다")
+    void successCancelBalance_memory() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "debitMode", DebitMode.MEMORY);
+        ReflectionTestUtils.setField(transactionService, "balanceLedger", balanceLedger);
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(12L);
+
+        Account account = Account.builder()
+                .id(7L)
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012")
+                .build();
+
+        Transaction transaction = Transaction.builder()
+                .account(account)
+                .transactionType(TransactionType.USE)
+                .transactionResultType(TransactionResultType.S)
+                .transactionId("transactionId")
+                .transactedAt(LocalDateTime.now())
+                .amount(200L)
+                .balanceSnapshot(9000L)
+                .build();
+
+        given(transactionStore.findByTransactionId(anyString()))
+                .willReturn(Optional.of(transaction));
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(balanceLedger.cancel(eq(7L), eq(200L), anyLong()))
+                .willReturn(9200L);
+        given(transactionStore.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        TransactionDto transactionDto = transactionService.cancelBalance("transactionId",
+                "1000000012", 200L);
+
+        //then
+        assertEquals(9200L, transactionDto.getBalanceSnapshot());
+        assertEquals(TransactionType.CANCEL, transactionDto.getTransactionType());
+        assertEquals(10000L, account.getBalance());
+    }
+
+    @Test
+    @DisplayName("ATOMIC 모드 취소 - 읽은 잔액을 다시 쓰지 않고 UPDATE 로 더한다")
+    void successCancelBalance_atomic() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "debitMode", DebitMode.ATOMIC);
+        AccountUser accountUser = AccountUser.builder()
+                .name("pobi")
+                .build();
+        accountUser.setId(12L);
+
+        Account account = Account.builder()
+                .id(7L)
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012")
+                .build();
+        //그 사이 락 없는 차감이 커밋된 잔액
+        Account updated = Account.builder()
+                .id(7L)
+                .accountUser(accountUser)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(9200L)
+                .accountNumber("1000000012")
+                .build();
+
+        Transaction transaction = Transaction.builder()
+                .account(account)
+                .transactionType(TransactionType.USE)
+                .transactionResultType(TransactionResultType.S)
+                .transactionId("transactionId")
+                .transactedAt(LocalDateTime.now())
+                .amount(200L)
+                .balanceSnapshot(9000L)
+                .build();
+
+        given(transactionStore.findByTransactionId(anyString()))
+                .willReturn(Optional.of(transaction));
+        given(accountRepository.findByAccountNumber(anyString()))
+                .willReturn(Optional.of(account));
+        given(accountRepository.cancelBalance(7L, 200L))
+                .willReturn(1);
+        given(accountRepository.findById(7L))
+                .willReturn(Optional.of(updated));
+        given(transactionStore.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        TransactionDto transactionDto = transactionService.cancelBalance("transactionId",
+                "1000000012", 200L);
+
+        //then
+        verify(accountRepository, times(1)).cancelBalance(7L, 200L);
+        verify(accountRepository, times(0)).updateFencingTokenByAccountNumber(anyString(), anyLong());
+        assertEquals(10000L, account.getBalance());
+        assertEquals(9200L, transactionDto.getBalanceSnapshot());
+        assertEquals(TransactionType.CANCEL, transactionDto.getTransactionType());
+    }
+
     @Test
     @DisplayName("해당 계좌 없음- 잔액 사용 취소 실패")
     void cancelTransaction_TransactionNotFound() {
@@ -320,7 +880,7 @@ class TransactionServiceTest {
                 .build();
         accountUser.setId(12L);
 
-        given(transactionRepository.findByTransactionId(anyString()))
+        given(transactionStore.findByTransactionId(anyString()))
                 .willReturn(Optional.of(
                         Transaction.builder()
                                 .transactionType(TransactionType.CANCEL)
@@ -375,7 +935,7 @@ class TransactionServiceTest {
                 .balanceSnapshot(9000L)
                 .build();
 
-        given(transactionRepository.findByTransactionId(anyString()))
+        given(transactionStore.findByTransactionId(anyString()))
                 .willReturn(Optional.of(transaction));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(accountNotUse));
@@ -415,7 +975,7 @@ class TransactionServiceTest {
                 .amount(1000L + 1000L)
                 .balanceSnapshot(9000L)
                 .build();
-        given(transactionRepository.findByTransactionId(anyString()))
+        given(transactionStore.findByTransactionId(anyString()))
                 .willReturn(Optional.of(transaction));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(account));
@@ -456,7 +1016,7 @@ class TransactionServiceTest {
                 .balanceSnapshot(9000L)
                 .build();
 
-        given(transactionRepository.findByTransactionId(anyString()))
+        given(transactionStore.findByTransactionId(anyString()))
                 .willReturn(Optional.of(transaction));
         given(accountRepository.findByAccountNumber(anyString()))
                 .willReturn(Optional.of(account));
@@ -475,30 +1035,10 @@ class TransactionServiceTest {
     void successQueryTransaction() {
 
         //given
-        AccountUser user = AccountUser.builder()
-                .name("Pobi")
-
-                .build();
-        user.setId(1L);
-        Account account = Account.builder()
-                .accountUser(user)
-                .accountStatus(AccountStatus.IN_USE)
-                .balance(10000L)
-                .id(1L)
-                .accountNumber("1000000012")
-                .build();
-
-        Transaction transaction = Transaction.builder()
-                .account(account)
-                .transactionType(TransactionType.USE)
-                .transactionResultType(TransactionResultType.S)
-                .transactionId("transactionId")
-                .transactedAt(LocalDateTime.now().minusYears(1).minusDays(1))
-                .amount(1000L)
-                .balanceSnapshot(9000L)
-                .build();
-        given(transactionRepository.findByTransactionId(anyString()))
-                .willReturn(Optional.of(transaction));
+        given(transactionStore.findTransactionDtoByTransactionId(anyString()))
+                .willReturn(Optional.of(new TransactionDto("1000000012",
+                        TransactionType.USE, TransactionResultType.S, 1000L, 9000L,
+                        "transactionId", LocalDateTime.now().minusYears(1).minusDays(1))));
 
         //when
         TransactionDto transactionDto = transactionService.queryTransaction("trxId");
@@ -508,13 +1048,15 @@ class TransactionServiceTest {
         assertEquals(TransactionResultType.S, transactionDto.getTransactionResultType());
         assertEquals(1000L, transactionDto.getAmount());
         assertEquals("transactionId", transactionDto.getTransactionId());
+        assertEquals("1000000012", transactionDto.getAccountNumber());
+        verify(transactionStore, times(0)).findByTransactionId(anyString());
     }
     @Test
     @DisplayName("원거래 없음 -거래 조회 실패")
     public void queryTransaction_TransactionNotFound(){
 
         //given
-        given(transactionRepository.findByTransactionId(anyString()))
+        given(transactionStore.findTransactionDtoByTransactionId(anyString()))
                 .willReturn(Optional.empty());
         //when
         AccountException accountException=assertThrows(AccountException.class,
@@ -525,5 +1067,105 @@ class TransactionServiceTest {
 
     }
 
+    @Test
+    @DisplayName("거래 내역 첫 페이지 - 한 건 더 읽어서 다음 커서 생성")
+    void successGetTransactionHistoryFirstPage() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "historyMaxPageSize", 100);
+        LocalDateTime now = LocalDateTime.now();
+        given(accountSnapshotCache.find(anyString()))
+                .willReturn(Optional.of(AccountSnapshot.builder()
+                        .id(1L).accountUserId(1L).accountStatus(AccountStatus.IN_USE).build()));
+        given(transactionStore.findHistory(anyLong(), any(), any(), any()))
+                .willReturn(List.of(historyItem(30L, now),
+                        historyItem(20L, now.minusSeconds(1)),
+                        historyItem(10L, now.minusSeconds(2))));
+
+        //when
+        TransactionHistoryResponse response = transactionService.getTransactionHistory(
+                "1000000012", null, null, null, 2);
+
+        //then
+        ArgumentCaptor<Limit> captor = ArgumentCaptor.forClass(Limit.class);
+        verify(transactionStore, times(1)).findHistory(anyLong(), any(), any(), captor.capture());
+        assertEquals(3, captor.getValue().max());
+        assertEquals(2, response.getTransactions().size());
+        TransactionHistoryResponse.Cursor cursor =
+                TransactionHistoryResponse.Cursor.decode(response.getNextCursor());
+        assertEquals(20L, cursor.getId());
+        assertEquals(now.minusSeconds(1), cursor.getTransactedAt());
+    }
+
+    @Test
+    @DisplayName("거래 내역 다음 페이지 - 커서 이후부터 조회, 마지막 페이지")
+    void successGetTransactionHistoryNextPage() {
+        //given
+        ReflectionTestUtils.setField(transactionService, "historyMaxPageSize", 100);
+        LocalDateTime transactedAt = LocalDateTime.now();
+        String cursor = new TransactionHistoryResponse.Cursor(transactedAt, 20L).encode();
+        given(accountSnapshotCache.find(anyString()))
+                .willReturn(Optional.of(AccountSnapshot.builder()
+                        .id(1L).accountUserId(1L).accountStatus(AccountStatus.IN_USE).build()));
+        given(transactionStore.findHistoryAfter(anyLong(), any(), any(), any(), anyLong(), any()))
+                .willReturn(List.of(historyItem(10L, transactedAt.minusSeconds(1))));
+
+        //when
+        TransactionHistoryResponse response = transactionService.getTransactionHistory(
+                "1000000012", TransactionType.USE, TransactionResultType.S, cursor, 2);
+
+        //then
+        verify(transactionStore, times(1)).findHistoryAfter(eq(1L),
+                eq(TransactionType.USE), eq(TransactionResultType.S),
+                eq(transactedAt), eq(20L), any());
+        verify(transactionStore, times(0)).findHistory(anyLong(), any(), any(), any());
+        assertEquals(1, response.getTransactions().size());
+        assertNull(response.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("잘못된 커서 - 거래 내역 조회 실패")
+    void getTransactionHistory_InvalidCursor() {
+        //given
+        given(accountSnapshotCache.find(anyString()))
+                .willReturn(Optional.of(AccountSnapshot.builder()
+                        .id(1L).accountUserId(1L).accountStatus(AccountStatus.IN_USE).build()));
+
+        //when
+        AccountException accountException = assertThrows(AccountException.class,
+                () -> transactionService.getTransactionHistory(
+                        "1000000012", null, null, "not-a-cursor", 20));
+
+        //then
+        assertEquals(ErrorCode.INVALID_REQUEST, accountException.getErrorCodes());
+    }
+
+    @Test
+    @DisplayName("계좌 없음 - 거래 내역 조회 실패")
+    void getTransactionHistory_AccountNotFound() {
+        //given
+        given(accountSnapshotCache.find(anyString()))
+                .willReturn(Optional.empty());
+
+        //when
+        AccountException accountException = assertThrows(AccountException.class,
+                () -> transactionService.getTransactionHistory(
+                        "1000000012", null, null, null, 20));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_NOT_FOUND, accountException.getErrorCodes());
+    }
+
+    private static TransactionHistoryItem historyItem(Long id, LocalDateTime transactedAt) {
+        return TransactionHistoryItem.builder()
+                .id(id)
+                .transactionId(String.format("%016x", id))
+                .transactionType(TransactionType.USE)
+                .transactionResultType(TransactionResultType.S)
+                .amount(1000L)
+                .balanceSnapshot(9000L)
+                .transactedAt(transactedAt)
+                .build();
+    }
+
 
 }
\ No newline at end of file